@@ -0,0 +1,133 @@
+package com.praktikum.database.testing.library.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker untuk pembuatan koneksi ke satu database
+ * - CLOSED: koneksi dibuat seperti biasa, kegagalan berturut-turut dihitung
+ * - OPEN: setelah failureThreshold kegagalan berturut-turut, semua permintaan langsung ditolak
+ *   tanpa menunggu connect timeout
+ * - HALF_OPEN: setelah openMillis, satu probe di background mencoba koneksi ke database;
+ *   berhasil = CLOSED, gagal = kembali OPEN
+ * Caller tidak pernah dipakai sebagai probe, jadi selama database down setiap panggilan hanya butuh microseconds
+ */
+public class CircuitBreaker {
+
+    /**
+     * State circuit breaker
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+    private final LongAdder trips = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param failureThreshold jumlah kegagalan berturut-turut sebelum breaker OPEN (0 = breaker nonaktif)
+     * @param openMillis lama breaker OPEN sebelum probe half-open dijalankan
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Cek apakah permintaan boleh diteruskan ke database
+     * Permintaan yang ditolak ikut dihitung di metrics
+     * @return true jika state CLOSED
+     */
+    public boolean allowRequest() {
+        if (state.get() == State.CLOSED) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Mencatat koneksi yang berhasil dibuat
+     */
+    public void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * Mencatat kegagalan membuat koneksi
+     * @return true jika kegagalan ini membuat breaker berpindah ke OPEN (caller perlu menjadwalkan probe)
+     */
+    public boolean recordFailure() {
+        if (failureThreshold <= 0) {
+            return false;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold
+                && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            openedAt = System.currentTimeMillis();
+            trips.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Berpindah dari OPEN ke HALF_OPEN sebelum probe dijalankan
+     * @return false jika breaker tidak sedang OPEN (misalnya pool sudah ditutup atau probe lain berjalan)
+     */
+    boolean tryHalfOpen() {
+        return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * Probe berhasil - breaker kembali CLOSED
+     */
+    void probeSucceeded() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    /**
+     * Probe gagal - breaker kembali OPEN untuk openMillis berikutnya
+     */
+    void probeFailed() {
+        openedAt = System.currentTimeMillis();
+        state.set(State.OPEN);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    /**
+     * Waktu (epoch millis) breaker terakhir kali berpindah ke OPEN, 0 jika belum pernah
+     */
+    public long getOpenedAt() {
+        return openedAt;
+    }
+
+    public long getTripCount() {
+        return trips.sum();
+    }
+
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+}
@@ -0,0 +1,655 @@
+package com.praktikum.database.testing.library.config;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Connection pool sederhana dan bounded untuk satu URL database
+ * - Jumlah koneksi fisik dibatasi oleh maxTotal
+ * - Caller menunggu paling lama maxWaitMillis ketika pool penuh
+ * - Eviction thread menutup koneksi idle yang terlalu lama dan menjaga minIdle
+ * - Circuit breaker menolak permintaan secara langsung ketika database tidak bisa dihubungi
+ * Tidak ada synchronized di jalur pinjam/kembali, hanya Semaphore dan lock dari java.util.concurrent,
+ * sehingga aman dipanggil dari virtual thread tanpa mem-pin carrier thread
+ */
+public class ConnectionPool implements ConnectionPoolMXBean {
+    private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String name;
+    private final String url;
+    private final Properties connectionProperties;
+    private final PoolSettings settings;
+    private final boolean defaultReadOnly;
+
+    // Permit untuk koneksi yang sedang dipinjam (active), maksimal maxTotal
+    private final Semaphore permits;
+    // Koneksi idle, LIFO supaya koneksi yang "hangat" dipakai lebih dulu
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    // Jumlah koneksi fisik yang sedang dibuat atau sudah ada (active + idle)
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService maintenance;
+    // null jika leak detection nonaktif
+    private final LeakDetector leakDetector;
+    private final CircuitBreaker circuitBreaker;
+    // Driver di-resolve sekali, supaya pembuatan koneksi tidak melewati DriverManager setiap kali
+    private volatile Driver driver;
+    private volatile boolean closed;
+
+    // Metrics
+    private final long createdAtMillis = System.currentTimeMillis();
+    private final AtomicInteger pendingThreads = new AtomicInteger();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionCreateFailures = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+    private final LatencyHistogram acquireWait = new LatencyHistogram();
+    private final LatencyHistogram createTime = new LatencyHistogram();
+    private ObjectName objectName;
+
+    /**
+     * Membuat pool baru; koneksi awal sebanyak initialSize dibuat di background
+     * sehingga constructor tidak pernah menunggu database
+     * @param name Nama pool untuk logging
+     * @param url JDBC URL
+     * @param connectionProperties Properties untuk driver (user, password, dll)
+     * @param settings Pengaturan pool
+     * @param defaultReadOnly true jika semua koneksi di pool ini read-only
+     */
+    public ConnectionPool(String name, String url, Properties connectionProperties,
+                          PoolSettings settings, boolean defaultReadOnly) {
+        this.name = name;
+        this.url = url;
+        this.connectionProperties = connectionProperties;
+        this.settings = settings;
+        this.defaultReadOnly = defaultReadOnly;
+        this.permits = new Semaphore(settings.getMaxTotal(), settings.isFair());
+        this.circuitBreaker = new CircuitBreaker(settings.getCircuitFailureThreshold(), settings.getCircuitOpenMillis());
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-" + name + "-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getTimeBetweenEvictionRunsMillis();
+        if (interval > 0) {
+            maintenance.scheduleWithFixedDelay(this::evict, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        if (settings.getLeakDetectionThresholdMillis() > 0) {
+            long threshold = settings.getLeakDetectionThresholdMillis();
+            this.leakDetector = new LeakDetector(name, threshold);
+            long checkInterval = Math.max(threshold / 2, 50);
+            maintenance.scheduleWithFixedDelay(leakDetector::check, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.leakDetector = null;
+        }
+
+        if (settings.getInitialSize() > 0) {
+            maintenance.execute(() -> prefill(settings.getInitialSize()));
+        }
+        registerMBean();
+    }
+
+    /**
+     * Meminjam koneksi dari pool
+     * Menggunakan koneksi idle jika ada, membuat koneksi baru jika masih di bawah maxTotal,
+     * atau menunggu koneksi dikembalikan sampai maxWaitMillis
+     * @return Connection yang harus di-close() untuk dikembalikan ke pool
+     * @throws SQLException jika timeout atau gagal membuat koneksi
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool '" + name + "' sudah ditutup", "08003");
+        }
+        if (!circuitBreaker.allowRequest()) {
+            throw circuitOpenException();
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.getMaxWaitMillis());
+        pendingThreads.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(settings.getMaxWaitMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw timeoutException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted saat menunggu koneksi dari pool '" + name + "'", "08001", e);
+        } finally {
+            pendingThreads.decrementAndGet();
+        }
+
+        try {
+            Connection connection = acquire(deadline).checkout();
+            acquisitions.increment();
+            acquireWait.record(System.nanoTime() - start);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Mengambil koneksi fisik setelah permit didapat
+     */
+    private PooledConnection acquire(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pooled = idleConnections.pollFirst();
+            if (pooled != null) {
+                if (isUsable(pooled)) {
+                    return pooled;
+                }
+                discard(pooled);
+                continue;
+            }
+
+            // Breaker bisa OPEN selama caller menunggu permit - jangan mencoba connect lagi
+            if (!circuitBreaker.allowRequest()) {
+                throw circuitOpenException();
+            }
+
+            // Tidak ada koneksi idle - buat baru jika masih di bawah maxTotal
+            if (totalConnections.incrementAndGet() <= settings.getMaxTotal()) {
+                try {
+                    return new PooledConnection(this, createPhysicalConnection());
+                } catch (SQLException | RuntimeException e) {
+                    totalConnections.decrementAndGet();
+                    throw e;
+                }
+            }
+            totalConnections.decrementAndGet();
+
+            // Semua slot terpakai oleh koneksi idle yang baru saja dikembalikan - tunggu sebentar
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                timeouts.increment();
+                throw timeoutException();
+            }
+            try {
+                pooled = idleConnections.pollFirst(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted saat menunggu koneksi dari pool '" + name + "'", "08001", e);
+            }
+            if (pooled != null) {
+                if (isUsable(pooled)) {
+                    return pooled;
+                }
+                discard(pooled);
+            }
+        }
+    }
+
+    /**
+     * Mengembalikan koneksi ke pool, dipanggil dari proxy Connection.close()
+     */
+    void returnConnection(PooledConnection pooled) {
+        try {
+            if (closed || pooled.getPhysical().isClosed()) {
+                discard(pooled);
+                return;
+            }
+            pooled.reset(defaultReadOnly);
+            if (idleConnections.size() >= settings.getMaxIdle()) {
+                discard(pooled);
+            } else {
+                idleConnections.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            logger.warning("Koneksi rusak dibuang dari pool '" + name + "': " + e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Cek apakah koneksi idle masih bisa dipakai
+     * Koneksi yang sudah lama idle divalidasi dengan round-trip ke database
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.getPhysical().isClosed()) {
+                return false;
+            }
+            if (pooled.idleMillis(System.currentTimeMillis()) < settings.getValidateAfterIdleMillis()) {
+                return true;
+            }
+            return pooled.getPhysical().isValid(5);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Menutup koneksi fisik dan mengurangi counter total
+     */
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        connectionsClosed.increment();
+        pooled.closePhysical();
+    }
+
+    /**
+     * Membuat koneksi fisik baru ke database
+     */
+    private Connection createPhysicalConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            Driver current = driver;
+            if (current == null) {
+                current = DriverManager.getDriver(url);
+                driver = current;
+            }
+            connection = current.connect(url, connectionProperties);
+            if (connection == null) {
+                throw new SQLException("Driver tidak menerima URL: " + url, "08001");
+            }
+        } catch (SQLException | RuntimeException e) {
+            connectionCreateFailures.increment();
+            if (circuitBreaker.recordFailure()) {
+                logger.warning("Circuit breaker pool '" + name + "' OPEN setelah " + settings.getCircuitFailureThreshold()
+                        + " kegagalan koneksi berturut-turut: " + e.getMessage());
+                scheduleProbe();
+            }
+            throw e;
+        }
+        circuitBreaker.recordSuccess();
+        connectionsCreated.increment();
+        createTime.record(System.nanoTime() - start);
+        if (defaultReadOnly) {
+            connection.setReadOnly(true);
+        }
+        logger.fine("Koneksi fisik baru dibuat untuk pool '" + name + "'");
+        return connection;
+    }
+
+    /**
+     * Mengisi pool dengan koneksi idle
+     * @param count jumlah koneksi yang ingin ditambahkan
+     */
+    void prefill(int count) {
+        for (int i = 0; i < count && !closed; i++) {
+            if (totalConnections.incrementAndGet() > settings.getMaxTotal()) {
+                totalConnections.decrementAndGet();
+                return;
+            }
+            try {
+                idleConnections.offerLast(new PooledConnection(this, createPhysicalConnection()));
+            } catch (SQLException e) {
+                totalConnections.decrementAndGet();
+                logger.warning("Gagal membuat koneksi awal untuk pool '" + name + "': " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Eviction run - menutup koneksi idle yang terlalu lama tidak dipakai
+     * lalu menambah koneksi sampai minIdle terpenuhi
+     */
+    void evict() {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext() && idleConnections.size() > settings.getMinIdle()) {
+            PooledConnection pooled = iterator.next();
+            if (pooled.idleMillis(now) >= settings.getMinEvictableIdleTimeMillis()
+                    && idleConnections.removeLastOccurrence(pooled)) {
+                discard(pooled);
+                logger.fine("Koneksi idle di-evict dari pool '" + name + "'");
+            }
+        }
+
+        int missing = settings.getMinIdle() - idleConnections.size();
+        if (missing > 0) {
+            prefill(missing);
+        }
+    }
+
+    /**
+     * Menjadwalkan probe half-open setelah circuitOpenMillis
+     */
+    private void scheduleProbe() {
+        if (closed) {
+            return;
+        }
+        try {
+            maintenance.schedule(this::probe, settings.getCircuitOpenMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.fine("Probe circuit breaker tidak dijadwalkan, pool '" + name + "' sudah ditutup");
+        }
+    }
+
+    /**
+     * Probe half-open di maintenance thread - mencoba satu koneksi baru ke database
+     * Jika berhasil, breaker CLOSED dan koneksi probe langsung masuk ke pool sebagai koneksi idle
+     */
+    void probe() {
+        if (closed || !circuitBreaker.tryHalfOpen()) {
+            return;
+        }
+        Connection connection;
+        try {
+            connection = createPhysicalConnection();
+        } catch (SQLException | RuntimeException e) {
+            circuitBreaker.probeFailed();
+            logger.fine("Probe circuit breaker pool '" + name + "' gagal: " + e.getMessage());
+            scheduleProbe();
+            return;
+        }
+
+        circuitBreaker.probeSucceeded();
+        logger.info("Circuit breaker pool '" + name + "' CLOSED - database bisa dihubungi kembali");
+        if (totalConnections.incrementAndGet() <= settings.getMaxTotal()) {
+            idleConnections.offerFirst(new PooledConnection(this, connection));
+        } else {
+            totalConnections.decrementAndGet();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logDiscardFailure(e);
+            }
+        }
+    }
+
+    /**
+     * Menutup pool dan semua koneksi idle
+     * Koneksi yang sedang dipinjam akan ditutup ketika dikembalikan
+     */
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        unregisterMBean();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            discard(pooled);
+        }
+        logger.info("Connection pool '" + name + "' ditutup");
+    }
+
+    private SQLException circuitOpenException() {
+        return new SQLException("Database untuk pool '" + name + "' tidak bisa dihubungi (circuit breaker "
+                + circuitBreaker.getState() + ", coba lagi dalam " + settings.getCircuitOpenMillis() + " ms)", "08001");
+    }
+
+    private SQLException timeoutException() {
+        return new SQLException("Timeout menunggu koneksi dari pool '" + name + "' setelah "
+                + settings.getMaxWaitMillis() + " ms (active: " + getActiveCount()
+                + ", maxTotal: " + settings.getMaxTotal() + ")", "08001");
+    }
+
+    /**
+     * Mendaftarkan pool ke platform MBeanServer supaya bisa dimonitor lewat JMX
+     * MBean pool lain yang masih hidup dengan nama yang sama tidak pernah dilepas; pool ini
+     * didaftarkan dengan suffix (name#2, name#3, ...) dan sebuah warning dicatat
+     */
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (int attempt = 1; ; attempt++) {
+                String mbeanName = attempt == 1 ? name : name + "#" + attempt;
+                ObjectName candidate = new ObjectName("com.praktikum.database.testing.library:type=ConnectionPool,name="
+                        + ObjectName.quote(mbeanName));
+                try {
+                    server.registerMBean(this, candidate);
+                } catch (InstanceAlreadyExistsException e) {
+                    continue;
+                }
+                if (attempt > 1) {
+                    logger.warning("MBean untuk pool '" + name + "' sudah dipakai pool lain - didaftarkan sebagai "
+                            + candidate);
+                }
+                objectName = candidate;
+                return;
+            }
+        } catch (JMException e) {
+            logger.warning("Gagal mendaftarkan MBean untuk pool '" + name + "': " + e.getMessage());
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            logger.fine("Gagal unregister MBean pool '" + name + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Snapshot metrics pool saat ini (pull API)
+     * @return PoolMetrics berisi gauge, counter dan histogram waktu tunggu
+     */
+    public PoolMetrics getMetrics() {
+        long now = System.currentTimeMillis();
+        return PoolMetrics.builder()
+                .poolName(name)
+                .timestampMillis(now)
+                .uptimeMillis(now - createdAtMillis)
+                .activeConnections(getActiveCount())
+                .idleConnections(getIdleCount())
+                .totalConnections(getTotalCount())
+                .pendingThreads(pendingThreads.get())
+                .maxTotal(settings.getMaxTotal())
+                .acquisitions(acquisitions.sum())
+                .timeouts(timeouts.sum())
+                .connectionsCreated(connectionsCreated.sum())
+                .connectionCreateFailures(connectionCreateFailures.sum())
+                .connectionsClosed(connectionsClosed.sum())
+                .acquireWaitMeanMillis(acquireWait.getMeanMillis())
+                .acquireWaitP50Millis(acquireWait.getPercentileMillis(50))
+                .acquireWaitP95Millis(acquireWait.getPercentileMillis(95))
+                .acquireWaitP99Millis(acquireWait.getPercentileMillis(99))
+                .acquireWaitMaxMillis(acquireWait.getMaxMillis())
+                .acquireWaitHistogram(acquireWait.getBucketCounts())
+                .createTimeMeanMillis(createTime.getMeanMillis())
+                .createTimeMaxMillis(createTime.getMaxMillis())
+                .statementCacheHits(statementCacheHits.sum())
+                .statementCacheMisses(statementCacheMisses.sum())
+                .statementCacheEvictions(statementCacheEvictions.sum())
+                .circuitState(circuitBreaker.getState().name())
+                .circuitTrips(circuitBreaker.getTripCount())
+                .circuitRejections(circuitBreaker.getRejectionCount())
+                .suspectedLeaks(getSuspectedLeakCount())
+                .unclosedResources(getUnclosedResourceCount())
+                .build();
+    }
+
+    // ConnectionPoolMXBean
+
+    @Override
+    public int getActiveConnections() {
+        return getActiveCount();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return getIdleCount();
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return getTotalCount();
+    }
+
+    @Override
+    public int getPendingThreads() {
+        return pendingThreads.get();
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return settings.getMaxTotal();
+    }
+
+    @Override
+    public long getAcquisitionCount() {
+        return acquisitions.sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    @Override
+    public long getConnectionCreateFailures() {
+        return connectionCreateFailures.sum();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    @Override
+    public double getAcquireWaitMeanMillis() {
+        return acquireWait.getMeanMillis();
+    }
+
+    @Override
+    public double getAcquireWaitP95Millis() {
+        return acquireWait.getPercentileMillis(95);
+    }
+
+    @Override
+    public double getAcquireWaitP99Millis() {
+        return acquireWait.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getAcquireWaitMaxMillis() {
+        return acquireWait.getMaxMillis();
+    }
+
+    @Override
+    public double getCreateTimeMeanMillis() {
+        return createTime.getMeanMillis();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    @Override
+    public String getCircuitState() {
+        return circuitBreaker.getState().name();
+    }
+
+    @Override
+    public long getCircuitRejectionCount() {
+        return circuitBreaker.getRejectionCount();
+    }
+
+    @Override
+    public long getSuspectedLeakCount() {
+        return leakDetector != null ? leakDetector.getSuspectedLeaks() : 0;
+    }
+
+    @Override
+    public long getUnclosedResourceCount() {
+        return leakDetector != null ? leakDetector.getUnclosedResources() : 0;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    LeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    void recordStatementCacheHit() {
+        statementCacheHits.increment();
+    }
+
+    void recordStatementCacheMiss() {
+        statementCacheMisses.increment();
+    }
+
+    void recordStatementCacheEviction() {
+        statementCacheEvictions.increment();
+    }
+
+    void logDiscardFailure(SQLException e) {
+        logger.fine("Gagal menutup koneksi fisik di pool '" + name + "': " + e.getMessage());
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public PoolSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Jumlah koneksi yang sedang dipinjam
+     */
+    public int getActiveCount() {
+        return settings.getMaxTotal() - permits.availablePermits();
+    }
+
+    /**
+     * Jumlah koneksi idle yang siap dipinjam
+     */
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Jumlah total koneksi fisik (active + idle)
+     */
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,53 @@
+package com.praktikum.database.testing.library.config;
+
+/**
+ * JMX interface untuk monitoring ConnectionPool (misalnya lewat JConsole / VisualVM)
+ * Terdaftar dengan ObjectName com.praktikum.database.testing.library:type=ConnectionPool,name=&lt;nama pool&gt;
+ */
+public interface ConnectionPoolMXBean {
+    String getName();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getTotalConnections();
+
+    int getPendingThreads();
+
+    int getMaxTotal();
+
+    long getAcquisitionCount();
+
+    long getTimeoutCount();
+
+    long getConnectionsCreated();
+
+    long getConnectionCreateFailures();
+
+    long getConnectionsClosed();
+
+    double getAcquireWaitMeanMillis();
+
+    double getAcquireWaitP95Millis();
+
+    double getAcquireWaitP99Millis();
+
+    double getAcquireWaitMaxMillis();
+
+    double getCreateTimeMeanMillis();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    // CLOSED, OPEN atau HALF_OPEN
+    String getCircuitState();
+
+    long getCircuitRejectionCount();
+
+    // Hanya terisi jika db.leak.detection.enabled=true
+    long getSuspectedLeakCount();
+
+    long getUnclosedResourceCount();
+}
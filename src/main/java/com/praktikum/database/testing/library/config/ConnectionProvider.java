@@ -0,0 +1,49 @@
+package com.praktikum.database.testing.library.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sumber koneksi untuk DAO
+ * DAO tidak memanggil DatabaseConfig secara langsung, sehingga bisa diberi provider lain
+ * (misalnya TransactionManager supaya beberapa DAO berbagi satu koneksi dalam satu transaksi)
+ */
+public interface ConnectionProvider {
+
+    /**
+     * Koneksi read-write ke primary shard tertentu
+     * Koneksi harus di-close() setelah dipakai
+     */
+    Connection getConnection(int shard) throws SQLException;
+
+    /**
+     * Koneksi untuk query read-only ke shard tertentu (boleh dari replica)
+     * Koneksi harus di-close() setelah dipakai
+     */
+    Connection getReadConnection(int shard) throws SQLException;
+
+    /**
+     * Jumlah shard yang dikonfigurasi
+     */
+    int getShardCount();
+
+    /**
+     * Shard tempat data seorang user disimpan
+     */
+    int shardForUser(Integer userId);
+
+    /**
+     * Dipanggil DAO setelah write berhasil dieksekusi, untuk read-your-writes
+     * (lihat db.read.stickyAfterWriteMillis); default tidak melakukan apa-apa
+     */
+    default void markWrite() {
+    }
+
+    default Connection getConnection() throws SQLException {
+        return getConnection(0);
+    }
+
+    default Connection getReadConnection() throws SQLException {
+        return getReadConnection(0);
+    }
+}
@@ -3,9 +3,21 @@ package com.praktikum.database.testing.library.config;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
@@ -25,12 +37,64 @@ public class DatabaseConfig {
     private static String DB_PASSWORD;
     private static String DB_DRIVER;
 
+    // Mode pooler di depan database (Supabase/PgBouncer), lihat PoolerMode
+    private static PoolerMode poolerMode = PoolerMode.SESSION;
+
+    // Node database per shard (primary + replica), dibuat lazy saat koneksi pertama diminta
+    // Tanpa db.shard.N.url hanya ada satu node (shard 0) dari db.url
+    private static volatile List<DatabaseNode> nodes;
+    private static volatile ShardFunction shardFunction = ShardFunction.HASH;
+    // Executor untuk scatter-gather query ke banyak shard
+    private static volatile ExecutorService shardExecutor;
+
+    // Read-your-writes: setelah write, read dari thread yang sama tetap ke primary selama window ini
+    private static long stickyAfterWriteMillis;
+    private static final ThreadLocal<long[]> lastWriteAt = ThreadLocal.withInitial(() -> new long[1]);
+    // Kedalaman onPrimary() pada thread ini - selama > 0 semua read diarahkan ke primary
+    private static final ThreadLocal<int[]> primaryScope = ThreadLocal.withInitial(() -> new int[1]);
+
+    // Property angka yang sudah di-parse oleh getPositiveInt / getPositiveLong
+    private static final Map<String, Integer> positiveIntCache = new ConcurrentHashMap<>();
+    private static final Map<String, Long> positiveLongCache = new ConcurrentHashMap<>();
+
+    // ConnectionProvider default untuk DAO dan service, dengan dukungan transaksi yang terikat ke thread
+    private static final TransactionManager transactionManager = new TransactionManager(new PooledConnectionProvider());
+
+    // Lock untuk pembuatan/penutupan pool - ReentrantLock (bukan synchronized) supaya virtual thread
+    // yang menunggu tidak mem-pin carrier thread
+    private static final ReentrantLock lifecycleLock = new ReentrantLock();
+
+    /**
+     * Mode pooler (Supabase Supavisor / PgBouncer) di depan database, dari property db.pooler.mode
+     * - SESSION: satu koneksi server per koneksi client (port 5432), semua fitur session aman dipakai
+     * - TRANSACTION: koneksi server hanya dipinjam selama satu transaksi (port 6543).
+     *   Named server-side prepared statement dan state session (SET, temp table, session advisory lock)
+     *   tidak boleh dipakai karena transaksi berikutnya bisa berjalan di koneksi server lain
+     */
+    public enum PoolerMode {
+        SESSION,
+        TRANSACTION
+    }
+
+    /**
+     * Status kesiapan database yang dilaporkan oleh startup check
+     */
+    public enum Readiness {
+        NOT_CHECKED, CHECKING, READY, FAILED
+    }
+
+    // Hasil startup check yang berjalan di background
+    private static volatile CompletableFuture<Boolean> startupCheck;
+    private static volatile Readiness readiness = Readiness.NOT_CHECKED;
+
     // Static initialization block - dieksekusi sekali ketika class pertama kali loaded
     static {
-        // Load configuration ketika class pertama kali di-load
+        // Load configuration ketika class pertama kali di-load (hanya baca file, tanpa koneksi)
         loadProperties();
-        // Test koneksi database saat startup
-        testConnection();
+        // Test koneksi database saat startup dijalankan di background supaya class loading tidak blocking
+        if (Boolean.parseBoolean(properties.getProperty("db.test.on.startup", "false").trim())) {
+            checkReadinessAsync();
+        }
     }
 
     /**
@@ -50,12 +114,25 @@ public class DatabaseConfig {
 
             // Load properties dari file
             properties.load(input);
+            // System property db.* (misalnya -Ddb.pooler.mode=transaction) menimpa nilai dari file
+            for (String key : System.getProperties().stringPropertyNames()) {
+                if (key.startsWith("db.")) {
+                    properties.setProperty(key, System.getProperty(key));
+                }
+            }
 
             // Baca nilai dari properties file
             DB_URL = properties.getProperty("db.url");
             DB_USERNAME = properties.getProperty("db.username");
             DB_PASSWORD = properties.getProperty("db.password");
             DB_DRIVER = properties.getProperty("db.driver");
+            stickyAfterWriteMillis = PoolSettings.getLong(properties, "db.read.stickyAfterWriteMillis", 0);
+            poolerMode = parsePoolerMode(properties.getProperty("db.pooler.mode"));
+            String shardFunctionClass = properties.getProperty("db.shard.function");
+            if (shardFunctionClass != null && !shardFunctionClass.trim().isEmpty()) {
+                shardFunction = (ShardFunction) Class.forName(shardFunctionClass.trim())
+                        .getDeclaredConstructor().newInstance();
+            }
 
             // Validasi bahwa semua configuration required ada
             validateConfiguration();
@@ -64,7 +141,7 @@ public class DatabaseConfig {
             Class.forName(DB_DRIVER);
 
             logger.info("Database configuration berhasil di-load");
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException | ReflectiveOperationException e) {
             // Log error dan throw runtime exception
             logger.severe("Error: Gagal load database configuration: " + e.getMessage());
             throw new RuntimeException("Error konfigurasi database", e);
@@ -91,17 +168,171 @@ public class DatabaseConfig {
     }
 
     /**
-     * Mendapatkan koneksi database baru
+     * Parse nilai db.pooler.mode (case-insensitive), default SESSION
+     */
+    private static PoolerMode parsePoolerMode(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return PoolerMode.SESSION;
+        }
+        try {
+            return PoolerMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("db.pooler.mode harus 'session' atau 'transaction': " + value, e);
+        }
+    }
+
+    /**
+     * Membuat properties untuk JDBC driver dari configuration
+     * Timeout di file properties dalam milliseconds, sedangkan pgjdbc memakai detik
+     * @return Properties berisi credentials dan pengaturan koneksi
+     */
+    static Properties buildConnectionProperties() {
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("user", DB_USERNAME);
+        connectionProperties.setProperty("password", DB_PASSWORD);
+
+        long connectTimeout = PoolSettings.getLong(properties, "db.connection.timeout", 0);
+        if (connectTimeout > 0) {
+            connectionProperties.setProperty("connectTimeout", String.valueOf(Math.max(1, connectTimeout / 1000)));
+        }
+        long socketTimeout = PoolSettings.getLong(properties, "db.socket.timeout", 0);
+        if (socketTimeout > 0) {
+            connectionProperties.setProperty("socketTimeout", String.valueOf(Math.max(1, socketTimeout / 1000)));
+        }
+        if (properties.getProperty("db.ssl") != null) {
+            connectionProperties.setProperty("ssl", properties.getProperty("db.ssl").trim());
+        }
+        if (properties.getProperty("db.sslmode") != null) {
+            connectionProperties.setProperty("sslmode", properties.getProperty("db.sslmode").trim());
+        }
+        // Setelah prepareThreshold eksekusi, pgjdbc memakai named server-side statement (parse/plan sekali)
+        if (properties.getProperty("db.prepareThreshold") != null) {
+            connectionProperties.setProperty("prepareThreshold", properties.getProperty("db.prepareThreshold").trim());
+        }
+        if (properties.getProperty("db.preparedStatementCacheQueries") != null) {
+            connectionProperties.setProperty("preparedStatementCacheQueries",
+                    properties.getProperty("db.preparedStatementCacheQueries").trim());
+        }
+        // pgjdbc menulis ulang INSERT yang di-addBatch menjadi INSERT multi-row (lebih sedikit round trip)
+        if (properties.getProperty("db.reWriteBatchedInserts") != null) {
+            connectionProperties.setProperty("reWriteBatchedInserts",
+                    properties.getProperty("db.reWriteBatchedInserts").trim());
+        }
+        if (poolerMode == PoolerMode.TRANSACTION) {
+            // Named statement (S_1, S_2, ...) hanya ada di koneksi server tempat dia di-prepare;
+            // prepareThreshold=0 membuat pgjdbc selalu memakai unnamed statement (parse+bind+execute per query).
+            // PreparedStatement tetap di-cache di sisi client oleh StatementCache
+            connectionProperties.setProperty("prepareThreshold", "0");
+            connectionProperties.setProperty("preparedStatementCacheQueries", "0");
+            // setReadOnly() hanya diterapkan per transaksi (BEGIN READ ONLY), bukan SET SESSION CHARACTERISTICS
+            connectionProperties.setProperty("readOnlyMode", "transaction");
+        }
+        return connectionProperties;
+    }
+
+    /**
+     * TransactionManager default yang dipakai DAO dan service jika tidak diberi ConnectionProvider lain
+     * Melalui inTransaction() beberapa DAO bisa berbagi satu koneksi dan satu transaksi
+     */
+    public static TransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    /**
+     * Mode pooler yang dikonfigurasi lewat db.pooler.mode
+     */
+    public static PoolerMode getPoolerMode() {
+        return poolerMode;
+    }
+
+    /**
+     * Mendapatkan koneksi database dari connection pool
+     * Koneksi harus di-close() setelah dipakai supaya dikembalikan ke pool
      * @return Connection object untuk berinteraksi dengan database
-     * @throws SQLException jika gagal membuat koneksi
+     * @throws SQLException jika gagal membuat koneksi atau timeout menunggu pool
      */
     public static Connection getConnection() throws SQLException {
-        // Gunakan DriverManager untuk membuat koneksi
-        return DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
+        return getConnection(0);
+    }
+
+    /**
+     * Mendapatkan koneksi read-write ke primary dari shard tertentu
+     * @param shard index shard (0 jika sharding tidak dipakai)
+     * @return Connection ke primary shard tersebut
+     * @throws SQLException jika gagal membuat koneksi atau timeout menunggu pool
+     */
+    public static Connection getConnection(int shard) throws SQLException {
+        return getNode(shard).getConnection();
+    }
+
+    /**
+     * Menandai bahwa thread ini baru saja melakukan write yang sudah di-commit
+     * Selama db.read.stickyAfterWriteMillis berikutnya, read dari thread ini diarahkan ke primary
+     * Dipanggil lewat ConnectionProvider.markWrite(), bukan saat koneksi primary dipinjam,
+     * supaya read di primary (onPrimary, alokasi id, test koneksi) tidak ikut menahan read di primary
+     */
+    public static void markWrite() {
+        if (stickyAfterWriteMillis > 0) {
+            lastWriteAt.get()[0] = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Mendapatkan koneksi read-only untuk query yang tidak mengubah data
+     * Diarahkan ke replica dari db.read.url jika ada, kecuali:
+     * - di dalam onPrimary(), atau
+     * - thread ini melakukan write dalam db.read.stickyAfterWriteMillis terakhir (read-your-writes)
+     * @return Connection ke replica (read-only) atau ke primary
+     * @throws SQLException jika gagal mendapatkan koneksi
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return getReadConnection(0);
+    }
+
+    /**
+     * Mendapatkan koneksi read-only ke shard tertentu, dengan aturan routing yang sama
+     * seperti getReadConnection()
+     * @param shard index shard (0 jika sharding tidak dipakai)
+     * @return Connection ke replica (read-only) atau ke primary shard tersebut
+     * @throws SQLException jika gagal mendapatkan koneksi
+     */
+    public static Connection getReadConnection(int shard) throws SQLException {
+        if (isReadPinnedToPrimary()) {
+            return getNode(shard).getConnection();
+        }
+        return getNode(shard).getReadConnection();
     }
 
     /**
-     * Menutup koneksi database
+     * @return true jika read dari thread ini harus ke primary (onPrimary() atau read-your-writes window)
+     */
+    public static boolean isReadPinnedToPrimary() {
+        if (primaryScope.get()[0] > 0) {
+            return true;
+        }
+        return stickyAfterWriteMillis > 0
+                && System.currentTimeMillis() - lastWriteAt.get()[0] < stickyAfterWriteMillis;
+    }
+
+    /**
+     * Menjalankan work dengan semua read diarahkan ke primary
+     * Dipakai untuk alur transaksional yang tidak boleh membaca data basi dari replica
+     * @param work unit kerja database
+     * @return hasil dari work
+     * @throws SQLException jika work gagal
+     */
+    public static <T> T onPrimary(SqlCallable<T> work) throws SQLException {
+        int[] depth = primaryScope.get();
+        depth[0]++;
+        try {
+            return work.call();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * Menutup koneksi database (mengembalikan koneksi ke pool)
      * @param conn Koneksi yang akan ditutup
      */
     public static void closeConnection(Connection conn) {
@@ -136,6 +367,64 @@ public class DatabaseConfig {
         }
     }
 
+    /**
+     * Menjalankan test koneksi di background thread
+     * Hasilnya bisa dicek melalui getReadiness(), isReady() atau awaitReady()
+     * @return CompletableFuture yang selesai dengan hasil test koneksi
+     */
+    public static CompletableFuture<Boolean> checkReadinessAsync() {
+        lifecycleLock.lock();
+        try {
+            if (startupCheck != null && !startupCheck.isDone()) {
+                return startupCheck;
+            }
+            readiness = Readiness.CHECKING;
+            Executor backgroundThread = task -> {
+                Thread thread = new Thread(task, "db-startup-check");
+                thread.setDaemon(true);
+                thread.start();
+            };
+            startupCheck = CompletableFuture.supplyAsync(DatabaseConfig::testConnection, backgroundThread)
+                    .whenComplete((valid, error) ->
+                            readiness = Boolean.TRUE.equals(valid) ? Readiness.READY : Readiness.FAILED);
+            return startupCheck;
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Status kesiapan database dari startup check terakhir
+     */
+    public static Readiness getReadiness() {
+        return readiness;
+    }
+
+    /**
+     * @return true jika startup check terakhir berhasil
+     */
+    public static boolean isReady() {
+        return readiness == Readiness.READY;
+    }
+
+    /**
+     * Menunggu hasil startup check sampai batas waktu tertentu
+     * Jika belum pernah ada check, check baru akan dijalankan
+     * @param timeoutMillis waktu maksimum menunggu
+     * @return true jika database siap dalam batas waktu
+     */
+    public static boolean awaitReady(long timeoutMillis) {
+        CompletableFuture<Boolean> check = startupCheck != null ? startupCheck : checkReadinessAsync();
+        try {
+            return check.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
     /**
      * Print informasi database untuk debugging purposes
      */
@@ -154,6 +443,290 @@ public class DatabaseConfig {
         }
     }
 
+    /**
+     * Menutup connection pool dan semua koneksi idle
+     * Dipanggil ketika aplikasi berhenti
+     */
+    public static void shutdown() {
+        List<DatabaseNode> current;
+        ExecutorService executor;
+        lifecycleLock.lock();
+        try {
+            current = nodes;
+            nodes = null;
+            executor = shardExecutor;
+            shardExecutor = null;
+        } finally {
+            lifecycleLock.unlock();
+        }
+        // Tutup koneksi di luar lock karena melibatkan network I/O
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (current != null) {
+            current.forEach(DatabaseNode::close);
+        }
+    }
+
+    /**
+     * Getter untuk connection pool primary shard 0 (digunakan untuk monitoring dan testing)
+     */
+    public static ConnectionPool getPool() {
+        return getNode(0).getPrimaryPool();
+    }
+
+    /**
+     * Snapshot metrics semua pool (primary dan replica di setiap shard)
+     * Berguna untuk membedakan latency karena pool penuh vs latency database
+     * @return list PoolMetrics, satu per pool
+     */
+    public static List<PoolMetrics> getPoolMetrics() {
+        List<PoolMetrics> metrics = new ArrayList<>();
+        for (DatabaseNode current : getNodes()) {
+            metrics.add(current.getPrimaryPool().getMetrics());
+            for (ConnectionPool replica : current.getReplicaPools()) {
+                metrics.add(replica.getMetrics());
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Getter untuk node database (primary + replica) shard 0
+     */
+    public static DatabaseNode getNode() {
+        return getNode(0);
+    }
+
+    /**
+     * Getter untuk node database dari shard tertentu
+     * @param shard index shard antara 0 dan getShardCount() - 1
+     */
+    public static DatabaseNode getNode(int shard) {
+        List<DatabaseNode> current = getNodes();
+        if (shard < 0 || shard >= current.size()) {
+            throw new IllegalArgumentException("Shard " + shard + " tidak ada (jumlah shard: " + current.size() + ")");
+        }
+        return current.get(shard);
+    }
+
+    /**
+     * Semua node database, satu per shard
+     * Node dibuat saat pertama kali diminta; pembuatan pool tidak membuka koneksi secara synchronous
+     */
+    public static List<DatabaseNode> getNodes() {
+        List<DatabaseNode> current = nodes;
+        if (current == null) {
+            lifecycleLock.lock();
+            try {
+                current = nodes;
+                if (current == null) {
+                    current = createNodes();
+                    nodes = current;
+                }
+            } finally {
+                lifecycleLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Membuat node dari db.shard.N.url (N mulai dari 0, berurutan)
+     * Jika tidak ada shard yang dikonfigurasi, dibuat satu node dari db.url dan db.read.url
+     */
+    private static List<DatabaseNode> createNodes() {
+        Properties connectionProperties = buildConnectionProperties();
+        PoolSettings settings = PoolSettings.fromProperties(properties);
+        List<DatabaseNode> created = new ArrayList<>();
+
+        for (int shard = 0; properties.getProperty("db.shard." + shard + ".url") != null; shard++) {
+            created.add(new DatabaseNode("shard-" + shard,
+                    properties.getProperty("db.shard." + shard + ".url").trim(),
+                    parseUrlList(properties.getProperty("db.shard." + shard + ".read.url")),
+                    connectionProperties, settings));
+        }
+        if (created.isEmpty()) {
+            created.add(new DatabaseNode("primary", DB_URL, parseUrlList(properties.getProperty("db.read.url")),
+                    connectionProperties, settings));
+        } else {
+            logger.info("Sharding aktif dengan " + created.size() + " shard");
+        }
+        return Collections.unmodifiableList(created);
+    }
+
+    /**
+     * Jumlah shard yang dikonfigurasi (1 jika sharding tidak dipakai)
+     */
+    public static int getShardCount() {
+        return getNodes().size();
+    }
+
+    /**
+     * Menentukan shard untuk user_id memakai ShardFunction yang aktif
+     * @param userId user_id (null di-route ke shard 0)
+     * @return index shard
+     */
+    public static int shardForUser(Integer userId) {
+        int shardCount = getShardCount();
+        if (shardCount == 1 || userId == null) {
+            return 0;
+        }
+        return shardFunction.shardFor(userId, shardCount);
+    }
+
+    /**
+     * Mengganti fungsi sharding (misalnya untuk routing berdasarkan cabang)
+     * @param function ShardFunction baru
+     */
+    public static void setShardFunction(ShardFunction function) {
+        if (function == null) {
+            throw new IllegalArgumentException("ShardFunction tidak boleh null");
+        }
+        shardFunction = function;
+    }
+
+    /**
+     * Executor untuk menjalankan query paralel ke semua shard (scatter-gather)
+     */
+    public static ExecutorService getShardExecutor() {
+        ExecutorService current = shardExecutor;
+        if (current == null) {
+            lifecycleLock.lock();
+            try {
+                current = shardExecutor;
+                if (current == null) {
+                    current = Executors.newCachedThreadPool(task -> {
+                        Thread thread = new Thread(task, "db-shard-query");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    shardExecutor = current;
+                }
+            } finally {
+                lifecycleLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Parse daftar JDBC URL yang dipisahkan koma
+     */
+    static List<String> parseUrlList(String value) {
+        List<String> urls = new ArrayList<>();
+        if (value != null) {
+            for (String url : value.split(",")) {
+                if (!url.trim().isEmpty()) {
+                    urls.add(url.trim());
+                }
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Jumlah row maksimal per statement untuk createAll di DAO (db.batch.size, default 500)
+     */
+    public static int getBatchSize() {
+        return getPositiveInt("db.batch.size", 500);
+    }
+
+    /**
+     * Jumlah id maksimal per query findByIds di DAO (db.multiget.size, default 1000)
+     */
+    public static int getMultiGetSize() {
+        return getPositiveInt("db.multiget.size", 1000);
+    }
+
+    /**
+     * Jumlah row per fetch untuk streamAll / streamOverdue di DAO (db.stream.fetchSize, default 1000)
+     */
+    public static int getStreamFetchSize() {
+        return getPositiveInt("db.stream.fetchSize", 1000);
+    }
+
+    /**
+     * Ukuran chunk update overdue (db.overdue.chunkSize, default 1000)
+     */
+    public static int getOverdueChunkSize() {
+        return getPositiveInt("db.overdue.chunkSize", 1000);
+    }
+
+    /**
+     * Jumlah worker job overdue (db.overdue.workers, default jumlah prosesor)
+     */
+    public static int getOverdueWorkers() {
+        return getPositiveInt("db.overdue.workers", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Jumlah partisi range borrowing_id per shard untuk job overdue (db.overdue.partitions, default 16)
+     */
+    public static int getOverduePartitions() {
+        return getPositiveInt("db.overdue.partitions", 16);
+    }
+
+    /**
+     * Lama lease partisi job overdue (db.overdue.leaseMillis, default 60000)
+     */
+    public static long getOverdueLeaseMillis() {
+        return getPositiveLong("db.overdue.leaseMillis", 60000);
+    }
+
+    /**
+     * Interval tick OverdueScheduler (db.overdue.scheduler.intervalMillis, default 300000)
+     */
+    public static long getOverdueSchedulerIntervalMillis() {
+        return getPositiveLong("db.overdue.scheduler.intervalMillis", 300000);
+    }
+
+    /**
+     * Ukuran buffer COPY per shard untuk BulkLoader dalam byte (db.copy.bufferSize, default 65536)
+     */
+    public static int getCopyBufferSize() {
+        return getPositiveInt("db.copy.bufferSize", 65536);
+    }
+
+    /**
+     * Membaca property angka yang harus lebih dari 0, di-parse sekali lalu di-cache
+     * (dipanggil per batch / per query oleh DAO)
+     * @throws IllegalArgumentException jika nilai bukan angka atau tidak lebih dari 0
+     */
+    static int getPositiveInt(String key, int defaultValue) {
+        return positiveIntCache.computeIfAbsent(key, k -> {
+            int value = PoolSettings.getInt(properties, k, defaultValue);
+            if (value <= 0) {
+                throw new IllegalArgumentException("Nilai property " + k + " harus lebih dari 0: " + value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Sama dengan getPositiveInt untuk property long (durasi dalam ms)
+     * @throws IllegalArgumentException jika nilai bukan angka atau tidak lebih dari 0
+     */
+    static long getPositiveLong(String key, long defaultValue) {
+        return positiveLongCache.computeIfAbsent(key, k -> {
+            long value = PoolSettings.getLong(properties, k, defaultValue);
+            if (value <= 0) {
+                throw new IllegalArgumentException("Nilai property " + k + " harus lebih dari 0: " + value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Membaca property dari database.properties (atau system property db.*)
+     * @param key nama property
+     * @param defaultValue nilai jika property tidak diisi
+     */
+    public static String getProperty(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
     /**
      * Getter untuk database URL (digunakan untuk testing)
      */
@@ -0,0 +1,97 @@
+package com.praktikum.database.testing.library.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Satu node database: pool untuk primary (read-write) dan pool read-only untuk replica
+ * Koneksi read dibagi round-robin ke semua replica, fallback ke primary jika replica gagal
+ */
+public class DatabaseNode {
+    private static final Logger logger = Logger.getLogger(DatabaseNode.class.getName());
+
+    private final String name;
+    private final ConnectionPool primaryPool;
+    private final List<ConnectionPool> replicaPools;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * @param name Nama node untuk logging
+     * @param primaryUrl JDBC URL primary
+     * @param replicaUrls JDBC URL replica (boleh kosong)
+     * @param connectionProperties Properties untuk driver
+     * @param settings Pengaturan pool, dipakai oleh primary dan setiap replica
+     */
+    public DatabaseNode(String name, String primaryUrl, List<String> replicaUrls,
+                        Properties connectionProperties, PoolSettings settings) {
+        this.name = name;
+        this.primaryPool = new ConnectionPool(name, primaryUrl, connectionProperties, settings, false);
+
+        List<ConnectionPool> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.add(new ConnectionPool(name + "-replica-" + i, replicaUrls.get(i),
+                    connectionProperties, settings, true));
+        }
+        this.replicaPools = Collections.unmodifiableList(replicas);
+    }
+
+    /**
+     * Koneksi read-write ke primary
+     */
+    public Connection getConnection() throws SQLException {
+        return primaryPool.getConnection();
+    }
+
+    /**
+     * Koneksi read-only ke salah satu replica (round-robin)
+     * Jika tidak ada replica atau semua replica gagal, koneksi diambil dari primary
+     */
+    public Connection getReadConnection() throws SQLException {
+        int replicaCount = replicaPools.size();
+        if (replicaCount == 0) {
+            return primaryPool.getConnection();
+        }
+
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+        for (int i = 0; i < replicaCount; i++) {
+            ConnectionPool replica = replicaPools.get((start + i) % replicaCount);
+            // Replica yang sedang down dilewati tanpa menunggu connect timeout
+            if (replica.getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED) {
+                continue;
+            }
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                logger.warning("Replica '" + replica.getName() + "' tidak tersedia: " + e.getMessage());
+            }
+        }
+        logger.warning("Semua replica node '" + name + "' gagal - read dialihkan ke primary");
+        return primaryPool.getConnection();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ConnectionPool getPrimaryPool() {
+        return primaryPool;
+    }
+
+    public List<ConnectionPool> getReplicaPools() {
+        return replicaPools;
+    }
+
+    /**
+     * Menutup pool primary dan semua replica
+     */
+    public void close() {
+        primaryPool.close();
+        replicaPools.forEach(ConnectionPool::close);
+    }
+}
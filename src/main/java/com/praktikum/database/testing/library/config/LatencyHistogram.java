@@ -0,0 +1,99 @@
+package com.praktikum.database.testing.library.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram latency sederhana dengan bucket tetap (lock-free)
+ * Dipakai untuk mengukur waktu tunggu dan waktu pembuatan koneksi di pool
+ */
+public class LatencyHistogram {
+    // Batas atas setiap bucket dalam microseconds, bucket terakhir = tak terhingga
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MICROS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Mencatat satu sample
+     * @param nanos durasi dalam nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        int index = 0;
+        while (index < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[index]) {
+            index++;
+        }
+        buckets.incrementAndGet(index);
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Rata-rata dalam milliseconds
+     */
+    public double getMeanMillis() {
+        long samples = count.sum();
+        return samples == 0 ? 0.0 : totalMicros.sum() / 1000.0 / samples;
+    }
+
+    /**
+     * Nilai maksimum yang pernah dicatat dalam milliseconds
+     */
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Perkiraan percentile dalam milliseconds (batas atas bucket tempat percentile berada)
+     * @param percentile nilai antara 0 dan 100
+     */
+    public double getPercentileMillis(double percentile) {
+        long samples = count.sum();
+        if (samples == 0) {
+            return 0.0;
+        }
+        long target = (long) Math.ceil(samples * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return i < BUCKET_BOUNDS_MICROS.length ? BUCKET_BOUNDS_MICROS[i] / 1000.0 : getMaxMillis();
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Jumlah sample per bucket, index sesuai getBucketBoundsMillis() (+1 bucket overflow)
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Batas atas setiap bucket dalam milliseconds
+     */
+    public static double[] getBucketBoundsMillis() {
+        double[] bounds = new double[BUCKET_BOUNDS_MICROS.length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = BUCKET_BOUNDS_MICROS[i] / 1000.0;
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,216 @@
+package com.praktikum.database.testing.library.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deteksi leak koneksi, Statement dan ResultSet untuk satu ConnectionPool
+ * Aktif jika db.leak.detection.enabled=true, ditujukan untuk staging / soak test
+ * - Setiap peminjaman koneksi menyimpan stack trace pemanggil getConnection()
+ * - Koneksi yang dipinjam lebih lama dari threshold dilaporkan oleh maintenance thread
+ * - Statement yang belum di-close saat koneksi dikembalikan, dan ResultSet yang belum
+ *   di-close saat Statement ditutup, dilaporkan lalu ditutup paksa
+ * Jika nonaktif, pool tidak membuat LeakDetector sama sekali sehingga tidak ada overhead
+ */
+class LeakDetector {
+    private static final Logger logger = Logger.getLogger(LeakDetector.class.getName());
+
+    private final String poolName;
+    private final long thresholdMillis;
+    private final Set<Lease> activeLeases = ConcurrentHashMap.newKeySet();
+    private final LongAdder suspectedLeaks = new LongAdder();
+    private final LongAdder unclosedResources = new LongAdder();
+
+    LeakDetector(String poolName, long thresholdMillis) {
+        this.poolName = poolName;
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    /**
+     * Mencatat satu peminjaman koneksi beserta stack trace pemanggil
+     */
+    Lease open() {
+        Lease lease = new Lease();
+        activeLeases.add(lease);
+        return lease;
+    }
+
+    /**
+     * Dipanggil maintenance thread - melaporkan koneksi yang dipinjam lebih lama dari threshold
+     * Setiap peminjaman hanya dilaporkan sekali
+     */
+    void check() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : activeLeases) {
+            if (!lease.reported && now - lease.checkoutAt > thresholdMillis) {
+                lease.reported = true;
+                suspectedLeaks.increment();
+                logger.log(Level.WARNING, "Kemungkinan connection leak di pool '" + poolName + "': koneksi dipinjam oleh "
+                        + lease.threadName + " selama " + (now - lease.checkoutAt) + " ms (threshold "
+                        + thresholdMillis + " ms)", lease.acquiredAt);
+            }
+        }
+    }
+
+    long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    long getSuspectedLeaks() {
+        return suspectedLeaks.sum();
+    }
+
+    long getUnclosedResources() {
+        return unclosedResources.sum();
+    }
+
+    int getActiveLeaseCount() {
+        return activeLeases.size();
+    }
+
+    /**
+     * Satu kali peminjaman koneksi beserta Statement yang dibuat dari koneksi tersebut
+     */
+    class Lease {
+        private final Throwable acquiredAt = new Throwable("Koneksi dipinjam di sini");
+        private final long checkoutAt = System.currentTimeMillis();
+        private final String threadName = Thread.currentThread().getName();
+        private final Set<Tracked> openStatements = ConcurrentHashMap.newKeySet();
+        private volatile boolean reported;
+
+        /**
+         * Membungkus Statement supaya ResultSet-nya ikut dilacak
+         * @param statement Statement / PreparedStatement / CallableStatement dari koneksi fisik
+         * @param type interface yang dikembalikan oleh method Connection yang dipanggil
+         * @param connection proxy Connection yang dikembalikan oleh getConnection()
+         */
+        Object track(Statement statement, Class<?> type, Connection connection) {
+            Tracked tracked = new Tracked(statement, connection);
+            openStatements.add(tracked);
+            return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, tracked);
+        }
+
+        /**
+         * Dipanggil saat proxy Connection di-close
+         * Statement yang masih terbuka dilaporkan lalu ditutup sebelum koneksi kembali ke pool
+         */
+        void release() {
+            activeLeases.remove(this);
+            for (Tracked tracked : openStatements) {
+                unclosedResources.increment();
+                logger.log(Level.WARNING, "Statement tidak di-close sebelum koneksi dikembalikan ke pool '"
+                        + poolName + "'", acquiredAt);
+                tracked.closeQuietly();
+            }
+            openStatements.clear();
+            if (reported) {
+                logger.warning("Koneksi yang dilaporkan leak di pool '" + poolName + "' akhirnya dikembalikan setelah "
+                        + (System.currentTimeMillis() - checkoutAt) + " ms");
+            }
+        }
+
+        /**
+         * InvocationHandler untuk Statement yang melacak ResultSet yang dibukanya
+         */
+        private class Tracked implements InvocationHandler {
+            private final Statement statement;
+            private final Connection connection;
+            private final Set<ResultSet> openResultSets = ConcurrentHashMap.newKeySet();
+
+            private Tracked(Statement statement, Connection connection) {
+                this.statement = statement;
+                this.connection = connection;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        openStatements.remove(this);
+                        reportOpenResultSets();
+                        statement.close();
+                        return null;
+                    case "getConnection":
+                        return connection;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+
+                Object result;
+                try {
+                    result = method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof ResultSet) {
+                    return trackResultSet((ResultSet) result, proxy);
+                }
+                return result;
+            }
+
+            private Object trackResultSet(ResultSet resultSet, Object statementProxy) {
+                openResultSets.add(resultSet);
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "close":
+                                    openResultSets.remove(resultSet);
+                                    break;
+                                case "getStatement":
+                                    return statementProxy;
+                                case "equals":
+                                    return proxy == args[0];
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                default:
+                                    break;
+                            }
+                            try {
+                                return method.invoke(resultSet, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+
+            private void reportOpenResultSets() {
+                for (ResultSet resultSet : openResultSets) {
+                    try {
+                        if (!resultSet.isClosed()) {
+                            unclosedResources.increment();
+                            logger.log(Level.WARNING, "ResultSet tidak di-close sebelum Statement ditutup (pool '"
+                                    + poolName + "')", acquiredAt);
+                        }
+                    } catch (SQLException e) {
+                        logger.fine("Gagal memeriksa ResultSet: " + e.getMessage());
+                    }
+                }
+                openResultSets.clear();
+            }
+
+            private void closeQuietly() {
+                reportOpenResultSets();
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    logger.fine("Gagal menutup Statement yang leak: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
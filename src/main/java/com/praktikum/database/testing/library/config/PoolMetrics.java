@@ -0,0 +1,86 @@
+package com.praktikum.database.testing.library.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Snapshot metrics dari satu ConnectionPool pada satu titik waktu
+ * Counter bersifat kumulatif sejak pool dibuat; rate bisa dihitung dari selisih dua snapshot
+ */
+@Data
+@Builder
+public class PoolMetrics {
+    private String poolName;
+    private long timestampMillis;
+    private long uptimeMillis;
+
+    // Gauge
+    private int activeConnections;
+    private int idleConnections;
+    private int totalConnections;
+    private int pendingThreads;
+    private int maxTotal;
+
+    // Counter kumulatif
+    private long acquisitions;
+    private long timeouts;
+    private long connectionsCreated;
+    private long connectionCreateFailures;
+    private long connectionsClosed;
+
+    // Waktu tunggu mendapatkan koneksi (termasuk pembuatan koneksi baru jika perlu)
+    private double acquireWaitMeanMillis;
+    private double acquireWaitP50Millis;
+    private double acquireWaitP95Millis;
+    private double acquireWaitP99Millis;
+    private double acquireWaitMaxMillis;
+    private long[] acquireWaitHistogram;
+
+    // Waktu membuat koneksi fisik baru (TCP + TLS + auth)
+    private double createTimeMeanMillis;
+    private double createTimeMaxMillis;
+
+    // PreparedStatement cache per koneksi (db.statement.cache.size)
+    private long statementCacheHits;
+    private long statementCacheMisses;
+    private long statementCacheEvictions;
+
+    // Circuit breaker (CLOSED / OPEN / HALF_OPEN)
+    private String circuitState;
+    private long circuitTrips;
+    private long circuitRejections;
+
+    // Leak detection (selalu 0 jika db.leak.detection.enabled=false)
+    private long suspectedLeaks;
+    private long unclosedResources;
+
+    /**
+     * Rata-rata koneksi baru per detik sejak pool dibuat
+     */
+    public double getConnectionCreationRatePerSecond() {
+        return uptimeMillis <= 0 ? 0.0 : connectionsCreated * 1000.0 / uptimeMillis;
+    }
+
+    /**
+     * Persentase prepareStatement() yang dilayani dari cache
+     */
+    public double getStatementCacheHitRatio() {
+        long lookups = statementCacheHits + statementCacheMisses;
+        return lookups == 0 ? 0.0 : statementCacheHits * 100.0 / lookups;
+    }
+
+    /**
+     * Ringkasan satu baris untuk logging
+     */
+    public String toSummary() {
+        return String.format("pool=%s active=%d idle=%d total=%d/%d pending=%d acquisitions=%d timeouts=%d "
+                        + "created=%d failed=%d closed=%d wait(mean=%.2fms p95=%.2fms p99=%.2fms max=%.2fms) "
+                        + "create(mean=%.2fms max=%.2fms) stmtCache(hits=%d misses=%d ratio=%.1f%%) circuit=%s(trips=%d rejected=%d) leaks=%d unclosed=%d",
+                poolName, activeConnections, idleConnections, totalConnections, maxTotal, pendingThreads,
+                acquisitions, timeouts, connectionsCreated, connectionCreateFailures, connectionsClosed,
+                acquireWaitMeanMillis, acquireWaitP95Millis, acquireWaitP99Millis, acquireWaitMaxMillis,
+                createTimeMeanMillis, createTimeMaxMillis,
+                statementCacheHits, statementCacheMisses, getStatementCacheHitRatio(),
+                circuitState, circuitTrips, circuitRejections, suspectedLeaks, unclosedResources);
+    }
+}
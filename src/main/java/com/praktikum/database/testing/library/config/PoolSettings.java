@@ -0,0 +1,122 @@
+package com.praktikum.database.testing.library.config;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Properties;
+
+/**
+ * Pengaturan connection pool yang dibaca dari property db.pool.*
+ * Semua nilai waktu dalam milliseconds
+ */
+@Data
+@Builder
+public class PoolSettings {
+    // Jumlah koneksi yang dibuat saat pool pertama kali dibuat
+    private int initialSize;
+    // Batas maksimum koneksi fisik (active + idle)
+    private int maxTotal;
+    // Batas maksimum koneksi idle yang disimpan di pool
+    private int maxIdle;
+    // Jumlah minimum koneksi idle yang dijaga oleh eviction thread
+    private int minIdle;
+    // Waktu maksimum menunggu koneksi ketika pool penuh
+    private long maxWaitMillis;
+    // Koneksi idle lebih lama dari ini akan ditutup (selama idle > minIdle)
+    private long minEvictableIdleTimeMillis;
+    // Interval eviction thread berjalan
+    private long timeBetweenEvictionRunsMillis;
+    // Koneksi yang idle lebih lama dari ini divalidasi dulu sebelum dipinjamkan
+    private long validateAfterIdleMillis;
+    // true = caller yang menunggu dilayani sesuai urutan datang (FIFO)
+    private boolean fair;
+    // Koneksi yang dipinjam lebih lama dari ini dilaporkan sebagai leak (0 = leak detection nonaktif)
+    private long leakDetectionThresholdMillis;
+    // Jumlah maksimum PreparedStatement yang di-cache per koneksi fisik (0 = cache nonaktif)
+    private int statementCacheSize;
+    // Jumlah kegagalan membuat koneksi berturut-turut sebelum circuit breaker OPEN (0 = nonaktif)
+    private int circuitFailureThreshold;
+    // Lama circuit breaker OPEN sebelum probe half-open di background
+    private long circuitOpenMillis;
+
+    /**
+     * Membaca pengaturan pool dari properties
+     * @param properties Properties dari database.properties
+     * @return PoolSettings dengan default untuk property yang tidak diisi
+     */
+    public static PoolSettings fromProperties(Properties properties) {
+        long connectionTimeout = getLong(properties, "db.connection.timeout", 30000);
+        int maxTotal = getInt(properties, "db.pool.maxTotal", 20);
+        int maxIdle = Math.min(getInt(properties, "db.pool.maxIdle", maxTotal), maxTotal);
+        int minIdle = Math.min(getInt(properties, "db.pool.minIdle", 0), maxIdle);
+        int initialSize = Math.min(getInt(properties, "db.pool.initialSize", minIdle), maxTotal);
+        boolean leakDetection = Boolean.parseBoolean(properties.getProperty("db.leak.detection.enabled", "false").trim());
+
+        PoolSettings settings = PoolSettings.builder()
+                .initialSize(initialSize)
+                .maxTotal(maxTotal)
+                .maxIdle(maxIdle)
+                .minIdle(minIdle)
+                .maxWaitMillis(getLong(properties, "db.pool.maxWaitMillis", connectionTimeout))
+                .minEvictableIdleTimeMillis(getLong(properties, "db.pool.minEvictableIdleTimeMillis", 60000))
+                .timeBetweenEvictionRunsMillis(getLong(properties, "db.pool.timeBetweenEvictionRunsMillis", 30000))
+                .validateAfterIdleMillis(getLong(properties, "db.pool.validateAfterIdleMillis", 5000))
+                .fair(Boolean.parseBoolean(properties.getProperty("db.pool.fair", "true").trim()))
+                .leakDetectionThresholdMillis(leakDetection
+                        ? getLong(properties, "db.leak.detection.thresholdMillis", 30000) : 0)
+                .statementCacheSize(getInt(properties, "db.statement.cache.size", 64))
+                .circuitFailureThreshold(getInt(properties, "db.circuit.failureThreshold", 5))
+                .circuitOpenMillis(getLong(properties, "db.circuit.openMillis", 5000))
+                .build();
+        settings.validate();
+        return settings;
+    }
+
+    /**
+     * Validasi bahwa nilai pengaturan masuk akal
+     */
+    void validate() {
+        if (maxTotal <= 0) {
+            throw new IllegalArgumentException("db.pool.maxTotal harus lebih besar dari 0");
+        }
+        if (minIdle < 0 || maxIdle < 0 || initialSize < 0) {
+            throw new IllegalArgumentException("db.pool.minIdle, maxIdle dan initialSize tidak boleh negatif");
+        }
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("db.pool.maxWaitMillis tidak boleh negatif");
+        }
+        if (circuitFailureThreshold < 0 || circuitOpenMillis <= 0) {
+            throw new IllegalArgumentException("db.circuit.failureThreshold tidak boleh negatif dan db.circuit.openMillis harus lebih besar dari 0");
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("db.statement.cache.size tidak boleh negatif");
+        }
+        if (leakDetectionThresholdMillis < 0) {
+            throw new IllegalArgumentException("db.leak.detection.thresholdMillis tidak boleh negatif");
+        }
+    }
+
+    static int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Nilai property " + key + " harus berupa angka: " + value, e);
+        }
+    }
+
+    static long getLong(Properties properties, String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Nilai property " + key + " harus berupa angka: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.praktikum.database.testing.library.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Pembungkus koneksi fisik yang dikelola oleh ConnectionPool
+ * Setiap kali dipinjam, caller menerima proxy Connection baru
+ * sehingga close() mengembalikan koneksi ke pool, bukan menutup koneksi fisik
+ * PreparedStatement disimpan di StatementCache milik koneksi fisik dan dipakai ulang antar peminjaman
+ */
+class PooledConnection {
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final long createdAt;
+    private volatile long lastUsedAt;
+    // null jika db.statement.cache.size = 0
+    private final StatementCache statementCache;
+
+    PooledConnection(ConnectionPool pool, Connection physical) {
+        this.pool = pool;
+        this.physical = physical;
+        this.createdAt = System.currentTimeMillis();
+        this.lastUsedAt = createdAt;
+        int cacheSize = pool.getSettings().getStatementCacheSize();
+        this.statementCache = cacheSize > 0 ? new StatementCache(pool, cacheSize) : null;
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    long idleMillis(long now) {
+        return now - lastUsedAt;
+    }
+
+    /**
+     * Membuat proxy Connection untuk satu kali peminjaman
+     * @return Connection yang close()-nya mengembalikan koneksi ke pool
+     */
+    Connection checkout() {
+        lastUsedAt = System.currentTimeMillis();
+        LeakDetector leakDetector = pool.getLeakDetector();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Handle(leakDetector != null ? leakDetector.open() : null));
+    }
+
+    /**
+     * Reset state koneksi sebelum dikembalikan ke pool
+     * Transaksi yang belum di-commit akan di-rollback
+     */
+    void reset(boolean defaultReadOnly) throws SQLException {
+        if (statementCache != null) {
+            statementCache.release();
+        }
+        if (!physical.getAutoCommit()) {
+            physical.rollback();
+            physical.setAutoCommit(true);
+        }
+        if (physical.isReadOnly() != defaultReadOnly) {
+            physical.setReadOnly(defaultReadOnly);
+        }
+        physical.clearWarnings();
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Menutup koneksi fisik tanpa melempar exception
+     */
+    void closePhysical() {
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            pool.logDiscardFailure(e);
+        }
+    }
+
+    /**
+     * InvocationHandler untuk proxy Connection
+     * Meneruskan semua method ke koneksi fisik kecuali close() dan isClosed()
+     */
+    private class Handle implements InvocationHandler {
+        // null jika leak detection nonaktif
+        private final LeakDetector.Lease lease;
+        private boolean closed;
+
+        private Handle(LeakDetector.Lease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        if (lease != null) {
+                            lease.release();
+                        }
+                        pool.returnConnection(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pool.getName() + "]" + (closed ? " (closed)" : "");
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Koneksi sudah dikembalikan ke pool", "08003");
+            }
+            Object result;
+            if (statementCache != null && "prepareStatement".equals(name) && args.length == 1) {
+                result = statementCache.prepare(physical, (String) args[0], (Connection) proxy);
+            } else {
+                try {
+                    result = method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            if (lease != null && result instanceof Statement) {
+                return lease.track((Statement) result, method.getReturnType(), (Connection) proxy);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.praktikum.database.testing.library.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * ConnectionProvider default: setiap panggilan meminjam koneksi baru dari pool DatabaseConfig
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+
+    @Override
+    public Connection getConnection(int shard) throws SQLException {
+        return DatabaseConfig.getConnection(shard);
+    }
+
+    @Override
+    public Connection getReadConnection(int shard) throws SQLException {
+        return DatabaseConfig.getReadConnection(shard);
+    }
+
+    @Override
+    public int getShardCount() {
+        return DatabaseConfig.getShardCount();
+    }
+
+    @Override
+    public int shardForUser(Integer userId) {
+        return DatabaseConfig.shardForUser(userId);
+    }
+
+    @Override
+    public void markWrite() {
+        DatabaseConfig.markWrite();
+    }
+}
@@ -0,0 +1,25 @@
+package com.praktikum.database.testing.library.config;
+
+/**
+ * Fungsi untuk menentukan shard dari sebuah user_id
+ * Bisa diganti lewat property db.shard.function (nama class) atau DatabaseConfig.setShardFunction()
+ */
+@FunctionalInterface
+public interface ShardFunction {
+
+    /**
+     * Default: hash user_id (bit mixing supaya id berurutan tersebar rata) lalu modulo jumlah shard
+     */
+    ShardFunction HASH = (userId, shardCount) -> {
+        int hash = userId * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shardCount);
+    };
+
+    /**
+     * @param userId user_id yang akan di-route
+     * @param shardCount jumlah shard yang dikonfigurasi (selalu > 0)
+     * @return index shard antara 0 dan shardCount - 1
+     */
+    int shardFor(int userId, int shardCount);
+}
@@ -0,0 +1,12 @@
+package com.praktikum.database.testing.library.config;
+
+import java.sql.SQLException;
+
+/**
+ * Unit kerja database yang boleh melempar SQLException
+ * @param <T> tipe hasil
+ */
+@FunctionalInterface
+public interface SqlCallable<T> {
+    T call() throws SQLException;
+}
@@ -0,0 +1,261 @@
+package com.praktikum.database.testing.library.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * LRU cache PreparedStatement untuk satu koneksi fisik, dengan SQL sebagai key
+ * PreparedStatement yang sama dipakai ulang antar peminjaman koneksi, sehingga pgjdbc
+ * bisa beralih ke named server-side statement setelah prepareThreshold eksekusi
+ * dan PostgreSQL tidak perlu parse/plan ulang query yang sama
+ * Tidak thread-safe: satu koneksi hanya dipakai oleh satu peminjam pada satu waktu
+ */
+class StatementCache {
+    private static final Logger logger = Logger.getLogger(StatementCache.class.getName());
+
+    // Method Statement yang mengubah state statement (bukan parameter); statement seperti ini tidak di-cache ulang
+    private static final Set<String> STATEMENT_SETTERS = new HashSet<>(Arrays.asList(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize",
+            "setQueryTimeout", "setEscapeProcessing", "setPoolable", "setCursorName", "closeOnCompletion"));
+
+    private final ConnectionPool pool;
+    private final int maxSize;
+    private final LinkedHashMap<String, Entry> entries;
+    // Statement di luar cache yang masih dipegang peminjam (sekali pakai atau sudah di-evict)
+    // Ditutup saat koneksi dikembalikan jika peminjam lupa close()
+    private final Set<Entry> detached = new HashSet<>();
+
+    StatementCache(ConnectionPool pool, int maxSize) {
+        this.pool = pool;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Mengambil PreparedStatement dari cache atau menyiapkan yang baru
+     * Jika statement untuk SQL yang sama sedang dipakai (belum di-close), dibuat statement baru di luar cache
+     * @param physical koneksi fisik
+     * @param sql query
+     * @param connection proxy Connection milik peminjam saat ini
+     * @return PreparedStatement yang close()-nya mengembalikan statement ke cache
+     */
+    PreparedStatement prepare(Connection physical, String sql, Connection connection) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && entry.owner == null) {
+            pool.recordStatementCacheHit();
+        } else {
+            pool.recordStatementCacheMiss();
+            PreparedStatement statement = physical.prepareStatement(sql);
+            if (entry != null) {
+                // Statement yang di-cache sedang dipakai - kembalikan statement sekali pakai
+                entry = new Entry(sql, statement, false);
+                detached.add(entry);
+            } else {
+                entry = new Entry(sql, statement, true);
+                entries.put(sql, entry);
+                evictEldest();
+            }
+        }
+        Handle handle = new Handle(entry, connection);
+        entry.owner = handle;
+        entry.dirty = false;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                handle);
+    }
+
+    /**
+     * Dipanggil saat koneksi dikembalikan ke pool
+     * Statement yang lupa di-close oleh peminjam dibebaskan supaya bisa dipakai peminjam berikutnya;
+     * statement di luar cache yang lupa di-close langsung ditutup
+     */
+    void release() {
+        closeDetached();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.owner != null) {
+                entry.owner = null;
+                if (!entry.recycle()) {
+                    iterator.remove();
+                    entry.cached = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Menutup semua statement di cache (sebelum koneksi fisik ditutup)
+     */
+    void clear() {
+        closeDetached();
+        List<Entry> all = new ArrayList<>(entries.values());
+        entries.clear();
+        for (Entry entry : all) {
+            entry.closeQuietly();
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evictEldest() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            eldest.cached = false;
+            pool.recordStatementCacheEviction();
+            if (eldest.owner == null) {
+                eldest.closeQuietly();
+            } else {
+                detached.add(eldest);
+            }
+        }
+    }
+
+    private void closeDetached() {
+        for (Entry entry : detached) {
+            entry.owner = null;
+            entry.closeQuietly();
+        }
+        detached.clear();
+    }
+
+    /**
+     * Satu PreparedStatement fisik di cache
+     */
+    private class Entry {
+        private final String sql;
+        private final PreparedStatement statement;
+        private boolean cached;
+        // Handle peminjam yang sedang memakai statement ini, null jika bebas
+        private Handle owner;
+        // true jika peminjam mengubah state statement (fetch size, timeout, dll)
+        private boolean dirty;
+
+        private Entry(String sql, PreparedStatement statement, boolean cached) {
+            this.sql = sql;
+            this.statement = statement;
+            this.cached = cached;
+        }
+
+        /**
+         * Dipanggil saat statement di-close oleh peminjam
+         */
+        private void close() {
+            owner = null;
+            if (!cached || dirty) {
+                if (cached) {
+                    entries.remove(sql);
+                    cached = false;
+                } else {
+                    detached.remove(this);
+                }
+                closeQuietly();
+                return;
+            }
+            if (!recycle()) {
+                entries.remove(sql);
+                cached = false;
+            }
+        }
+
+        /**
+         * Membersihkan parameter dan ResultSet terbuka supaya statement siap dipakai ulang
+         * @return false jika statement rusak dan sudah ditutup (harus dikeluarkan dari cache)
+         */
+        private boolean recycle() {
+            try {
+                ResultSet open = statement.getResultSet();
+                if (open != null) {
+                    open.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                closeQuietly();
+                return false;
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.fine("Gagal menutup PreparedStatement dari cache: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * InvocationHandler untuk PreparedStatement dari cache
+     * close() mengembalikan statement ke cache, bukan menutup statement fisik
+     */
+    private class Handle implements InvocationHandler {
+        private final Entry entry;
+        private final Connection connection;
+        private boolean closed;
+
+        private Handle(Entry entry, Connection connection) {
+            this.entry = entry;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        // Statement yang sudah dibebaskan saat koneksi dikembalikan mungkin dipakai peminjam lain
+                        if (entry.owner == this) {
+                            entry.close();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.owner != this || entry.statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            if (closed || entry.owner != this) {
+                throw new SQLException("PreparedStatement sudah di-close", "HY010");
+            }
+            if (STATEMENT_SETTERS.contains(name)) {
+                entry.dirty = true;
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
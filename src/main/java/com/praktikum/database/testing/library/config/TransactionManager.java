@@ -0,0 +1,204 @@
+package com.praktikum.database.testing.library.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.OptionalInt;
+import java.util.logging.Logger;
+
+/**
+ * ConnectionProvider dengan koneksi transaksional yang terikat ke thread
+ * Di dalam inTransaction(), semua DAO yang memakai provider ini mendapat koneksi yang sama
+ * (read maupun write) untuk shard transaksi tersebut, sehingga satu alur bisnis berjalan
+ * di satu koneksi dan satu transaksi. Di luar transaksi, permintaan diteruskan ke delegate
+ */
+public class TransactionManager implements ConnectionProvider {
+    private static final Logger logger = Logger.getLogger(TransactionManager.class.getName());
+
+    private final ConnectionProvider delegate;
+    private final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+    /**
+     * Koneksi yang sedang terikat ke thread
+     */
+    private static final class Scope {
+        private final int shard;
+        private final Connection connection;
+        // View yang diberikan ke DAO - close() tidak mengembalikan koneksi ke pool
+        private final Connection view;
+        // true jika DAO melakukan write di transaksi ini; diteruskan ke delegate setelah commit
+        private boolean wrote;
+
+        private Scope(int shard, Connection connection) {
+            this.shard = shard;
+            this.connection = connection;
+            this.view = nonClosingView(connection);
+        }
+    }
+
+    public TransactionManager(ConnectionProvider delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Menjalankan work dalam satu transaksi pada primary shard tertentu
+     * Commit jika work selesai normal, rollback jika melempar exception
+     * Jika thread ini sudah berada di transaksi shard yang sama, work ikut transaksi tersebut
+     * @param shard shard tempat transaksi berjalan
+     * @param work operasi yang memakai DAO
+     * @return hasil work
+     * @throws SQLException jika work atau commit gagal, atau transaksi aktif berada di shard lain
+     */
+    public <T> T inTransaction(int shard, SqlCallable<T> work) throws SQLException {
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            if (scope.shard != shard) {
+                throw new SQLException("Transaksi aktif berada di shard " + scope.shard
+                        + ", tidak bisa bergabung dari shard " + shard, "25000");
+            }
+            return work.call();
+        }
+
+        try (Connection connection = delegate.getConnection(shard)) {
+            connection.setAutoCommit(false);
+            Scope created = new Scope(shard, connection);
+            currentScope.set(created);
+            try {
+                T result = work.call();
+                connection.commit();
+                if (created.wrote) {
+                    delegate.markWrite();
+                }
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly(connection);
+                throw e;
+            } finally {
+                currentScope.remove();
+            }
+        }
+    }
+
+    /**
+     * Menjalankan work dalam satu transaksi pada shard 0
+     */
+    public <T> T inTransaction(SqlCallable<T> work) throws SQLException {
+        return inTransaction(0, work);
+    }
+
+    /**
+     * Mengikat koneksi yang dikelola caller (misalnya koneksi rollback-per-test) ke thread ini untuk shard 0
+     * Commit/rollback dan close tetap menjadi tanggung jawab caller
+     * @param connection koneksi dengan auto-commit false
+     */
+    public void bind(Connection connection) {
+        if (currentScope.get() != null) {
+            throw new IllegalStateException("Thread ini sudah memiliki koneksi transaksional");
+        }
+        currentScope.set(new Scope(0, connection));
+    }
+
+    /**
+     * Melepas koneksi yang diikat dengan bind()
+     */
+    public void unbind() {
+        currentScope.remove();
+    }
+
+    /**
+     * @return true jika thread ini sedang berada di dalam transaksi
+     */
+    public boolean isInTransaction() {
+        return currentScope.get() != null;
+    }
+
+    /**
+     * @return shard transaksi yang sedang aktif di thread ini, kosong jika tidak di dalam transaksi
+     */
+    public OptionalInt getTransactionShard() {
+        Scope scope = currentScope.get();
+        return scope == null ? OptionalInt.empty() : OptionalInt.of(scope.shard);
+    }
+
+    @Override
+    public Connection getConnection(int shard) throws SQLException {
+        Scope scope = currentScope.get();
+        if (scope != null && scope.shard == shard) {
+            return scope.view;
+        }
+        return delegate.getConnection(shard);
+    }
+
+    @Override
+    public Connection getReadConnection(int shard) throws SQLException {
+        // Di dalam transaksi, read harus melihat write yang belum di-commit - pakai koneksi yang sama
+        Scope scope = currentScope.get();
+        if (scope != null && scope.shard == shard) {
+            return scope.view;
+        }
+        return delegate.getReadConnection(shard);
+    }
+
+    @Override
+    public int getShardCount() {
+        return delegate.getShardCount();
+    }
+
+    @Override
+    public int shardForUser(Integer userId) {
+        return delegate.shardForUser(userId);
+    }
+
+    /**
+     * Di dalam transaksi, write baru ditandai setelah commit (rollback tidak menahan read di primary)
+     */
+    @Override
+    public void markWrite() {
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            scope.wrote = true;
+            return;
+        }
+        delegate.markWrite();
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warning("Gagal rollback transaksi: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Proxy Connection untuk DAO di dalam transaksi
+     * close() diabaikan, dan kontrol transaksi hanya boleh dilakukan oleh TransactionManager
+     */
+    private static Connection nonClosingView(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "commit":
+                        case "rollback":
+                        case "setAutoCommit":
+                            throw new SQLException("Transaksi dikelola oleh TransactionManager", "25000");
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,57 @@
+package com.praktikum.database.testing.library.dao;
+
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper untuk createAll: pembagian batch dan klausa VALUES multi-row
+ */
+final class BatchInserts {
+
+    // Batas jumlah parameter bind per statement di protokol PostgreSQL
+    private static final int MAX_BIND_PARAMETERS = 65535;
+
+    private BatchInserts() {
+    }
+
+    /**
+     * Jumlah row per INSERT: db.batch.size, dibatasi supaya parameter tidak melebihi batas PostgreSQL
+     * @param columns jumlah parameter per row
+     */
+    static int rowsPerStatement(int columns) {
+        return Math.max(1, Math.min(DatabaseConfig.getBatchSize(), MAX_BIND_PARAMETERS / columns));
+    }
+
+    /**
+     * Membagi list menjadi beberapa sub-list berukuran maksimal size (view, tanpa copy)
+     */
+    static <T> List<List<T>> chunks(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>((items.size() + size - 1) / size);
+        for (int from = 0; from < items.size(); from += size) {
+            chunks.add(items.subList(from, Math.min(items.size(), from + size)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Klausa VALUES untuk INSERT multi-row, contoh rows=2, columns=3: (?, ?, ?), (?, ?, ?)
+     */
+    static String values(int rows, int columns) {
+        StringBuilder row = new StringBuilder("(");
+        for (int column = 0; column < columns; column++) {
+            row.append(column == 0 ? "?" : ", ?");
+        }
+        row.append(')');
+
+        StringBuilder values = new StringBuilder(rows * row.length() + rows * 2);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append(row);
+        }
+        return values.toString();
+    }
+}
@@ -1,18 +1,64 @@
 package com.praktikum.database.testing.library.dao;
 
+import com.praktikum.database.testing.library.config.ConnectionProvider;
 import com.praktikum.database.testing.library.config.DatabaseConfig;
 import com.praktikum.database.testing.library.model.Book;
+import com.praktikum.database.testing.library.model.BookSummary;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object (DAO) class untuk entity Book
  * Menangani semua operasi CRUD untuk tabel books
+ * Jika sharding aktif, katalog direplikasi: write dikirim ke semua shard, read dari shard 0
+ * Stok (available_copies) hanya otoritatif di STOCK_SHARD: perubahan stok dan lock stok hanya dijalankan
+ * di shard tersebut, kolom stok di shard lain hanya salinan saat insert dan tidak dibaca
  */
 public class BookDAO {
 
+    /**
+     * Shard pemilik stok buku; transaksi peminjaman di shard lain mengubah stok di luar transaksinya
+     * (lihat BorrowingService)
+     */
+    public static final int STOCK_SHARD = 0;
+
+    // Kolom Book lengkap untuk lookup detail; eksplisit supaya kolom baru di tabel tidak ikut terbaca
+    private static final String BOOK_COLUMNS = "book_id, isbn, title, author_id, publisher_id, category_id, " +
+            "publication_year, pages, language, description, total_copies, available_copies, price, location, " +
+            "status, created_at, updated_at";
+    // Kolom BookSummary untuk list view, tanpa description
+    private static final String SUMMARY_COLUMNS = "book_id, isbn, title, available_copies";
+
+    private final ConnectionProvider connections;
+
+    /**
+     * DAO dengan ConnectionProvider default (pool DatabaseConfig + transaksi terikat thread)
+     */
+    public BookDAO() {
+        this(DatabaseConfig.getTransactionManager());
+    }
+
+    /**
+     * @param connections sumber koneksi, misalnya TransactionManager yang sama dengan service
+     */
+    public BookDAO(ConnectionProvider connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Mengisi parameter PreparedStatement
+     */
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement pstmt) throws SQLException;
+    }
+
     /**
      * CREATE - Insert book baru ke database
      * @param book Book object yang akan dibuat
@@ -20,6 +66,11 @@ public class BookDAO {
      * @throws SQLException jika operasi database gagal
      */
     public Book create(Book book) throws SQLException {
+        if (connections.getShardCount() > 1) {
+            createOnAllShards(List.of(book));
+            return book;
+        }
+
         // SQL query dengan banyak parameters untuk book data
         String sql = "INSERT INTO books (isbn, title, author_id, publisher_id, category_id, " +
                 "publication_year, pages, language, description, total_copies, " +
@@ -27,35 +78,151 @@ public class BookDAO {
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
                 "RETURNING book_id, created_at, updated_at";
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // Set semua parameter values
-            pstmt.setString(1, book.getIsbn());
-            pstmt.setString(2, book.getTitle());
-            pstmt.setInt(3, book.getAuthorId());
-            // Handle nullable fields dengan setObject
-            pstmt.setObject(4, book.getPublisherId());
-            pstmt.setObject(5, book.getCategoryId());
-            pstmt.setObject(6, book.getPublicationYear());
-            pstmt.setObject(7, book.getPages());
-            pstmt.setString(8, book.getLanguage());
-            pstmt.setString(9, book.getDescription());
-            pstmt.setInt(10, book.getTotalCopies());
-            pstmt.setInt(11, book.getAvailableCopies());
-            pstmt.setBigDecimal(12, book.getPrice());
-            pstmt.setString(13, book.getLocation());
-            // Gunakan default value jika status null
-            pstmt.setString(14, book.getStatus() != null ? book.getStatus() : "available");
-
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                // Set generated values
-                book.setBookId(rs.getInt("book_id"));
-                book.setCreatedAt(rs.getTimestamp("created_at"));
-                book.setUpdatedAt(rs.getTimestamp("updated_at"));
+            setInsertParameters(pstmt, book, 1);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                if (rs.next()) {
+                    // Set generated values
+                    book.setBookId(rs.getInt("book_id"));
+                    book.setCreatedAt(rs.getTimestamp("created_at"));
+                    book.setUpdatedAt(rs.getTimestamp("updated_at"));
+                }
             }
-            return book;
+        }
+        return book;
+    }
+
+    /**
+     * CREATE - Insert banyak book dengan INSERT multi-row (VALUES ..., ... RETURNING)
+     * Setiap statement berisi maksimal db.batch.size book; tanpa transaksi dari caller,
+     * setiap statement di-commit sendiri. Dengan sharding, setiap chunk ditulis ke semua shard
+     * @param books Book object yang akan dibuat; bookId dan timestamp diisi dari database
+     * @return list yang sama dengan books
+     * @throws SQLException jika operasi database gagal
+     */
+    public List<Book> createAll(List<Book> books) throws SQLException {
+        boolean sharded = connections.getShardCount() > 1;
+        for (List<Book> chunk : BatchInserts.chunks(books, BatchInserts.rowsPerStatement(sharded ? 15 : 14))) {
+            if (sharded) {
+                createOnAllShards(chunk);
+                continue;
+            }
+            String sql = "INSERT INTO books (isbn, title, author_id, publisher_id, category_id, " +
+                    "publication_year, pages, language, description, total_copies, " +
+                    "available_copies, price, location, status) " +
+                    "VALUES " + BatchInserts.values(chunk.size(), 14) + " " +
+                    "RETURNING book_id, created_at, updated_at";
+
+            try (Connection conn = connections.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    setInsertParameters(pstmt, chunk.get(i), i * 14 + 1);
+                }
+
+                // RETURNING mengembalikan row sesuai urutan VALUES
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    connections.markWrite();
+                    for (int i = 0; rs.next(); i++) {
+                        Book book = chunk.get(i);
+                        book.setBookId(rs.getInt("book_id"));
+                        book.setCreatedAt(rs.getTimestamp("created_at"));
+                        book.setUpdatedAt(rs.getTimestamp("updated_at"));
+                    }
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Helper untuk mengisi 14 parameter INSERT book mulai dari index tertentu
+     */
+    private void setInsertParameters(PreparedStatement pstmt, Book book, int index) throws SQLException {
+        pstmt.setString(index, book.getIsbn());
+        pstmt.setString(index + 1, book.getTitle());
+        pstmt.setInt(index + 2, book.getAuthorId());
+        // Handle nullable fields dengan setObject
+        pstmt.setObject(index + 3, book.getPublisherId());
+        pstmt.setObject(index + 4, book.getCategoryId());
+        pstmt.setObject(index + 5, book.getPublicationYear());
+        pstmt.setObject(index + 6, book.getPages());
+        pstmt.setString(index + 7, book.getLanguage());
+        pstmt.setString(index + 8, book.getDescription());
+        pstmt.setInt(index + 9, book.getTotalCopies());
+        pstmt.setInt(index + 10, book.getAvailableCopies());
+        pstmt.setBigDecimal(index + 11, book.getPrice());
+        pstmt.setString(index + 12, book.getLocation());
+        // Gunakan default value jika status null
+        pstmt.setString(index + 13, book.getStatus() != null ? book.getStatus() : "available");
+    }
+
+    /**
+     * Insert katalog ke semua shard dengan book_id yang sama, dialokasikan dari sequence shard 0
+     * Ditulis lewat ShardQueries.scatterWrite, sehingga ditolak di dalam transaksi (shard lain tidak ikut
+     * commit/rollback); timestamp yang dikembalikan berasal dari shard 0
+     */
+    private void createOnAllShards(List<Book> books) throws SQLException {
+        String sql = "INSERT INTO books (book_id, isbn, title, author_id, publisher_id, category_id, " +
+                "publication_year, pages, language, description, total_copies, " +
+                "available_copies, price, location, status) " +
+                "VALUES " + BatchInserts.values(books.size(), 15) + " " +
+                "RETURNING created_at, updated_at";
+
+        List<Integer> bookIds = ShardQueries.allocateIds(connections, "books", "book_id", books.size());
+        ShardQueries.scatterWrite(connections, shard -> {
+            try (Connection conn = connections.getConnection(shard);
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                for (int i = 0; i < books.size(); i++) {
+                    pstmt.setInt(i * 15 + 1, bookIds.get(i));
+                    setInsertParameters(pstmt, books.get(i), i * 15 + 2);
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    for (int i = 0; rs.next(); i++) {
+                        if (shard == 0) {
+                            books.get(i).setCreatedAt(rs.getTimestamp("created_at"));
+                            books.get(i).setUpdatedAt(rs.getTimestamp("updated_at"));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+        for (int i = 0; i < books.size(); i++) {
+            books.get(i).setBookId(bookIds.get(i));
+        }
+    }
+
+    /**
+     * Menjalankan UPDATE/DELETE katalog di semua shard
+     * Shard 0 adalah sumber utama katalog, sehingga hasil dari shard 0 yang dikembalikan
+     * Dengan lebih dari satu shard tidak bisa dipanggil di dalam transaksi (lihat ShardQueries.scatterWrite)
+     * @return true jika ada row yang berubah di shard 0
+     */
+    private boolean updateCatalog(String sql, StatementBinder binder) throws SQLException {
+        List<Boolean> results = ShardQueries.scatterWrite(connections, shard -> updateShard(shard, sql, binder, 1));
+        return results.get(0);
+    }
+
+    /**
+     * @param expectedRows jumlah row minimal yang harus berubah
+     * @return true jika minimal expectedRows row berubah di shard tersebut
+     */
+    private boolean updateShard(int shard, String sql, StatementBinder binder, int expectedRows)
+            throws SQLException {
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            binder.bind(pstmt);
+            boolean updated = pstmt.executeUpdate() >= expectedRows;
+            connections.markWrite();
+            return updated;
         }
     }
 
@@ -66,18 +233,91 @@ public class BookDAO {
      * @throws SQLException jika operasi database gagal
      */
     public Optional<Book> findById(Integer bookId) throws SQLException {
-        String sql = "SELECT * FROM books WHERE book_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE book_id = ?";
+        try (Connection conn = connections.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, bookId);
-            ResultSet rs = pstmt.executeQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToBook(rs));
+                }
+                return Optional.empty();
+            }
+        }
+    }
 
-            if (rs.next()) {
-                return Optional.of(mapResultSetToBook(rs));
+    /**
+     * READ - Mencari banyak book sekaligus dengan satu query per chunk (book_id = ANY(?))
+     * Pengganti loop findById (N+1), misalnya untuk menampilkan buku dari daftar pinjaman user
+     * @param bookIds ID book, boleh duplikat
+     * @return map book_id -> Book untuk book yang ditemukan, urut sesuai input
+     * @throws SQLException jika operasi database gagal
+     */
+    public Map<Integer, Book> findByIds(Collection<Integer> bookIds) throws SQLException {
+        return ShardQueries.multiGet(bookIds, (ids, found) -> {
+            String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE book_id = ANY(?)";
+            try (Connection conn = connections.getReadConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                pstmt.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    BookMapper mapper = new BookMapper(rs);
+                    while (rs.next()) {
+                        Book book = mapper.map(rs);
+                        found.put(book.getBookId(), book);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * READ - Mencari book berdasarkan ID dan mengunci row-nya (SELECT ... FOR UPDATE) di STOCK_SHARD
+     * Harus dipanggil di dalam transaksi STOCK_SHARD; peminjam lain untuk buku yang sama menunggu sampai
+     * commit/rollback
+     * @param bookId ID book yang dicari
+     * @return Optional containing Book jika ditemukan
+     * @throws SQLException jika operasi database gagal, atau transaksi aktif berada di shard lain
+     */
+    public Optional<Book> findByIdForUpdate(Integer bookId) throws SQLException {
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE book_id = ? FOR UPDATE";
+        try (Connection conn = ShardQueries.lockingConnection(connections, STOCK_SHARD);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, bookId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToBook(rs));
+                }
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * READ - Mengunci beberapa book sekaligus (SELECT ... FOR UPDATE) di dalam transaksi STOCK_SHARD
+     * Row dikunci berurutan berdasarkan book_id, sehingga dua transaksi yang mengunci
+     * kumpulan buku yang beririsan tidak bisa deadlock
+     * @param bookIds ID book, boleh duplikat
+     * @return book yang ditemukan, urut berdasarkan book_id
+     * @throws SQLException jika operasi database gagal, atau transaksi aktif berada di shard lain
+     */
+    public List<Book> findByIdsForUpdate(Collection<Integer> bookIds) throws SQLException {
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE book_id = ANY(?) ORDER BY book_id FOR UPDATE";
+        List<Book> books = new ArrayList<>();
+        try (Connection conn = ShardQueries.lockingConnection(connections, STOCK_SHARD);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setArray(1, conn.createArrayOf("integer", bookIds.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                BookMapper mapper = new BookMapper(rs);
+                while (rs.next()) {
+                    books.add(mapper.map(rs));
+                }
             }
-            return Optional.empty();
         }
+        return books;
     }
 
     /**
@@ -87,17 +327,17 @@ public class BookDAO {
      * @throws SQLException jika operasi database gagal
      */
     public Optional<Book> findByIsbn(String isbn) throws SQLException {
-        String sql = "SELECT * FROM books WHERE isbn = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE isbn = ?";
+        try (Connection conn = connections.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, isbn);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return Optional.of(mapResultSetToBook(rs));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToBook(rs));
+                }
+                return Optional.empty();
             }
-            return Optional.empty();
         }
     }
 
@@ -107,22 +347,103 @@ public class BookDAO {
      * @throws SQLException jika operasi database gagal
      */
     public List<Book> findAll() throws SQLException {
-        String sql = "SELECT * FROM books ORDER BY book_id";
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books ORDER BY book_id";
         List<Book> books = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
+            BookMapper mapper = new BookMapper(rs);
             while (rs.next()) {
-                books.add(mapResultSetToBook(rs));
+                books.add(mapper.map(rs));
             }
         }
         return books;
     }
 
     /**
-     * UPDATE - Update available copies untuk book
+     * READ - Semua books sebagai Stream lazy yang dibaca per fetch (db.stream.fetchSize)
+     * Stream memegang koneksi sampai di-close, gunakan try-with-resources
+     * @return books sorted by book_id
+     * @throws SQLException jika query gagal dibuka
+     */
+    public Stream<Book> streamAll() throws SQLException {
+        return CursorStreams.open(connections.getReadConnection(),
+                "SELECT " + BOOK_COLUMNS + " FROM books ORDER BY book_id", BookMapper::new);
+    }
+
+    /**
+     * READ - Satu halaman books dengan keyset pagination (WHERE book_id > ? ORDER BY book_id LIMIT ?)
+     * Berbeda dengan OFFSET, halaman yang jauh tetap dibaca langsung dari index tanpa melewati row sebelumnya
+     * @param afterId book_id terakhir dari halaman sebelumnya, null untuk halaman pertama
+     * @param limit jumlah book maksimal per halaman
+     * @return books sorted by book_id; kurang dari limit berarti halaman terakhir
+     * @throws SQLException jika operasi database gagal
+     */
+    public List<Book> findPage(Integer afterId, int limit) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit harus lebih dari 0");
+        }
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE book_id > ? ORDER BY book_id LIMIT ?";
+        List<Book> books = new ArrayList<>(limit);
+
+        try (Connection conn = connections.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, afterId != null ? afterId : Integer.MIN_VALUE);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                BookMapper mapper = new BookMapper(rs);
+                while (rs.next()) {
+                    books.add(mapper.map(rs));
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * READ - Satu halaman books urut title dengan keyset (title, book_id)
+     * book_id menjadi tie-breaker supaya book dengan title sama tidak terlewat atau muncul dua kali
+     * Untuk tabel besar, index (title, book_id) membuat setiap halaman dibaca langsung dari index
+     * @param afterTitle title book terakhir dari halaman sebelumnya, null untuk halaman pertama
+     * @param afterId book_id book terakhir dari halaman sebelumnya
+     * @param limit jumlah book maksimal per halaman
+     * @return books sorted by title, book_id
+     * @throws SQLException jika operasi database gagal
+     */
+    public List<Book> findPageByTitle(String afterTitle, Integer afterId, int limit) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit harus lebih dari 0");
+        }
+        boolean firstPage = afterTitle == null;
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books " +
+                (firstPage ? "" : "WHERE (title, book_id) > (?, ?) ") +
+                "ORDER BY title, book_id LIMIT ?";
+        List<Book> books = new ArrayList<>(limit);
+
+        try (Connection conn = connections.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            if (!firstPage) {
+                pstmt.setString(index++, afterTitle);
+                pstmt.setInt(index++, afterId != null ? afterId : Integer.MIN_VALUE);
+            }
+            pstmt.setInt(index, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                BookMapper mapper = new BookMapper(rs);
+                while (rs.next()) {
+                    books.add(mapper.map(rs));
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * UPDATE - Update available copies untuk book (di STOCK_SHARD)
      * @param bookId ID book yang akan di-update
      * @param newAvailableCopies jumlah available copies baru
      * @return true jika update berhasil
@@ -130,18 +451,16 @@ public class BookDAO {
      */
     public boolean updateAvailableCopies(Integer bookId, Integer newAvailableCopies) throws SQLException {
         String sql = "UPDATE books SET available_copies = ? WHERE book_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
+        return updateShard(STOCK_SHARD, sql, pstmt -> {
             pstmt.setInt(1, newAvailableCopies);
             pstmt.setInt(2, bookId);
-            return pstmt.executeUpdate() > 0;
-        }
+        }, 1);
     }
 
     /**
      * UPDATE - Decrease available copies (untuk peminjaman)
      * Hanya decrease jika available_copies > 0
+     * Di dalam transaksi shard lain, decrement langsung di-commit di STOCK_SHARD
      * @param bookId ID book yang akan di-decrease copies-nya
      * @return true jika decrease berhasil
      * @throws SQLException jika operasi database gagal
@@ -149,11 +468,44 @@ public class BookDAO {
     public boolean decreaseAvailableCopies(Integer bookId) throws SQLException {
         String sql = "UPDATE books SET available_copies = available_copies - 1 " +
                 "WHERE book_id = ? AND available_copies > 0";
-        try (Connection conn = DatabaseConfig.getConnection();
+        return updateShard(STOCK_SHARD, sql, pstmt -> pstmt.setInt(1, bookId), 1);
+    }
+
+    /**
+     * UPDATE - Decrease available copies untuk beberapa buku dalam satu statement (batch checkout)
+     * Buku yang muncul n kali di bookIds dikurangi n kopi; semua buku dikurangi atau tidak sama sekali:
+     * di dalam transaksi STOCK_SHARD caller harus rollback jika hasilnya false, di luar transaksi tersebut
+     * UPDATE dijalankan di transaksinya sendiri dan di-rollback di sini
+     * @param bookIds ID book, boleh duplikat
+     * @return true jika semua buku berhasil dikurangi
+     * @throws SQLException jika operasi database gagal
+     */
+    public boolean decreaseAvailableCopies(List<Integer> bookIds) throws SQLException {
+        String sql = "UPDATE books b SET available_copies = b.available_copies - d.cnt " +
+                "FROM (SELECT book_id, COUNT(*) AS cnt FROM unnest(?::int[]) AS book_id GROUP BY book_id) d " +
+                "WHERE b.book_id = d.book_id AND b.available_copies >= d.cnt";
+        int distinctBooks = new HashSet<>(bookIds).size();
+        try (Connection conn = connections.getConnection(STOCK_SHARD);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, bookId);
-            return pstmt.executeUpdate() > 0;
+            // Auto-commit berarti tidak ada transaksi STOCK_SHARD dari caller
+            boolean ownTransaction = conn.getAutoCommit();
+            if (ownTransaction) {
+                conn.setAutoCommit(false);
+            }
+            pstmt.setArray(1, conn.createArrayOf("integer", bookIds.toArray()));
+            boolean decreased = pstmt.executeUpdate() == distinctBooks;
+            if (ownTransaction) {
+                if (decreased) {
+                    conn.commit();
+                } else {
+                    conn.rollback();
+                }
+            }
+            if (decreased) {
+                connections.markWrite();
+            }
+            return decreased;
         }
     }
 
@@ -167,11 +519,30 @@ public class BookDAO {
     public boolean increaseAvailableCopies(Integer bookId) throws SQLException {
         String sql = "UPDATE books SET available_copies = available_copies + 1 " +
                 "WHERE book_id = ? AND available_copies < total_copies";
-        try (Connection conn = DatabaseConfig.getConnection();
+        return updateShard(STOCK_SHARD, sql, pstmt -> pstmt.setInt(1, bookId), 1);
+    }
+
+    /**
+     * UPDATE - Increase available copies untuk beberapa buku dalam satu statement (pengembalian batch)
+     * Tidak pernah melebihi total_copies
+     * @param copiesByBook jumlah kopi yang dikembalikan per book_id
+     * @return jumlah buku yang di-update di STOCK_SHARD
+     * @throws SQLException jika operasi database gagal
+     */
+    public int increaseAvailableCopies(Map<Integer, Integer> copiesByBook) throws SQLException {
+        if (copiesByBook.isEmpty()) {
+            return 0;
+        }
+        String sql = "UPDATE books b SET available_copies = LEAST(b.total_copies, b.available_copies + d.cnt) " +
+                "FROM unnest(?::int[], ?::int[]) AS d(book_id, cnt) WHERE b.book_id = d.book_id";
+        try (Connection conn = connections.getConnection(STOCK_SHARD);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, bookId);
-            return pstmt.executeUpdate() > 0;
+            pstmt.setArray(1, conn.createArrayOf("integer", copiesByBook.keySet().toArray()));
+            pstmt.setArray(2, conn.createArrayOf("integer", copiesByBook.values().toArray()));
+            int updated = pstmt.executeUpdate();
+            connections.markWrite();
+            return updated;
         }
     }
 
@@ -183,12 +554,7 @@ public class BookDAO {
      */
     public boolean delete(Integer bookId) throws SQLException {
         String sql = "DELETE FROM books WHERE book_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, bookId);
-            return pstmt.executeUpdate() > 0;
-        }
+        return updateCatalog(sql, pstmt -> pstmt.setInt(1, bookId));
     }
 
     /**
@@ -198,18 +564,19 @@ public class BookDAO {
      * @throws SQLException jika operasi database gagal
      */
     public List<Book> searchByTitle(String title) throws SQLException {
-        String sql = "SELECT * FROM books WHERE LOWER(title) LIKE LOWER(?) ORDER BY title";
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE LOWER(title) LIKE LOWER(?) ORDER BY title";
         List<Book> books = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // Use wildcard untuk partial matching
             pstmt.setString(1, "%" + title + "%");
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                books.add(mapResultSetToBook(rs));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                BookMapper mapper = new BookMapper(rs);
+                while (rs.next()) {
+                    books.add(mapper.map(rs));
+                }
             }
         }
         return books;
@@ -221,46 +588,170 @@ public class BookDAO {
      * @throws SQLException jika operasi database gagal
      */
     public List<Book> findAvailableBooks() throws SQLException {
-        String sql = "SELECT * FROM books WHERE available_copies > 0 ORDER BY title";
+        String sql = "SELECT " + BOOK_COLUMNS + " FROM books WHERE available_copies > 0 ORDER BY title";
         List<Book> books = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            BookMapper mapper = new BookMapper(rs);
+            while (rs.next()) {
+                books.add(mapper.map(rs));
+            }
+        }
+        return books;
+    }
+
+    /**
+     * SEARCH - Mencari books berdasarkan title (case-insensitive) untuk list view
+     * Sama dengan searchByTitle, tetapi hanya membaca kolom BookSummary
+     * @param title Keyword untuk search
+     * @return List of BookSummary yang match search criteria, sorted by title
+     * @throws SQLException jika operasi database gagal
+     */
+    public List<BookSummary> searchSummariesByTitle(String title) throws SQLException {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM books WHERE LOWER(title) LIKE LOWER(?) ORDER BY title";
+        List<BookSummary> books = new ArrayList<>();
+
+        try (Connection conn = connections.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, "%" + title + "%");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                BookSummaryMapper mapper = new BookSummaryMapper(rs);
+                while (rs.next()) {
+                    books.add(mapper.map(rs));
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * FIND - Available books (available_copies > 0) untuk list view
+     * Sama dengan findAvailableBooks, tetapi hanya membaca kolom BookSummary
+     * @return List of BookSummary, sorted by title
+     * @throws SQLException jika operasi database gagal
+     */
+    public List<BookSummary> findAvailableSummaries() throws SQLException {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM books WHERE available_copies > 0 ORDER BY title";
+        List<BookSummary> books = new ArrayList<>();
+
+        try (Connection conn = connections.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
+            BookSummaryMapper mapper = new BookSummaryMapper(rs);
             while (rs.next()) {
-                books.add(mapResultSetToBook(rs));
+                books.add(mapper.map(rs));
             }
         }
         return books;
     }
 
     /**
-     * Helper method untuk mapping ResultSet ke Book object
+     * Helper method untuk mapping satu row ResultSet ke Book object (lookup satu row)
      * @param rs ResultSet dari database query
      * @return Book object yang sudah di-mapping
      * @throws SQLException jika mapping gagal
      */
     private Book mapResultSetToBook(ResultSet rs) throws SQLException {
-        return Book.builder()
-                .bookId(rs.getInt("book_id"))
-                .isbn(rs.getString("isbn"))
-                .title(rs.getString("title"))
-                .authorId(rs.getInt("author_id"))
-                .publisherId((Integer) rs.getObject("publisher_id"))
-                .categoryId((Integer) rs.getObject("category_id"))
-                .publicationYear((Integer) rs.getObject("publication_year"))
-                .pages((Integer) rs.getObject("pages"))
-                .language(rs.getString("language"))
-                .description(rs.getString("description"))
-                .totalCopies(rs.getInt("total_copies"))
-                .availableCopies(rs.getInt("available_copies"))
-                .price(rs.getBigDecimal("price"))
-                .location(rs.getString("location"))
-                .status(rs.getString("status"))
-                .createdAt(rs.getTimestamp("created_at"))
-                .updatedAt(rs.getTimestamp("updated_at"))
-                .build();
+        return new BookMapper(rs).map(rs);
+    }
+
+    /**
+     * Mapper Book dengan index kolom yang di-resolve sekali per ResultSet
+     * Object dibuat langsung dengan setter, tanpa builder per row
+     */
+    static final class BookMapper implements RowMapper<Book> {
+        private final int bookId;
+        private final int isbn;
+        private final int title;
+        private final int authorId;
+        private final int publisherId;
+        private final int categoryId;
+        private final int publicationYear;
+        private final int pages;
+        private final int language;
+        private final int description;
+        private final int totalCopies;
+        private final int availableCopies;
+        private final int price;
+        private final int location;
+        private final int status;
+        private final int createdAt;
+        private final int updatedAt;
+
+        BookMapper(ResultSet rs) throws SQLException {
+            bookId = rs.findColumn("book_id");
+            isbn = rs.findColumn("isbn");
+            title = rs.findColumn("title");
+            authorId = rs.findColumn("author_id");
+            publisherId = rs.findColumn("publisher_id");
+            categoryId = rs.findColumn("category_id");
+            publicationYear = rs.findColumn("publication_year");
+            pages = rs.findColumn("pages");
+            language = rs.findColumn("language");
+            description = rs.findColumn("description");
+            totalCopies = rs.findColumn("total_copies");
+            availableCopies = rs.findColumn("available_copies");
+            price = rs.findColumn("price");
+            location = rs.findColumn("location");
+            status = rs.findColumn("status");
+            createdAt = rs.findColumn("created_at");
+            updatedAt = rs.findColumn("updated_at");
+        }
+
+        @Override
+        public Book map(ResultSet rs) throws SQLException {
+            Book book = new Book();
+            book.setBookId(rs.getInt(bookId));
+            book.setIsbn(rs.getString(isbn));
+            book.setTitle(rs.getString(title));
+            book.setAuthorId(rs.getInt(authorId));
+            book.setPublisherId(RowMapper.getInteger(rs, publisherId));
+            book.setCategoryId(RowMapper.getInteger(rs, categoryId));
+            book.setPublicationYear(RowMapper.getInteger(rs, publicationYear));
+            book.setPages(RowMapper.getInteger(rs, pages));
+            book.setLanguage(rs.getString(language));
+            book.setDescription(rs.getString(description));
+            book.setTotalCopies(rs.getInt(totalCopies));
+            book.setAvailableCopies(rs.getInt(availableCopies));
+            book.setPrice(rs.getBigDecimal(price));
+            book.setLocation(rs.getString(location));
+            book.setStatus(rs.getString(status));
+            book.setCreatedAt(rs.getTimestamp(createdAt));
+            book.setUpdatedAt(rs.getTimestamp(updatedAt));
+            return book;
+        }
+    }
+
+    /**
+     * Mapper BookSummary (SUMMARY_COLUMNS) dengan index kolom yang di-resolve sekali per ResultSet
+     */
+    static final class BookSummaryMapper implements RowMapper<BookSummary> {
+        private final int bookId;
+        private final int isbn;
+        private final int title;
+        private final int availableCopies;
+
+        BookSummaryMapper(ResultSet rs) throws SQLException {
+            bookId = rs.findColumn("book_id");
+            isbn = rs.findColumn("isbn");
+            title = rs.findColumn("title");
+            availableCopies = rs.findColumn("available_copies");
+        }
+
+        @Override
+        public BookSummary map(ResultSet rs) throws SQLException {
+            BookSummary summary = new BookSummary();
+            summary.setBookId(rs.getInt(bookId));
+            summary.setIsbn(rs.getString(isbn));
+            summary.setTitle(rs.getString(title));
+            summary.setAvailableCopies(rs.getInt(availableCopies));
+            return summary;
+        }
     }
 
     /**
@@ -270,7 +761,7 @@ public class BookDAO {
      */
     public int countAll() throws SQLException {
         String sql = "SELECT COUNT(*) FROM books";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             if (rs.next()) {
@@ -287,7 +778,7 @@ public class BookDAO {
      */
     public int countAvailableBooks() throws SQLException {
         String sql = "SELECT COUNT(*) FROM books WHERE available_copies > 0";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             if (rs.next()) {
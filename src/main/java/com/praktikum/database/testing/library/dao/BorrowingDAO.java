@@ -1,21 +1,62 @@
 package com.praktikum.database.testing.library.dao;
 
+import com.praktikum.database.testing.library.config.ConnectionProvider;
 import com.praktikum.database.testing.library.config.DatabaseConfig;
+import com.praktikum.database.testing.library.model.BorrowFailureReason;
+import com.praktikum.database.testing.library.model.BorrowOutcome;
 import com.praktikum.database.testing.library.model.Borrowing;
+import com.praktikum.database.testing.library.model.OverdueUpdateResult;
+import com.praktikum.database.testing.library.model.ReturnBatchResult;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public class BorrowingDAO {
 
+    // Urutan hasil query yang di-merge dari beberapa shard, sama dengan ORDER BY di SQL
+    private static final Comparator<Borrowing> BY_BORROW_DATE_DESC =
+            Comparator.comparing(Borrowing::getBorrowDate, Comparator.nullsLast(Comparator.reverseOrder()));
+    private static final Comparator<Borrowing> BY_DUE_DATE_ASC =
+            Comparator.comparing(Borrowing::getDueDate, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    // SQLState PostgreSQL untuk pelanggaran CHECK constraint
+    private static final String CHECK_VIOLATION = "23514";
+
+    private final ConnectionProvider connections;
+
+    /**
+     * DAO dengan ConnectionProvider default (pool DatabaseConfig + transaksi terikat thread)
+     */
+    public BorrowingDAO() {
+        this(DatabaseConfig.getTransactionManager());
+    }
+
+    /**
+     * @param connections sumber koneksi, misalnya TransactionManager yang sama dengan service
+     */
+    public BorrowingDAO(ConnectionProvider connections) {
+        this.connections = connections;
+    }
+
     public Borrowing create(Borrowing borrowing) throws SQLException {
-        String sql = "INSERT INTO borrowings (user_id, book_id, due_date, status, notes) " +
-                "VALUES (?, ?, ?, ?, ?) " +
+        // Borrowing disimpan di shard milik user; dengan sharding id dialokasikan dari shard 0
+        boolean sharded = connections.getShardCount() > 1;
+        Integer borrowingId = sharded ? ShardQueries.allocateId(connections, "borrowings", "borrowing_id") : null;
+
+        String sql = "INSERT INTO borrowings (user_id, book_id, due_date, status, notes" +
+                (sharded ? ", borrowing_id) VALUES (?, ?, ?, ?, ?, ?) " : ") VALUES (?, ?, ?, ?, ?) ") +
                 "RETURNING borrowing_id, borrow_date, created_at, updated_at";
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(connections.shardForUser(borrowing.getUserId()));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, borrowing.getUserId());
@@ -23,146 +64,529 @@ public class BorrowingDAO {
             pstmt.setTimestamp(3, borrowing.getDueDate());
             pstmt.setString(4, borrowing.getStatus() != null ? borrowing.getStatus() : "borrowed");
             pstmt.setString(5, borrowing.getNotes());
+            if (sharded) {
+                pstmt.setInt(6, borrowingId);
+            }
 
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                borrowing.setBorrowingId(rs.getInt("borrowing_id"));
-                borrowing.setBorrowDate(rs.getTimestamp("borrow_date"));
-                borrowing.setCreatedAt(rs.getTimestamp("created_at"));
-                borrowing.setUpdatedAt(rs.getTimestamp("updated_at"));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                if (rs.next()) {
+                    borrowing.setBorrowingId(rs.getInt("borrowing_id"));
+                    borrowing.setBorrowDate(rs.getTimestamp("borrow_date"));
+                    borrowing.setCreatedAt(rs.getTimestamp("created_at"));
+                    borrowing.setUpdatedAt(rs.getTimestamp("updated_at"));
+                }
+                return borrowing;
+            }
+        }
+    }
+
+    /**
+     * Insert banyak borrowing dengan INSERT ... SELECT FROM unnest(...) RETURNING
+     * Borrowing dikelompokkan per shard user; setiap statement berisi maksimal db.batch.size borrowing
+     * Tanpa transaksi dari caller, setiap statement di-commit sendiri
+     * @param borrowings borrowing baru; borrowingId, borrowDate, createdAt dan updatedAt diisi dari database
+     * @return list yang sama dengan borrowings
+     */
+    public List<Borrowing> createAll(List<Borrowing> borrowings) throws SQLException {
+        if (borrowings.isEmpty()) {
+            return borrowings;
+        }
+        boolean sharded = connections.getShardCount() > 1;
+        if (sharded) {
+            List<Integer> borrowingIds = ShardQueries.allocateIds(connections, "borrowings", "borrowing_id",
+                    borrowings.size());
+            for (int i = 0; i < borrowings.size(); i++) {
+                borrowings.get(i).setBorrowingId(borrowingIds.get(i));
+            }
+        }
+        Map<Integer, List<Borrowing>> borrowingsByShard = new LinkedHashMap<>();
+        for (Borrowing borrowing : borrowings) {
+            borrowingsByShard.computeIfAbsent(connections.shardForUser(borrowing.getUserId()),
+                    shard -> new ArrayList<>()).add(borrowing);
+        }
+
+        // Parameter berupa array, sehingga ukuran statement tidak dibatasi jumlah parameter bind
+        int batchSize = DatabaseConfig.getBatchSize();
+        for (Map.Entry<Integer, List<Borrowing>> entry : borrowingsByShard.entrySet()) {
+            for (List<Borrowing> chunk : BatchInserts.chunks(entry.getValue(), batchSize)) {
+                insertChunk(entry.getKey(), chunk, sharded);
+            }
+        }
+        return borrowings;
+    }
+
+    private void insertChunk(int shard, List<Borrowing> chunk, boolean sharded) throws SQLException {
+        int size = chunk.size();
+        Integer[] userIds = new Integer[size];
+        Integer[] bookIds = new Integer[size];
+        Timestamp[] dueDates = new Timestamp[size];
+        String[] statuses = new String[size];
+        String[] notes = new String[size];
+        Integer[] borrowingIds = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            Borrowing borrowing = chunk.get(i);
+            userIds[i] = borrowing.getUserId();
+            bookIds[i] = borrowing.getBookId();
+            dueDates[i] = borrowing.getDueDate();
+            statuses[i] = borrowing.getStatus() != null ? borrowing.getStatus() : "borrowed";
+            notes[i] = borrowing.getNotes();
+            borrowingIds[i] = borrowing.getBorrowingId();
+        }
+
+        // WITH ORDINALITY + ORDER BY membuat urutan insert (dan RETURNING) sama dengan urutan chunk
+        String sql = "INSERT INTO borrowings (user_id, book_id, due_date, status, notes" +
+                (sharded ? ", borrowing_id) " : ") ") +
+                "SELECT user_id, book_id, due_date, status, notes" + (sharded ? ", borrowing_id " : " ") +
+                "FROM unnest(?::int[], ?::int[], ?::timestamp[], ?::varchar[], ?::text[], ?::int[]) " +
+                "WITH ORDINALITY AS t(user_id, book_id, due_date, status, notes, borrowing_id, ord) ORDER BY ord " +
+                "RETURNING borrowing_id, borrow_date, created_at, updated_at";
+
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setArray(1, conn.createArrayOf("integer", userIds));
+            pstmt.setArray(2, conn.createArrayOf("integer", bookIds));
+            pstmt.setArray(3, conn.createArrayOf("timestamp", dueDates));
+            pstmt.setArray(4, conn.createArrayOf("varchar", statuses));
+            pstmt.setArray(5, conn.createArrayOf("text", notes));
+            pstmt.setArray(6, conn.createArrayOf("integer", borrowingIds));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                for (int i = 0; rs.next(); i++) {
+                    Borrowing borrowing = chunk.get(i);
+                    borrowing.setBorrowingId(rs.getInt("borrowing_id"));
+                    borrowing.setBorrowDate(rs.getTimestamp("borrow_date"));
+                    borrowing.setCreatedAt(rs.getTimestamp("created_at"));
+                    borrowing.setUpdatedAt(rs.getTimestamp("updated_at"));
+                    borrowing.setStatus(statuses[i]);
+                }
             }
-            return borrowing;
         }
     }
 
     public Optional<Borrowing> findById(Integer borrowingId) throws SQLException {
+        // Borrowing id tidak menentukan shard - cari di semua shard
+        return ShardQueries.findFirst(connections, shard -> findById(shard, borrowingId));
+    }
+
+    private Optional<Borrowing> findById(int shard, Integer borrowingId) throws SQLException {
         String sql = "SELECT * FROM borrowings WHERE borrowing_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(shard);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, borrowingId);
-            ResultSet rs = pstmt.executeQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToBorrowing(rs));
+                }
+                return Optional.empty();
+            }
+        }
+    }
 
-            if (rs.next()) {
-                return Optional.of(mapResultSetToBorrowing(rs));
+    /**
+     * READ - Mencari banyak borrowing sekaligus dengan satu query per chunk (borrowing_id = ANY(?))
+     * Borrowing id tidak menentukan shard, sehingga setiap chunk dijalankan di semua shard
+     * @param borrowingIds ID borrowing, boleh duplikat
+     * @return map borrowing_id -> Borrowing untuk borrowing yang ditemukan, urut sesuai input
+     */
+    public Map<Integer, Borrowing> findByIds(Collection<Integer> borrowingIds) throws SQLException {
+        return ShardQueries.multiGet(borrowingIds, (ids, found) -> {
+            for (List<Borrowing> borrowings : ShardQueries.scatter(connections, shard -> findByIds(shard, ids))) {
+                for (Borrowing borrowing : borrowings) {
+                    found.put(borrowing.getBorrowingId(), borrowing);
+                }
+            }
+        });
+    }
+
+    private List<Borrowing> findByIds(int shard, List<Integer> borrowingIds) throws SQLException {
+        String sql = "SELECT * FROM borrowings WHERE borrowing_id = ANY(?)";
+        List<Borrowing> borrowings = new ArrayList<>();
+        try (Connection conn = connections.getReadConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setArray(1, conn.createArrayOf("integer", borrowingIds.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                BorrowingMapper mapper = new BorrowingMapper(rs);
+                while (rs.next()) {
+                    borrowings.add(mapper.map(rs));
+                }
             }
-            return Optional.empty();
         }
+        return borrowings;
     }
 
     public List<Borrowing> findByUserId(Integer userId) throws SQLException {
         String sql = "SELECT * FROM borrowings WHERE user_id = ? ORDER BY borrow_date DESC";
         List<Borrowing> borrowings = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(connections.shardForUser(userId));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                borrowings.add(mapResultSetToBorrowing(rs));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                BorrowingMapper mapper = new BorrowingMapper(rs);
+                while (rs.next()) {
+                    borrowings.add(mapper.map(rs));
+                }
             }
         }
         return borrowings;
     }
 
     public List<Borrowing> findByBookId(Integer bookId) throws SQLException {
+        return ShardQueries.mergeOrdered(connections, shard -> findByBookId(shard, bookId), BY_BORROW_DATE_DESC);
+    }
+
+    private List<Borrowing> findByBookId(int shard, Integer bookId) throws SQLException {
         String sql = "SELECT * FROM borrowings WHERE book_id = ? ORDER BY borrow_date DESC";
         List<Borrowing> borrowings = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(shard);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, bookId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                borrowings.add(mapResultSetToBorrowing(rs));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                BorrowingMapper mapper = new BorrowingMapper(rs);
+                while (rs.next()) {
+                    borrowings.add(mapper.map(rs));
+                }
             }
         }
         return borrowings;
     }
 
     public List<Borrowing> findActiveBorrowings() throws SQLException {
+        return ShardQueries.mergeOrdered(connections, this::findActiveBorrowings, BY_BORROW_DATE_DESC);
+    }
+
+    private List<Borrowing> findActiveBorrowings(int shard) throws SQLException {
         String sql = "SELECT * FROM borrowings WHERE return_date IS NULL ORDER BY borrow_date DESC";
         List<Borrowing> borrowings = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(shard);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
+            BorrowingMapper mapper = new BorrowingMapper(rs);
             while (rs.next()) {
-                borrowings.add(mapResultSetToBorrowing(rs));
+                borrowings.add(mapper.map(rs));
             }
         }
         return borrowings;
     }
 
     public List<Borrowing> findOverdueBorrowings() throws SQLException {
+        return ShardQueries.mergeOrdered(connections, this::findOverdueBorrowings, BY_DUE_DATE_ASC);
+    }
+
+    private List<Borrowing> findOverdueBorrowings(int shard) throws SQLException {
         String sql = "SELECT * FROM borrowings WHERE return_date IS NULL AND due_date < CURRENT_TIMESTAMP " +
                 "ORDER BY due_date ASC";
         List<Borrowing> borrowings = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(shard);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
+            BorrowingMapper mapper = new BorrowingMapper(rs);
             while (rs.next()) {
-                borrowings.add(mapResultSetToBorrowing(rs));
+                borrowings.add(mapper.map(rs));
             }
         }
         return borrowings;
     }
 
+    /**
+     * Semua borrowings sebagai Stream lazy yang dibaca per fetch (db.stream.fetchSize)
+     * Stream memegang koneksi sampai di-close, gunakan try-with-resources
+     * @return borrowings sorted by borrowing_id per shard (shard 0 lebih dulu)
+     */
+    public Stream<Borrowing> streamAll() throws SQLException {
+        return CursorStreams.concat(connections, shard -> CursorStreams.open(connections.getReadConnection(shard),
+                "SELECT * FROM borrowings ORDER BY borrowing_id", BorrowingMapper::new));
+    }
+
+    /**
+     * Borrowing overdue sebagai Stream lazy, untuk export / batch job tanpa memuat semuanya ke heap
+     * @return borrowings sorted by due_date per shard (shard 0 lebih dulu)
+     */
+    public Stream<Borrowing> streamOverdue() throws SQLException {
+        return CursorStreams.concat(connections, shard -> CursorStreams.open(connections.getReadConnection(shard),
+                "SELECT * FROM borrowings WHERE return_date IS NULL AND due_date < CURRENT_TIMESTAMP " +
+                        "ORDER BY due_date ASC", BorrowingMapper::new));
+    }
+
     public boolean returnBook(Integer borrowingId, Timestamp returnDate) throws SQLException {
+        return ShardQueries.any(connections, shard -> returnBook(shard, borrowingId, returnDate));
+    }
+
+    private boolean returnBook(int shard, Integer borrowingId, Timestamp returnDate) throws SQLException {
         String sql = "UPDATE borrowings SET return_date = ?, status = 'returned', updated_at = CURRENT_TIMESTAMP " +
                 "WHERE borrowing_id = ? AND return_date IS NULL";
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(shard);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setTimestamp(1, returnDate);
             pstmt.setInt(2, borrowingId);
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            connections.markWrite();
+            return updated;
+        }
+    }
+
+    /**
+     * Menandai beberapa borrowing sebagai dikembalikan dengan satu statement per shard
+     * Stok buku tidak diubah di sini; caller menambah kopi per book_id dari returnedCopiesByBook
+     * Di dalam transaksi hanya borrowing di shard transaksi yang diproses; id lain dilaporkan tidak ditemukan
+     * @param borrowingIds id borrowing, duplikat diabaikan
+     * @return id yang dikembalikan, sudah dikembalikan sebelumnya, dan tidak ditemukan
+     */
+    public ReturnBatchResult returnAll(Collection<Integer> borrowingIds, Timestamp returnDate) throws SQLException {
+        ReturnBatchResult total = new ReturnBatchResult();
+        for (ReturnBatchResult result : ShardQueries.scatterOwned(connections,
+                shard -> returnAll(shard, borrowingIds, returnDate))) {
+            total.add(result);
+        }
+        // Shard lain mungkin diproses di thread executor - tandai write di thread caller
+        connections.markWrite();
+        // Dengan sharding, id yang tidak ada di satu shard mungkin ada di shard lain
+        total.getNotFoundIds().removeAll(total.getReturnedIds());
+        total.getNotFoundIds().removeAll(total.getAlreadyReturnedIds());
+        total.setNotFoundIds(new ArrayList<>(new LinkedHashSet<>(total.getNotFoundIds())));
+        return total;
+    }
+
+    private ReturnBatchResult returnAll(int shard, Collection<Integer> borrowingIds, Timestamp returnDate)
+            throws SQLException {
+        String sql = "WITH req AS (SELECT DISTINCT unnest(?::int[]) AS borrowing_id), " +
+                "upd AS (UPDATE borrowings b SET return_date = ?, status = 'returned', updated_at = CURRENT_TIMESTAMP " +
+                "FROM req WHERE b.borrowing_id = req.borrowing_id AND b.return_date IS NULL " +
+                "RETURNING b.borrowing_id, b.book_id) " +
+                "SELECT req.borrowing_id, upd.book_id, EXISTS (SELECT 1 FROM borrowings x " +
+                "WHERE x.borrowing_id = req.borrowing_id) AS found " +
+                "FROM req LEFT JOIN upd ON upd.borrowing_id = req.borrowing_id ORDER BY req.borrowing_id";
+        ReturnBatchResult result = new ReturnBatchResult();
+
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setArray(1, conn.createArrayOf("integer", borrowingIds.toArray()));
+            pstmt.setTimestamp(2, returnDate);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                while (rs.next()) {
+                    int borrowingId = rs.getInt("borrowing_id");
+                    Object bookId = rs.getObject("book_id");
+                    if (bookId != null) {
+                        result.getReturnedIds().add(borrowingId);
+                        result.getReturnedCopiesByBook().merge(((Number) bookId).intValue(), 1, Integer::sum);
+                    } else if (rs.getBoolean("found")) {
+                        result.getAlreadyReturnedIds().add(borrowingId);
+                    } else {
+                        result.getNotFoundIds().add(borrowingId);
+                    }
+                }
+            }
         }
+        return result;
     }
 
     public boolean updateStatus(Integer borrowingId, String status) throws SQLException {
+        return ShardQueries.any(connections, shard -> updateStatus(shard, borrowingId, status));
+    }
+
+    private boolean updateStatus(int shard, Integer borrowingId, String status) throws SQLException {
         String sql = "UPDATE borrowings SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE borrowing_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(shard);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, status);
             pstmt.setInt(2, borrowingId);
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            connections.markWrite();
+            return updated;
         }
     }
 
     public boolean updateFineAmount(Integer borrowingId, Double fineAmount) throws SQLException {
+        return ShardQueries.any(connections, shard -> updateFineAmount(shard, borrowingId, fineAmount));
+    }
+
+    private boolean updateFineAmount(int shard, Integer borrowingId, Double fineAmount) throws SQLException {
         String sql = "UPDATE borrowings SET fine_amount = ?, updated_at = CURRENT_TIMESTAMP WHERE borrowing_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(shard);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setDouble(1, fineAmount);
             pstmt.setInt(2, borrowingId);
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            connections.markWrite();
+            return updated;
+        }
+    }
+
+    /**
+     * Menandai semua borrowing yang lewat due date sebagai overdue dan menghitung denda di database
+     * Denda = 5000 per hari penuh keterlambatan (sama dengan BorrowingService.calculateFine)
+     * Diproses per chunk dengan keyset borrowing_id; setiap chunk adalah satu UPDATE (transaksi sendiri
+     * jika auto-commit), sehingga row lock hanya ditahan selama satu chunk
+     * Row yang status dan dendanya sudah benar tidak ditulis ulang
+     * @param asOf waktu acuan perhitungan keterlambatan
+     * @param chunkSize jumlah borrowing maksimal per UPDATE
+     */
+    public OverdueUpdateResult markOverdue(Timestamp asOf, int chunkSize) throws SQLException {
+        OverdueUpdateResult total = new OverdueUpdateResult();
+        for (OverdueUpdateResult result : ShardQueries.scatterWrite(connections,
+                shard -> markOverdue(shard, asOf, chunkSize))) {
+            total.add(result);
+        }
+        return total;
+    }
+
+    OverdueUpdateResult markOverdue(int shard, Timestamp asOf, int chunkSize) throws SQLException {
+        OverdueUpdateResult result = new OverdueUpdateResult();
+        int afterId = 0;
+        while (true) {
+            OverdueChunk chunk = markOverdueChunk(shard, asOf, afterId, Integer.MAX_VALUE, chunkSize);
+            if (chunk.lastId == null) {
+                return result;
+            }
+            afterId = chunk.lastId;
+            result.setUpdatedCount(result.getUpdatedCount() + chunk.updated);
+            result.setNewlyOverdueCount(result.getNewlyOverdueCount() + chunk.newlyOverdue);
+            result.setChunkCount(result.getChunkCount() + 1);
+        }
+    }
+
+    /**
+     * Satu chunk markOverdue: borrowing overdue dengan afterId &lt; borrowing_id &lt;= upToId
+     * @return chunk dengan lastId null jika tidak ada borrowing overdue lagi di range tersebut
+     */
+    OverdueChunk markOverdueChunk(int shard, Timestamp asOf, int afterId, int upToId, int chunkSize)
+            throws SQLException {
+        String sql = "WITH chunk AS (SELECT borrowing_id, status AS old_status FROM borrowings " +
+                "WHERE return_date IS NULL AND due_date < ? AND borrowing_id > ? AND borrowing_id <= ? " +
+                "ORDER BY borrowing_id LIMIT ?), " +
+                "upd AS (UPDATE borrowings b SET status = 'overdue', " +
+                "fine_amount = FLOOR(EXTRACT(EPOCH FROM (?::timestamp - b.due_date)) / 86400) * 5000, " +
+                "updated_at = CURRENT_TIMESTAMP " +
+                "FROM chunk WHERE b.borrowing_id = chunk.borrowing_id AND b.return_date IS NULL " +
+                "AND (b.status IS DISTINCT FROM 'overdue' OR b.fine_amount IS DISTINCT FROM " +
+                "FLOOR(EXTRACT(EPOCH FROM (?::timestamp - b.due_date)) / 86400) * 5000) " +
+                "RETURNING chunk.old_status) " +
+                "SELECT (SELECT MAX(borrowing_id) FROM chunk) AS last_id, COUNT(*) AS updated, " +
+                "COUNT(*) FILTER (WHERE old_status IS DISTINCT FROM 'overdue') AS newly_overdue FROM upd";
+
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, asOf);
+            pstmt.setInt(2, afterId);
+            pstmt.setInt(3, upToId);
+            pstmt.setInt(4, chunkSize);
+            pstmt.setTimestamp(5, asOf);
+            pstmt.setTimestamp(6, asOf);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                rs.next();
+                OverdueChunk chunk = new OverdueChunk();
+                Object lastId = rs.getObject("last_id");
+                chunk.lastId = lastId == null ? null : ((Number) lastId).intValue();
+                chunk.updated = rs.getInt("updated");
+                chunk.newlyOverdue = rs.getInt("newly_overdue");
+                return chunk;
+            }
         }
     }
 
+    /**
+     * Update overdue inkremental: hanya kandidat yang dibatasi oleh jendela [since, asOf)
+     * - due_date di [since - ceil(asOf - since) hari, asOf): baru overdue atau dendanya baru melewati
+     *   batas hari di jendela ini, satu range scan dengan panjang sebanding dengan jendela
+     * - status = 'borrowed' dengan due_date sebelum since: borrowing yang masuk terlambat
+     *   (mis. bulk load dengan due_date lampau) setelah watermark melewatinya
+     * Denda dihitung ulang dari due_date hanya untuk kandidat tersebut. Denda borrowing yang sudah lama
+     * overdue diperbarui oleh update penuh (markOverdue)
+     * @return chunk dengan updated = borrowing yang diperbarui, newlyOverdue = borrowing yang baru overdue
+     */
+    OverdueChunk markOverdueCrossed(int shard, Timestamp since, Timestamp asOf) throws SQLException {
+        String fine = "FLOOR(EXTRACT(EPOCH FROM (?::timestamp - b.due_date)) / 86400) * 5000";
+        String sql = "WITH candidates AS (" +
+                "SELECT borrowing_id, status AS old_status FROM borrowings " +
+                "WHERE return_date IS NULL AND due_date >= ? AND due_date < ? " +
+                "UNION " +
+                "SELECT borrowing_id, status AS old_status FROM borrowings " +
+                "WHERE return_date IS NULL AND status = 'borrowed' AND due_date < ?), " +
+                "upd AS (UPDATE borrowings b SET status = 'overdue', fine_amount = " + fine + ", " +
+                "updated_at = CURRENT_TIMESTAMP " +
+                "FROM candidates c " +
+                "WHERE b.borrowing_id = c.borrowing_id AND b.return_date IS NULL AND b.due_date < ? " +
+                "AND (b.status IS DISTINCT FROM 'overdue' OR b.fine_amount IS DISTINCT FROM " + fine + ") " +
+                "RETURNING c.old_status IS DISTINCT FROM 'overdue' AS newly_overdue) " +
+                "SELECT COUNT(*) AS updated, COUNT(*) FILTER (WHERE newly_overdue) AS newly_overdue FROM upd";
+
+        long windowDays = (long) Math.ceil(Math.max(0L, asOf.getTime() - since.getTime())
+                / (double) TimeUnit.DAYS.toMillis(1));
+        Timestamp windowStart = new Timestamp(since.getTime() - TimeUnit.DAYS.toMillis(windowDays));
+
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setTimestamp(1, windowStart);
+            pstmt.setTimestamp(2, asOf);
+            pstmt.setTimestamp(3, since);
+            pstmt.setTimestamp(4, asOf);
+            pstmt.setTimestamp(5, asOf);
+            pstmt.setTimestamp(6, asOf);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                rs.next();
+                OverdueChunk chunk = new OverdueChunk();
+                chunk.updated = rs.getInt("updated");
+                chunk.newlyOverdue = rs.getInt("newly_overdue");
+                return chunk;
+            }
+        }
+    }
+
+    /**
+     * Hasil satu chunk markOverdue
+     */
+    static final class OverdueChunk {
+        // borrowing_id terakhir di chunk (checkpoint berikutnya), null jika chunk kosong
+        Integer lastId;
+        int updated;
+        int newlyOverdue;
+    }
+
     public boolean delete(Integer borrowingId) throws SQLException {
+        return ShardQueries.any(connections, shard -> delete(shard, borrowingId));
+    }
+
+    private boolean delete(int shard, Integer borrowingId) throws SQLException {
         String sql = "DELETE FROM borrowings WHERE borrowing_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(shard);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, borrowingId);
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            connections.markWrite();
+            return updated;
         }
     }
 
     public int countAll() throws SQLException {
+        return ShardQueries.sum(connections, this::countAll);
+    }
+
+    private int countAll(int shard) throws SQLException {
         String sql = "SELECT COUNT(*) FROM borrowings";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(shard);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -175,33 +599,276 @@ public class BorrowingDAO {
 
     public int countActiveBorrowingsByUser(Integer userId) throws SQLException {
         String sql = "SELECT COUNT(*) FROM borrowings WHERE user_id = ? AND return_date IS NULL";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(connections.shardForUser(userId));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+                return 0;
+            }
+        }
+    }
 
-            if (rs.next()) {
-                return rs.getInt(1);
+    /**
+     * Membuat function borrow_book_single_statement (dipakai borrowInSingleStatement) di shard yang belum punya
+     * Keberadaan function dicek di pg_proc lebih dulu, sehingga DDL hanya dijalankan jika function belum ada;
+     * pengecekan diulang di bawah advisory lock supaya beberapa instance yang start bersamaan tidak saling bentrok
+     * Function yang sudah ada tidak diganti - perubahan isi function harus di-deploy dengan DROP FUNCTION dulu
+     */
+    public void createBorrowFunctionIfMissing() throws SQLException {
+        ShardQueries.scatterWrite(connections, this::createBorrowFunctionIfMissing);
+    }
+
+    private Void createBorrowFunctionIfMissing(int shard) throws SQLException {
+        // Di dalam function, setiap query mendapat snapshot baru (READ COMMITTED), sehingga COUNT setelah
+        // lock row user melihat peminjaman user yang sama yang baru di-commit oleh transaksi lain
+        String sql = "CREATE FUNCTION borrow_book_single_statement(" +
+                "p_user_id INTEGER, p_book_id INTEGER, p_due_date TIMESTAMP, p_notes TEXT, p_max_active INTEGER) " +
+                "RETURNS TABLE (user_status TEXT, available_copies INTEGER, active_count INTEGER, " +
+                "borrowing_id INTEGER, borrow_date TIMESTAMP, created_at TIMESTAMP, updated_at TIMESTAMP) " +
+                "LANGUAGE plpgsql AS $$\n" +
+                "#variable_conflict use_column\n" +
+                "BEGIN\n" +
+                "    SELECT u.status INTO user_status FROM users u WHERE u.user_id = p_user_id FOR UPDATE;\n" +
+                "    SELECT b.available_copies INTO available_copies FROM books b WHERE b.book_id = p_book_id;\n" +
+                "    SELECT COUNT(*) INTO active_count FROM borrowings br " +
+                "WHERE br.user_id = p_user_id AND br.return_date IS NULL;\n" +
+                "    IF user_status = 'active' AND active_count < p_max_active THEN\n" +
+                "        UPDATE books b SET available_copies = b.available_copies - 1 " +
+                "WHERE b.book_id = p_book_id AND b.available_copies > 0;\n" +
+                "        IF FOUND THEN\n" +
+                "            INSERT INTO borrowings AS br (user_id, book_id, due_date, status, notes) " +
+                "VALUES (p_user_id, p_book_id, p_due_date, 'borrowed', p_notes) " +
+                "RETURNING br.borrowing_id, br.borrow_date, br.created_at, br.updated_at " +
+                "INTO borrowing_id, borrow_date, created_at, updated_at;\n" +
+                "        END IF;\n" +
+                "    END IF;\n" +
+                "    RETURN NEXT;\n" +
+                "END\n" +
+                "$$";
+        try (Connection conn = connections.getConnection(shard)) {
+            if (borrowFunctionExists(conn)) {
+                return null;
+            }
+            // Advisory lock transaksi hanya bertahan jika lock dan DDL berada di satu transaksi
+            boolean ownTransaction = conn.getAutoCommit();
+            if (ownTransaction) {
+                conn.setAutoCommit(false);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT pg_advisory_xact_lock(hashtext('borrow_book_single_statement'))");
+                if (!borrowFunctionExists(conn)) {
+                    stmt.execute(sql);
+                }
+                if (ownTransaction) {
+                    conn.commit();
+                }
+            } catch (SQLException e) {
+                if (ownTransaction) {
+                    conn.rollback();
+                }
+                throw e;
+            }
+        }
+        return null;
+    }
+
+    private boolean borrowFunctionExists(Connection conn) throws SQLException {
+        String sql = "SELECT EXISTS (SELECT 1 FROM pg_proc " +
+                "WHERE proname = 'borrow_book_single_statement' AND pronamespace = current_schema()::regnamespace)";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * Peminjaman dalam satu statement (satu round trip): validasi user aktif dan batas peminjaman,
+     * decrement available_copies dan insert borrowing dijalankan oleh function borrow_book_single_statement
+     * - Row user dikunci lebih dulu (FOR UPDATE), lalu peminjaman aktif dihitung dengan snapshot baru,
+     *   sehingga peminjaman paralel oleh user yang sama tidak bisa melewati batas peminjaman
+     * - Stok aman terhadap peminjam lain karena UPDATE books mengecek ulang available_copies > 0
+     *   setelah menunggu row lock
+     * Function harus sudah dibuat dengan createBorrowFunctionIfMissing
+     * Hanya untuk satu shard (katalog buku dan borrowing berada di database yang sama)
+     * @return BorrowOutcome berisi borrowing baru atau alasan penolakan
+     * @throws SQLFeatureNotSupportedException jika sharding aktif
+     */
+    public BorrowOutcome borrowInSingleStatement(Integer userId, Integer bookId, Timestamp dueDate,
+                                                 String notes, int maxActiveBorrowings) throws SQLException {
+        requireSingleShard();
+        String sql = "SELECT * FROM borrow_book_single_statement(?, ?, ?, ?, ?)";
+
+        try (Connection conn = connections.getConnection(connections.shardForUser(userId));
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, bookId);
+            pstmt.setTimestamp(3, dueDate);
+            pstmt.setString(4, notes);
+            pstmt.setInt(5, maxActiveBorrowings);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                rs.next();
+                String userStatus = rs.getString("user_status");
+                int activeCount = rs.getInt("active_count");
+                BorrowOutcome.BorrowOutcomeBuilder outcome = BorrowOutcome.builder()
+                        .userStatus(userStatus)
+                        .activeBorrowings(activeCount);
+
+                if (rs.getObject("borrowing_id") != null) {
+                    return outcome.borrowing(Borrowing.builder()
+                            .borrowingId(rs.getInt("borrowing_id"))
+                            .userId(userId)
+                            .bookId(bookId)
+                            .borrowDate(rs.getTimestamp("borrow_date"))
+                            .dueDate(dueDate)
+                            .status("borrowed")
+                            .notes(notes)
+                            .createdAt(rs.getTimestamp("created_at"))
+                            .updatedAt(rs.getTimestamp("updated_at"))
+                            .build()).build();
+                }
+
+                // Urutan pengecekan sama dengan BorrowingService.borrowBook
+                Integer availableCopies = (Integer) rs.getObject("available_copies");
+                BorrowFailureReason reason;
+                if (userStatus == null) {
+                    reason = BorrowFailureReason.USER_NOT_FOUND;
+                } else if (!"active".equals(userStatus)) {
+                    reason = BorrowFailureReason.USER_INACTIVE;
+                } else if (availableCopies == null) {
+                    reason = BorrowFailureReason.BOOK_NOT_FOUND;
+                } else if (availableCopies <= 0) {
+                    reason = BorrowFailureReason.NO_COPIES_AVAILABLE;
+                } else if (activeCount >= maxActiveBorrowings) {
+                    reason = BorrowFailureReason.BORROW_LIMIT_REACHED;
+                } else {
+                    // Kopi terakhir diambil peminjam lain saat statement ini menunggu row lock
+                    reason = BorrowFailureReason.NO_COPIES_AVAILABLE;
+                }
+                return outcome.failureReason(reason).build();
             }
-            return 0;
+        }
+    }
+
+    /**
+     * Pengembalian dalam satu statement (satu round trip): update return_date dan increment
+     * available_copies dijalankan oleh satu query CTE
+     * Jika increment melanggar check_available_copies, seluruh statement gagal (tidak ada perubahan)
+     * Hanya untuk satu shard, sama dengan borrowInSingleStatement
+     * @return BorrowOutcome berisi borrowing (id, book_id, return_date) atau alasan penolakan
+     * @throws SQLFeatureNotSupportedException jika sharding aktif
+     */
+    public BorrowOutcome returnInSingleStatement(Integer borrowingId, Timestamp returnDate) throws SQLException {
+        requireSingleShard();
+        String sql = "WITH br AS (SELECT return_date FROM borrowings WHERE borrowing_id = ?), " +
+                "upd AS (UPDATE borrowings SET return_date = ?, status = 'returned', updated_at = CURRENT_TIMESTAMP " +
+                "WHERE borrowing_id = ? AND return_date IS NULL RETURNING book_id), " +
+                "inc AS (UPDATE books SET available_copies = available_copies + 1 " +
+                "WHERE book_id IN (SELECT book_id FROM upd) RETURNING book_id) " +
+                "SELECT (SELECT COUNT(*) FROM br) AS found, (SELECT book_id FROM upd) AS book_id";
+
+        try (Connection conn = connections.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, borrowingId);
+            pstmt.setTimestamp(2, returnDate);
+            pstmt.setInt(3, borrowingId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                rs.next();
+                if (rs.getInt("found") == 0) {
+                    return BorrowOutcome.builder().failureReason(BorrowFailureReason.BORROWING_NOT_FOUND).build();
+                }
+                if (rs.getObject("book_id") == null) {
+                    return BorrowOutcome.builder().failureReason(BorrowFailureReason.ALREADY_RETURNED).build();
+                }
+                return BorrowOutcome.builder()
+                        .borrowing(Borrowing.builder()
+                                .borrowingId(borrowingId)
+                                .bookId(rs.getInt("book_id"))
+                                .returnDate(returnDate)
+                                .status("returned")
+                                .build())
+                        .build();
+            }
+        } catch (SQLException e) {
+            if (CHECK_VIOLATION.equals(e.getSQLState())) {
+                return BorrowOutcome.builder().failureReason(BorrowFailureReason.BOOK_COPIES_FULL).build();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Function dan CTE single statement mengubah stok dan borrowing di satu database,
+     * sehingga ditolak jika borrowing dan katalog tersebar di beberapa shard
+     */
+    private void requireSingleShard() throws SQLFeatureNotSupportedException {
+        if (connections.getShardCount() > 1) {
+            throw new SQLFeatureNotSupportedException(
+                    "Peminjaman/pengembalian single statement tidak didukung dengan sharding", "0A000");
         }
     }
 
     private Borrowing mapResultSetToBorrowing(ResultSet rs) throws SQLException {
-        return Borrowing.builder()
-                .borrowingId(rs.getInt("borrowing_id"))
-                .userId(rs.getInt("user_id"))
-                .bookId(rs.getInt("book_id"))
-                .borrowDate(rs.getTimestamp("borrow_date"))
-                .dueDate(rs.getTimestamp("due_date"))
-                .returnDate(rs.getTimestamp("return_date"))
-                .status(rs.getString("status"))
-                .fineAmount(rs.getBigDecimal("fine_amount"))
-                .finePaid(rs.getBoolean("fine_paid"))
-                .notes(rs.getString("notes"))
-                .createdAt(rs.getTimestamp("created_at"))
-                .updatedAt(rs.getTimestamp("updated_at"))
-                .build();
+        return new BorrowingMapper(rs).map(rs);
+    }
+
+    /**
+     * Mapper Borrowing dengan index kolom yang di-resolve sekali per ResultSet
+     * Object dibuat langsung dengan setter, tanpa builder per row
+     */
+    static final class BorrowingMapper implements RowMapper<Borrowing> {
+        private final int borrowingId;
+        private final int userId;
+        private final int bookId;
+        private final int borrowDate;
+        private final int dueDate;
+        private final int returnDate;
+        private final int status;
+        private final int fineAmount;
+        private final int finePaid;
+        private final int notes;
+        private final int createdAt;
+        private final int updatedAt;
+
+        BorrowingMapper(ResultSet rs) throws SQLException {
+            borrowingId = rs.findColumn("borrowing_id");
+            userId = rs.findColumn("user_id");
+            bookId = rs.findColumn("book_id");
+            borrowDate = rs.findColumn("borrow_date");
+            dueDate = rs.findColumn("due_date");
+            returnDate = rs.findColumn("return_date");
+            status = rs.findColumn("status");
+            fineAmount = rs.findColumn("fine_amount");
+            finePaid = rs.findColumn("fine_paid");
+            notes = rs.findColumn("notes");
+            createdAt = rs.findColumn("created_at");
+            updatedAt = rs.findColumn("updated_at");
+        }
+
+        @Override
+        public Borrowing map(ResultSet rs) throws SQLException {
+            Borrowing borrowing = new Borrowing();
+            borrowing.setBorrowingId(rs.getInt(borrowingId));
+            borrowing.setUserId(rs.getInt(userId));
+            borrowing.setBookId(rs.getInt(bookId));
+            borrowing.setBorrowDate(rs.getTimestamp(borrowDate));
+            borrowing.setDueDate(rs.getTimestamp(dueDate));
+            borrowing.setReturnDate(rs.getTimestamp(returnDate));
+            borrowing.setStatus(rs.getString(status));
+            borrowing.setFineAmount(rs.getBigDecimal(fineAmount));
+            borrowing.setFinePaid(rs.getBoolean(finePaid));
+            borrowing.setNotes(rs.getString(notes));
+            borrowing.setCreatedAt(rs.getTimestamp(createdAt));
+            borrowing.setUpdatedAt(rs.getTimestamp(updatedAt));
+            return borrowing;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,667 @@
+package com.praktikum.database.testing.library.dao;
+
+import com.praktikum.database.testing.library.config.ConnectionProvider;
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+import com.praktikum.database.testing.library.config.TransactionManager;
+import com.praktikum.database.testing.library.model.Book;
+import com.praktikum.database.testing.library.model.BulkLoadResult;
+import com.praktikum.database.testing.library.model.Borrowing;
+import com.praktikum.database.testing.library.model.User;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk loader untuk books, users dan borrowings dengan COPY ... FROM STDIN (CopyManager pgjdbc)
+ * - Object dibaca satu per satu dari Iterator dan di-encode sebagai CSV ke buffer berukuran tetap
+ *   (db.copy.bufferSize); buffer dikirim ke server setiap kali penuh, sehingga dataset tidak pernah
+ *   dimuat seluruhnya di memory
+ * - Books (catalog) ditulis ke semua shard; users dan borrowings di-route ke shard berdasarkan user_id
+ *   (username / email users diklaim lebih dulu di user_identities shard 0, lihat loadUsers)
+ * - Dengan MergeMode selain NONE, data di-COPY ke temp table staging lalu digabung dengan
+ *   INSERT ... ON CONFLICT, sehingga ISBN / username yang sudah ada tidak menggagalkan load
+ * Setiap shard dimuat dalam satu transaksi; jika load gagal, shard yang belum di-commit di-rollback
+ */
+public class BulkLoader {
+    private static final Logger logger = Logger.getLogger(BulkLoader.class.getName());
+
+    /**
+     * Penanganan baris yang bentrok dengan data yang sudah ada
+     */
+    public enum MergeMode {
+        // COPY langsung ke tabel tujuan, baris yang bentrok menggagalkan seluruh load
+        NONE,
+        // Lewat staging, baris yang melanggar constraint unik (isbn, username, email, id) dilewati
+        SKIP_EXISTING,
+        // Lewat staging, row dengan isbn / username yang sudah ada di-update dengan data baru
+        UPDATE_EXISTING
+    }
+
+    /**
+     * Tabel tujuan beserta urutan kolom COPY, yang juga menjadi urutan kolom input CSV
+     */
+    public enum Table {
+        BOOKS("books", "book_id", "isbn", true,
+                "isbn", "title", "author_id", "publisher_id", "category_id", "publication_year", "pages",
+                "language", "description", "total_copies", "available_copies", "price", "location", "status"),
+        USERS("users", "user_id", "username", false,
+                "username", "email", "full_name", "phone", "role", "status"),
+        BORROWINGS("borrowings", "borrowing_id", null, false,
+                "user_id", "book_id", "borrow_date", "due_date", "return_date", "status",
+                "fine_amount", "fine_paid", "notes");
+
+        private final String tableName;
+        private final String idColumn;
+        // Kolom unik untuk UPDATE_EXISTING, null jika tabel tidak punya natural key
+        private final String conflictColumn;
+        // Catalog yang direplikasi ke semua shard
+        private final boolean replicated;
+        private final List<String> columns;
+
+        Table(String tableName, String idColumn, String conflictColumn, boolean replicated, String... columns) {
+            this.tableName = tableName;
+            this.idColumn = idColumn;
+            this.conflictColumn = conflictColumn;
+            this.replicated = replicated;
+            this.columns = List.of(columns);
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * Daftar kolom COPY; dengan sharding, id dialokasikan di client dan dikirim sebagai kolom terakhir
+         */
+        private String columnList(boolean withId) {
+            return String.join(", ", columns) + (withId ? ", " + idColumn : "");
+        }
+
+        private String stagingName() {
+            return "bulk_" + tableName + "_staging";
+        }
+    }
+
+    /**
+     * Menulis semua baris ke encoder shard tujuan (index array = shard)
+     * @return jumlah baris input yang dilewati sebelum COPY
+     */
+    @FunctionalInterface
+    private interface RowWriter {
+        long write(CopyEncoder[] encoders) throws SQLException;
+    }
+
+    private final ConnectionProvider connections;
+    private final int bufferSize;
+
+    /**
+     * Loader dengan ConnectionProvider default (pool DatabaseConfig + transaksi terikat thread)
+     */
+    public BulkLoader() {
+        this(DatabaseConfig.getTransactionManager());
+    }
+
+    public BulkLoader(ConnectionProvider connections) {
+        this(connections, DatabaseConfig.getCopyBufferSize());
+    }
+
+    /**
+     * @param bufferSize ukuran buffer COPY per shard dalam byte
+     */
+    public BulkLoader(ConnectionProvider connections, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize harus lebih dari 0");
+        }
+        this.connections = connections;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Memuat books ke catalog di semua shard
+     * Dengan sharding, bookId yang null diisi dengan id yang dialokasikan dari shard 0
+     * @param books sumber book, dibaca sekali secara berurutan
+     * @param mode penanganan ISBN yang sudah ada
+     */
+    public BulkLoadResult loadBooks(Iterator<? extends Book> books, MergeMode mode) throws SQLException {
+        boolean withId = connections.getShardCount() > 1;
+        IdBlock ids = new IdBlock(Table.BOOKS);
+        return load(Table.BOOKS, mode, withId, false, null, encoders -> {
+            // Catalog direplikasi: semua shard memakai encoder yang sama
+            CopyEncoder encoder = encoders[0];
+            while (books.hasNext()) {
+                Book book = books.next();
+                encoder.value(book.getIsbn())
+                        .value(book.getTitle())
+                        .value(book.getAuthorId())
+                        .value(book.getPublisherId())
+                        .value(book.getCategoryId())
+                        .value(book.getPublicationYear())
+                        .value(book.getPages())
+                        .value(book.getLanguage())
+                        .value(book.getDescription())
+                        .value(book.getTotalCopies())
+                        .value(book.getAvailableCopies())
+                        .value(book.getPrice())
+                        .value(book.getLocation())
+                        // Kolom yang disebut di COPY tidak memakai default tabel
+                        .value(book.getStatus() != null ? book.getStatus() : "available");
+                if (withId) {
+                    if (book.getBookId() == null) {
+                        book.setBookId(ids.next());
+                    }
+                    encoder.value(book.getBookId());
+                }
+                encoder.endRow();
+            }
+            return 0;
+        });
+    }
+
+    /**
+     * Memuat users ke shard masing-masing
+     * Dengan sharding, userId yang null diisi dengan id yang dialokasikan dari shard 0, dan username / email
+     * diklaim di tabel user_identities shard 0 sebelum di-COPY (lihat loadShardedUsers)
+     * @param users sumber user, dibaca sekali secara berurutan
+     * @param mode penanganan username yang sudah ada
+     */
+    public BulkLoadResult loadUsers(Iterator<? extends User> users, MergeMode mode) throws SQLException {
+        if (connections.getShardCount() > 1) {
+            return loadShardedUsers(users, mode);
+        }
+        return load(Table.USERS, mode, false, false, null, encoders -> {
+            while (users.hasNext()) {
+                writeUser(encoders[0], users.next(), false);
+            }
+            return 0;
+        });
+    }
+
+    /**
+     * Constraint unik users hanya berlaku per shard, sehingga user diklaim per blok db.batch.size
+     * di user_identities sebelum di-route, dalam transaksi shard 0 terpisah yang di-commit tepat sebelum shard:
+     * - NONE: username / email yang sudah dipakai di shard mana pun menggagalkan load
+     * - SKIP_EXISTING: user dengan username / email yang sudah dipakai dilewati
+     * - UPDATE_EXISTING: username yang sudah ada memakai userId pemiliknya, sehingga di-merge di shard pemilik
+     */
+    private BulkLoadResult loadShardedUsers(Iterator<? extends User> users, MergeMode mode) throws SQLException {
+        rejectShardedLoadInTransaction();
+        UserIdentities.ensureTable(connections);
+        IdBlock ids = new IdBlock(Table.USERS);
+        int blockSize = BatchInserts.rowsPerStatement(3);
+        Target claims = open(UserIdentities.SHARD);
+        try {
+            return load(Table.USERS, mode, true, false, claims, encoders -> {
+                List<User> block = new ArrayList<>(blockSize);
+                long skipped = 0;
+                while (users.hasNext()) {
+                    block.add(users.next());
+                    if (block.size() == blockSize || !users.hasNext()) {
+                        skipped += writeClaimedUsers(claims.connection, block, mode, ids, encoders);
+                        block.clear();
+                    }
+                }
+                return skipped;
+            });
+        } finally {
+            claims.close();
+        }
+    }
+
+    /**
+     * Mengklaim satu blok user lalu menulisnya ke encoder shard pemiliknya
+     * @return jumlah user yang dilewati karena username / email sudah dipakai (SKIP_EXISTING)
+     */
+    private long writeClaimedUsers(Connection claims, List<User> block, MergeMode mode, IdBlock ids,
+                                   CopyEncoder[] encoders) throws SQLException {
+        List<User> identities = new ArrayList<>(block.size());
+        for (User user : block) {
+            if (user.getUserId() == null) {
+                user.setUserId(ids.next());
+            }
+            identities.add(User.builder().userId(user.getUserId())
+                    .username(user.getUsername()).email(user.getEmail()).build());
+        }
+        Map<String, Integer> owners = null;
+        if (mode == MergeMode.NONE) {
+            UserIdentities.claim(claims, identities);
+        } else if (mode == MergeMode.SKIP_EXISTING) {
+            owners = UserIdentities.claimOrSkip(claims, identities);
+        } else {
+            owners = UserIdentities.claimOrUpdate(claims, identities);
+        }
+
+        long skipped = 0;
+        for (User user : block) {
+            if (mode == MergeMode.SKIP_EXISTING && !user.getUserId().equals(owners.get(user.getUsername()))) {
+                skipped++;
+                continue;
+            }
+            if (mode == MergeMode.UPDATE_EXISTING) {
+                user.setUserId(owners.get(user.getUsername()));
+            }
+            writeUser(encoders[connections.shardForUser(user.getUserId())], user, true);
+        }
+        return skipped;
+    }
+
+    private void writeUser(CopyEncoder encoder, User user, boolean withId) throws SQLException {
+        encoder.value(user.getUsername())
+                .value(user.getEmail())
+                .value(user.getFullName())
+                .value(user.getPhone())
+                .value(user.getRole() != null ? user.getRole() : "member")
+                .value(user.getStatus() != null ? user.getStatus() : "active");
+        if (withId) {
+            encoder.value(user.getUserId());
+        }
+        encoder.endRow();
+    }
+
+    /**
+     * Memuat borrowings (misalnya histori dari sistem lama) ke shard user masing-masing
+     * available_copies book tidak diubah - stok hasil migrasi ikut dimuat lewat loadBooks
+     * @param borrowings sumber borrowing, dibaca sekali secara berurutan
+     */
+    public BulkLoadResult loadBorrowings(Iterator<? extends Borrowing> borrowings) throws SQLException {
+        boolean withId = connections.getShardCount() > 1;
+        IdBlock ids = new IdBlock(Table.BORROWINGS);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        return load(Table.BORROWINGS, MergeMode.NONE, withId, false, null, encoders -> {
+            while (borrowings.hasNext()) {
+                Borrowing borrowing = borrowings.next();
+                CopyEncoder encoder = encoders[connections.shardForUser(borrowing.getUserId())];
+                encoder.value(borrowing.getUserId())
+                        .value(borrowing.getBookId())
+                        .value(borrowing.getBorrowDate() != null ? borrowing.getBorrowDate() : now)
+                        .value(borrowing.getDueDate())
+                        .value(borrowing.getReturnDate())
+                        .value(borrowing.getStatus() != null ? borrowing.getStatus() : "borrowed")
+                        .value(borrowing.getFineAmount() != null ? borrowing.getFineAmount() : BigDecimal.ZERO)
+                        .value(borrowing.getFinePaid() != null ? borrowing.getFinePaid() : Boolean.FALSE)
+                        .value(borrowing.getNotes());
+                if (withId) {
+                    if (borrowing.getBorrowingId() == null) {
+                        borrowing.setBorrowingId(ids.next());
+                    }
+                    encoder.value(borrowing.getBorrowingId());
+                }
+                encoder.endRow();
+            }
+            return 0;
+        });
+    }
+
+    /**
+     * Memuat file CSV (UTF-8) apa adanya dengan urutan kolom table.getColumns()
+     * Field kosong tanpa quote dibaca sebagai NULL, bukan default kolom
+     * @param csv input CSV, dibaca bertahap sebesar buffer
+     * @param header true jika baris pertama berisi nama kolom
+     * @throws SQLFeatureNotSupportedException jika sharding aktif - id dan routing butuh parsing per baris,
+     *                                         gunakan loadBooks / loadUsers / loadBorrowings
+     */
+    public BulkLoadResult loadCsv(Table table, InputStream csv, boolean header, MergeMode mode) throws SQLException {
+        if (connections.getShardCount() > 1) {
+            throw new SQLFeatureNotSupportedException("Load CSV hanya didukung tanpa sharding", "0A000");
+        }
+        return load(table, mode, false, header, null, encoders -> {
+            encoders[0].copyFrom(csv);
+            return 0;
+        });
+    }
+
+    /**
+     * @param claims transaksi klaim user_identities yang di-commit sebelum shard, null jika tidak ada
+     */
+    private BulkLoadResult load(Table table, MergeMode mode, boolean withId, boolean header, Target claims,
+                                RowWriter writer) throws SQLException {
+        if (mode != MergeMode.NONE && table.conflictColumn == null) {
+            throw new IllegalArgumentException("Tabel " + table.tableName + " tidak punya kunci untuk merge");
+        }
+        if (withId) {
+            rejectShardedLoadInTransaction();
+        }
+
+        long start = System.currentTimeMillis();
+        int shardCount = connections.getShardCount();
+        List<Target> targets = new ArrayList<>(shardCount);
+        try {
+            for (int shard = 0; shard < shardCount; shard++) {
+                Target target = open(shard);
+                targets.add(target);
+                startCopy(target, table, mode, withId, header);
+            }
+
+            CopyEncoder[] encoders = new CopyEncoder[shardCount];
+            if (table.replicated) {
+                List<CopyIn> all = targets.stream().map(target -> target.copyIn).collect(Collectors.toList());
+                Arrays.fill(encoders, new CopyEncoder(all, bufferSize));
+            } else {
+                for (int shard = 0; shard < shardCount; shard++) {
+                    encoders[shard] = new CopyEncoder(List.of(targets.get(shard).copyIn), bufferSize);
+                }
+            }
+            long skippedBeforeCopy = writer.write(encoders);
+            for (CopyEncoder encoder : encoders) {
+                encoder.flush();
+            }
+
+            BulkLoadResult result = BulkLoadResult.builder().table(table.tableName)
+                    .rowsSkipped(skippedBeforeCopy).build();
+            for (int shard = 0; shard < shardCount; shard++) {
+                Target target = targets.get(shard);
+                long copied = target.copyIn.endCopy();
+                long[] merged = mode == MergeMode.NONE
+                        ? new long[]{copied, 0}
+                        : merge(target, table, mode, withId);
+                // Catalog yang direplikasi berisi baris yang sama di setiap shard, dilaporkan sekali
+                if (!table.replicated || shard == 0) {
+                    result.setRowsCopied(result.getRowsCopied() + copied);
+                    result.setRowsInserted(result.getRowsInserted() + merged[0]);
+                    result.setRowsUpdated(result.getRowsUpdated() + merged[1]);
+                    result.setRowsSkipped(result.getRowsSkipped() + copied - merged[0] - merged[1]);
+                }
+            }
+            // Klaim di-commit lebih dulu: jika commit shard gagal, yang tersisa hanya klaim tanpa user,
+            // bukan user tanpa klaim
+            if (claims != null) {
+                claims.commit();
+            }
+            for (Target target : targets) {
+                target.commit();
+            }
+            connections.markWrite();
+
+            result.setDurationMillis(System.currentTimeMillis() - start);
+            logger.info("Bulk load " + table.tableName + " selesai - Copied: " + result.getRowsCopied()
+                    + ", Inserted: " + result.getRowsInserted() + ", Updated: " + result.getRowsUpdated()
+                    + ", Skipped: " + result.getRowsSkipped() + ", Duration: " + result.getDurationMillis() + " ms"
+                    + String.format(" (%.0f rows/s)", result.getRowsPerSecond()));
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            if (claims != null) {
+                claims.abort();
+            }
+            for (Target target : targets) {
+                target.abort();
+            }
+            throw e;
+        } finally {
+            for (Target target : targets) {
+                target.close();
+            }
+        }
+    }
+
+    /**
+     * Alokasi id memakai koneksi shard 0 yang sedang dipakai COPY jika load ikut transaksi caller
+     */
+    private void rejectShardedLoadInTransaction() {
+        if (connections instanceof TransactionManager && ((TransactionManager) connections).isInTransaction()) {
+            throw new IllegalStateException("Bulk load dengan sharding tidak bisa dijalankan di dalam transaksi");
+        }
+    }
+
+    /**
+     * Membuka koneksi primary shard; di dalam transaksi TransactionManager, load ikut transaksi tersebut
+     */
+    private Target open(int shard) throws SQLException {
+        Connection conn = connections.getConnection(shard);
+        try {
+            boolean ownTransaction = conn.getAutoCommit();
+            if (ownTransaction) {
+                conn.setAutoCommit(false);
+            }
+            return new Target(conn, ownTransaction);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    private void startCopy(Target target, Table table, MergeMode mode, boolean withId, boolean header)
+            throws SQLException {
+        String columns = table.columnList(withId);
+        String into = table.tableName;
+        if (mode != MergeMode.NONE) {
+            into = table.stagingName();
+            // Staging tanpa constraint dan default; baris yang bentrok baru ditangani saat merge
+            try (Statement stmt = target.connection.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS pg_temp." + into);
+                stmt.execute("CREATE TEMP TABLE " + into + " ON COMMIT DROP AS " +
+                        "SELECT " + columns + " FROM " + table.tableName + " WITH NO DATA");
+            }
+        }
+        String sql = "COPY " + into + " (" + columns + ") FROM STDIN WITH (FORMAT csv" +
+                (header ? ", HEADER true" : "") + ")";
+        target.copyIn = target.connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+    }
+
+    /**
+     * Menggabungkan staging ke tabel tujuan
+     * @return {jumlah insert, jumlah update}
+     */
+    private long[] merge(Target target, Table table, MergeMode mode, boolean withId) throws SQLException {
+        String columns = table.columnList(withId);
+        String key = table.conflictColumn;
+        String conflict;
+        if (mode == MergeMode.SKIP_EXISTING) {
+            // Tanpa conflict target supaya constraint unik lain (email, id) juga dilewati
+            conflict = "ON CONFLICT DO NOTHING";
+        } else {
+            // id row lama dipertahankan
+            conflict = "ON CONFLICT (" + key + ") DO UPDATE SET " + table.columns.stream()
+                    .filter(column -> !column.equals(key))
+                    .map(column -> column + " = EXCLUDED." + column)
+                    .collect(Collectors.joining(", ")) + ", updated_at = CURRENT_TIMESTAMP";
+        }
+
+        // DISTINCT ON: kunci yang muncul lebih dari sekali di input diambil baris terakhirnya
+        // (staging hanya diisi COPY, sehingga urutan ctid mengikuti urutan input)
+        // xmax = 0 pada RETURNING membedakan row yang baru di-insert dari row lama yang di-update
+        String sql = "WITH merged AS (" +
+                "INSERT INTO " + table.tableName + " (" + columns + ") " +
+                "SELECT DISTINCT ON (" + key + ") " + columns + " FROM " + table.stagingName() + " " +
+                "ORDER BY " + key + ", ctid DESC " +
+                conflict + " RETURNING (xmax = 0) AS inserted) " +
+                "SELECT count(*) FILTER (WHERE inserted), count(*) FILTER (WHERE NOT inserted) FROM merged";
+
+        try (PreparedStatement pstmt = target.connection.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2)};
+        }
+    }
+
+    /**
+     * Koneksi dan COPY yang sedang berjalan di satu shard
+     */
+    private static final class Target {
+        private final Connection connection;
+        // false jika load ikut transaksi caller - commit/rollback milik caller
+        private final boolean ownTransaction;
+        private CopyIn copyIn;
+
+        private Target(Connection connection, boolean ownTransaction) {
+            this.connection = connection;
+            this.ownTransaction = ownTransaction;
+        }
+
+        private void commit() throws SQLException {
+            if (ownTransaction) {
+                connection.commit();
+            }
+        }
+
+        private void abort() {
+            try {
+                if (copyIn != null && copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                if (ownTransaction) {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                logger.warning("Gagal membatalkan bulk load: " + e.getMessage());
+            }
+        }
+
+        private void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warning("Gagal menutup koneksi bulk load: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Encoder baris CSV ke buffer berukuran tetap; setiap kali penuh, buffer dikirim ke semua COPY tujuan
+     * NULL ditulis sebagai field kosong tanpa quote, string selalu di-quote sehingga string kosong tetap ""
+     */
+    private static final class CopyEncoder {
+        private final List<CopyIn> destinations;
+        private final byte[] buffer;
+        private int position;
+        // false jika belum ada field di baris saat ini (tanpa separator)
+        private boolean inRow;
+
+        private CopyEncoder(List<CopyIn> destinations, int bufferSize) {
+            this.destinations = destinations;
+            this.buffer = new byte[bufferSize];
+        }
+
+        private CopyEncoder value(String value) throws SQLException {
+            separator();
+            if (value != null) {
+                put('"');
+                // Byte '"' tidak pernah muncul di dalam karakter multi-byte UTF-8
+                for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                    if (b == '"') {
+                        put('"');
+                    }
+                    put(b);
+                }
+                put('"');
+            }
+            return this;
+        }
+
+        private CopyEncoder value(Number value) throws SQLException {
+            separator();
+            if (value != null) {
+                putAscii(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString());
+            }
+            return this;
+        }
+
+        /**
+         * Timestamp ditulis sebagai waktu lokal JVM, sama seperti setTimestamp pada kolom TIMESTAMP
+         */
+        private CopyEncoder value(Timestamp value) throws SQLException {
+            separator();
+            if (value != null) {
+                putAscii(value.toString());
+            }
+            return this;
+        }
+
+        private CopyEncoder value(Boolean value) throws SQLException {
+            separator();
+            if (value != null) {
+                put(value ? 't' : 'f');
+            }
+            return this;
+        }
+
+        private void endRow() throws SQLException {
+            put('\n');
+            inRow = false;
+        }
+
+        /**
+         * Menyalin input CSV mentah lewat buffer yang sama
+         */
+        private void copyFrom(InputStream input) throws SQLException {
+            try {
+                int read;
+                while ((read = input.read(buffer, position, buffer.length - position)) != -1) {
+                    position += read;
+                    if (position == buffer.length) {
+                        flush();
+                    }
+                }
+            } catch (IOException e) {
+                throw new SQLException("Gagal membaca input CSV: " + e.getMessage(), "58030", e);
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (position == 0) {
+                return;
+            }
+            for (CopyIn destination : destinations) {
+                destination.writeToCopy(buffer, 0, position);
+            }
+            position = 0;
+        }
+
+        private void separator() throws SQLException {
+            if (inRow) {
+                put(',');
+            }
+            inRow = true;
+        }
+
+        private void putAscii(String value) throws SQLException {
+            for (int i = 0; i < value.length(); i++) {
+                put(value.charAt(i));
+            }
+        }
+
+        private void put(int b) throws SQLException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = (byte) b;
+        }
+    }
+
+    /**
+     * Id dari sequence shard 0, dialokasikan per blok db.batch.size supaya tidak satu round trip per baris
+     */
+    private final class IdBlock {
+        private final Table table;
+        private Iterator<Integer> ids = Collections.emptyIterator();
+
+        private IdBlock(Table table) {
+            this.table = table;
+        }
+
+        private int next() throws SQLException {
+            if (!ids.hasNext()) {
+                ids = ShardQueries.allocateIds(connections, table.tableName, table.idColumn,
+                        DatabaseConfig.getBatchSize()).iterator();
+            }
+            return ids.next();
+        }
+    }
+}
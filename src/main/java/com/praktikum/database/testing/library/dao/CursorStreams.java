@@ -0,0 +1,152 @@
+package com.praktikum.database.testing.library.dao;
+
+import com.praktikum.database.testing.library.config.ConnectionProvider;
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Helper untuk streamAll / streamOverdue: ResultSet dibaca lewat cursor server-side
+ * (auto-commit false + setFetchSize), sehingga hanya db.stream.fetchSize row yang ada di heap sekaligus
+ * Connection, statement dan ResultSet ditutup saat Stream di-close (try-with-resources)
+ * atau otomatis setelah row terakhir terbaca
+ */
+final class CursorStreams {
+    private static final Logger logger = Logger.getLogger(CursorStreams.class.getName());
+
+    /**
+     * Membuat RowMapper untuk ResultSet cursor (index kolom di-resolve sekali)
+     */
+    @FunctionalInterface
+    interface MapperFactory<T> {
+        RowMapper<T> create(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Membuka cursor pada satu shard
+     */
+    @FunctionalInterface
+    interface ShardCursor<T> {
+        Stream<T> open(int shard) throws SQLException;
+    }
+
+    private CursorStreams() {
+    }
+
+    /**
+     * Membuka cursor di semua shard dan menyambungnya menjadi satu Stream (shard 0 lebih dulu)
+     * Urutan ORDER BY hanya berlaku di dalam masing-masing shard
+     */
+    static <T> Stream<T> concat(ConnectionProvider connections, ShardCursor<T> cursor) throws SQLException {
+        List<Stream<T>> streams = new ArrayList<>(connections.getShardCount());
+        try {
+            for (int shard = 0; shard < connections.getShardCount(); shard++) {
+                streams.add(cursor.open(shard));
+            }
+        } catch (SQLException | RuntimeException e) {
+            streams.forEach(Stream::close);
+            throw e;
+        }
+        // Stream.concat ikut menutup kedua stream saat hasilnya di-close
+        return streams.stream().reduce(Stream::concat).orElseGet(Stream::empty);
+    }
+
+    /**
+     * Menjalankan query dan mengembalikan row-nya sebagai Stream lazy
+     * @param conn koneksi yang menjadi milik Stream (ditutup saat Stream di-close)
+     */
+    static <T> Stream<T> open(Connection conn, String sql, MapperFactory<T> mapperFactory) throws SQLException {
+        Cursor<T> cursor = new Cursor<>(conn);
+        try {
+            // pgjdbc hanya memakai cursor jika auto-commit false; di dalam transaksi TransactionManager sudah false
+            if (conn.getAutoCommit()) {
+                conn.setAutoCommit(false);
+                cursor.ownTransaction = true;
+            }
+            // prepareStatement dengan tiga argumen tidak lewat StatementCache: statement dengan
+            // fetch size yang diubah tidak dipakai ulang oleh cache
+            cursor.statement = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            cursor.statement.setFetchSize(DatabaseConfig.getStreamFetchSize());
+            cursor.resultSet = cursor.statement.executeQuery();
+            cursor.mapper = mapperFactory.create(cursor.resultSet);
+        } catch (SQLException | RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    /**
+     * Spliterator di atas ResultSet yang membaca satu row per tryAdvance
+     */
+    private static final class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private RowMapper<T> mapper;
+        // true jika auto-commit diubah oleh cursor ini, bukan transaksi caller
+        private boolean ownTransaction;
+        private boolean closed;
+
+        private Cursor(Connection connection) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.connection = connection;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!resultSet.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapper.map(resultSet));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new IllegalStateException("Gagal membaca row dari cursor: " + e.getMessage(), e);
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                if (statement != null) {
+                    statement.close();
+                }
+                // Transaksi hanya membaca - tidak ada yang perlu di-commit
+                if (ownTransaction) {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                logger.warning("Gagal menutup cursor: " + e.getMessage());
+            } finally {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.warning("Gagal menutup koneksi cursor: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
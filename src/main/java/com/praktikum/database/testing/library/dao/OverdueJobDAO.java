@@ -0,0 +1,331 @@
+package com.praktikum.database.testing.library.dao;
+
+import com.praktikum.database.testing.library.config.ConnectionProvider;
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+import com.praktikum.database.testing.library.model.OverdueJobProgress;
+import com.praktikum.database.testing.library.model.OverduePartition;
+import com.praktikum.database.testing.library.model.OverdueUpdateResult;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Optional;
+
+/**
+ * DAO untuk state job overdue:
+ * - overdue_job_partitions: pembagian kerja job overdue antar worker dan instance
+ * - overdue_watermark: batas due_date yang sudah diproses oleh scheduler inkremental
+ * Setiap shard punya tabelnya sendiri, sehingga update borrowing dan state job
+ * selalu berada di database (dan transaksi) yang sama
+ */
+public class OverdueJobDAO {
+
+    private final ConnectionProvider connections;
+    private final BorrowingDAO borrowingDAO;
+
+    /**
+     * DAO dengan ConnectionProvider default (pool DatabaseConfig + transaksi terikat thread)
+     */
+    public OverdueJobDAO() {
+        this(DatabaseConfig.getTransactionManager());
+    }
+
+    /**
+     * @param connections sumber koneksi, misalnya TransactionManager yang sama dengan service
+     */
+    public OverdueJobDAO(ConnectionProvider connections) {
+        this.connections = connections;
+        this.borrowingDAO = new BorrowingDAO(connections);
+    }
+
+    /**
+     * Membuat tabel overdue_job_partitions di semua shard jika belum ada
+     */
+    public void createTableIfNotExists() throws SQLException {
+        ShardQueries.scatterWrite(connections, this::createTableIfNotExists);
+    }
+
+    private Void createTableIfNotExists(int shard) throws SQLException {
+        String sql = "CREATE TABLE IF NOT EXISTS overdue_job_partitions (" +
+                "run_id VARCHAR(100) NOT NULL, " +
+                "partition_no INTEGER NOT NULL, " +
+                "range_start INTEGER NOT NULL, " +
+                "range_end INTEGER NOT NULL, " +
+                "last_processed_id INTEGER NOT NULL, " +
+                "status VARCHAR(20) NOT NULL DEFAULT 'pending', " +
+                "owner VARCHAR(200), " +
+                "lease_until TIMESTAMPTZ, " +
+                "as_of TIMESTAMP NOT NULL, " +
+                "updated_count INTEGER NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (run_id, partition_no))";
+        try (Connection conn = connections.getConnection(shard);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+        return null;
+    }
+
+    /**
+     * Membagi borrowing overdue di satu shard menjadi beberapa range borrowing_id yang sama lebar
+     * Idempotent: jika run sudah direncanakan oleh instance lain, partisi yang ada dipakai apa adanya
+     * (termasuk asOf-nya), sehingga run yang terputus bisa dilanjutkan dengan runId yang sama
+     * @return jumlah partisi yang baru dibuat (0 jika run sudah ada atau tidak ada borrowing overdue)
+     */
+    public int planPartitions(int shard, String runId, Timestamp asOf, int partitions) throws SQLException {
+        String sql = "INSERT INTO overdue_job_partitions " +
+                "(run_id, partition_no, range_start, range_end, last_processed_id, as_of) " +
+                "SELECT ?, g, r.lo + g * r.width, LEAST(r.lo + (g + 1) * r.width, r.hi), r.lo + g * r.width, ? " +
+                "FROM (SELECT MIN(borrowing_id) - 1 AS lo, MAX(borrowing_id) AS hi, " +
+                "CEIL((MAX(borrowing_id) - MIN(borrowing_id) + 1)::numeric / ?)::int AS width " +
+                "FROM borrowings WHERE return_date IS NULL AND due_date < ?) r, generate_series(0, ? - 1) g " +
+                "WHERE r.hi IS NOT NULL AND r.lo + g * r.width < r.hi " +
+                "ON CONFLICT (run_id, partition_no) DO NOTHING";
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, runId);
+            pstmt.setTimestamp(2, asOf);
+            pstmt.setInt(3, partitions);
+            pstmt.setTimestamp(4, asOf);
+            pstmt.setInt(5, partitions);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Mengklaim satu partisi pending yang tidak sedang di-lease
+     * FOR UPDATE SKIP LOCKED membuat worker yang mengklaim bersamaan mendapat partisi berbeda tanpa saling menunggu;
+     * partisi milik instance yang mati bisa diklaim ulang setelah lease-nya habis dan dilanjutkan dari checkpoint
+     * @param owner identitas worker (instance + thread)
+     * @param leaseMillis lama lease sebelum partisi boleh diambil worker lain
+     */
+    public Optional<OverduePartition> claimPartition(int shard, String runId, String owner, long leaseMillis)
+            throws SQLException {
+        String sql = "UPDATE overdue_job_partitions p SET owner = ?, " +
+                "lease_until = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond' " +
+                "WHERE (p.run_id, p.partition_no) = (SELECT run_id, partition_no FROM overdue_job_partitions " +
+                "WHERE run_id = ? AND status = 'pending' " +
+                "AND (lease_until IS NULL OR lease_until < CURRENT_TIMESTAMP) " +
+                "ORDER BY partition_no LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+                "RETURNING p.*";
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, owner);
+            pstmt.setLong(2, leaseMillis);
+            pstmt.setString(3, runId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToPartition(rs, shard));
+                }
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Memproses satu chunk partisi lalu menyimpan checkpoint dan memperpanjang lease
+     * Harus dipanggil di dalam transaksi pada shard partisi, supaya update borrowing dan checkpoint
+     * di-commit bersama; jika lease sudah diambil worker lain, transaksi harus di-rollback
+     * Partition diperbarui (lastProcessedId, updatedCount, status) hanya jika checkpoint berhasil
+     * @return jumlah borrowing yang diperbarui pada chunk ini
+     * @throws IllegalStateException jika partisi sudah tidak dimiliki owner
+     */
+    public int processChunk(OverduePartition partition, String owner, int chunkSize, long leaseMillis)
+            throws SQLException {
+        BorrowingDAO.OverdueChunk chunk = borrowingDAO.markOverdueChunk(partition.getShard(), partition.getAsOf(),
+                partition.getLastProcessedId(), partition.getRangeEnd(), chunkSize);
+        boolean done = chunk.lastId == null || chunk.lastId >= partition.getRangeEnd();
+        int lastProcessedId = chunk.lastId == null ? partition.getRangeEnd() : chunk.lastId;
+
+        String sql = "UPDATE overdue_job_partitions SET last_processed_id = ?, " +
+                "updated_count = updated_count + ?, status = ?, " +
+                "lease_until = CASE WHEN ? THEN NULL ELSE CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond' END " +
+                "WHERE run_id = ? AND partition_no = ? AND owner = ? AND status = 'pending'";
+        try (Connection conn = connections.getConnection(partition.getShard());
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, lastProcessedId);
+            pstmt.setInt(2, chunk.updated);
+            pstmt.setString(3, done ? "done" : "pending");
+            pstmt.setBoolean(4, done);
+            pstmt.setLong(5, leaseMillis);
+            pstmt.setString(6, partition.getRunId());
+            pstmt.setInt(7, partition.getPartitionNo());
+            pstmt.setString(8, owner);
+            if (pstmt.executeUpdate() == 0) {
+                throw new IllegalStateException("Lease partisi " + partition.getPartitionNo()
+                        + " sudah diambil worker lain");
+            }
+        }
+
+        partition.setLastProcessedId(lastProcessedId);
+        partition.setUpdatedCount(partition.getUpdatedCount() + chunk.updated);
+        partition.setStatus(done ? "done" : "pending");
+        return chunk.updated;
+    }
+
+    /**
+     * Membuat tabel overdue_watermark dan partial index due_date untuk borrowing yang belum dikembalikan
+     * (dipakai oleh update inkremental) di semua shard jika belum ada
+     */
+    public void createWatermarkTableIfNotExists() throws SQLException {
+        ShardQueries.scatterWrite(connections, this::createWatermarkTableIfNotExists);
+    }
+
+    private Void createWatermarkTableIfNotExists(int shard) throws SQLException {
+        try (Connection conn = connections.getConnection(shard);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS overdue_watermark (" +
+                    "job VARCHAR(100) PRIMARY KEY, " +
+                    "watermark TIMESTAMP NOT NULL, " +
+                    "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_borrowings_open_due_date " +
+                    "ON borrowings (due_date) WHERE return_date IS NULL");
+        }
+        return null;
+    }
+
+    /**
+     * Mencoba mengambil advisory lock PostgreSQL untuk transaksi yang sedang berjalan
+     * Lock dilepas otomatis saat commit / rollback; instance lain yang mencoba bersamaan langsung mendapat false
+     * @return true jika lock didapat
+     */
+    public boolean tryAdvisoryLock(int shard, long key) throws SQLException {
+        String sql = "SELECT pg_try_advisory_xact_lock(?)";
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * @return watermark terakhir job di shard, kosong jika job belum pernah berjalan
+     */
+    public Optional<Timestamp> findWatermark(int shard, String job) throws SQLException {
+        String sql = "SELECT watermark FROM overdue_watermark WHERE job = ?";
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, job);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(rs.getTimestamp("watermark"));
+                }
+                return Optional.empty();
+            }
+        }
+    }
+
+    public void saveWatermark(int shard, String job, Timestamp watermark) throws SQLException {
+        String sql = "INSERT INTO overdue_watermark (job, watermark) VALUES (?, ?) " +
+                "ON CONFLICT (job) DO UPDATE SET watermark = EXCLUDED.watermark, updated_at = CURRENT_TIMESTAMP";
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, job);
+            pstmt.setTimestamp(2, watermark);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Update overdue untuk borrowing yang baru overdue di antara since dan asOf,
+     * termasuk borrowing yang masuk terlambat dengan due_date sebelum since
+     */
+    public OverdueUpdateResult markOverdueSince(int shard, Timestamp since, Timestamp asOf) throws SQLException {
+        BorrowingDAO.OverdueChunk chunk = borrowingDAO.markOverdueCrossed(shard, since, asOf);
+        return OverdueUpdateResult.builder()
+                .updatedCount(chunk.updated)
+                .newlyOverdueCount(chunk.newlyOverdue)
+                .chunkCount(1)
+                .build();
+    }
+
+    /**
+     * Update overdue penuh untuk satu shard (run pertama sebelum ada watermark, lalu sekali sehari)
+     */
+    public OverdueUpdateResult markAllOverdue(int shard, Timestamp asOf, int chunkSize) throws SQLException {
+        return borrowingDAO.markOverdue(shard, asOf, chunkSize);
+    }
+
+    /**
+     * Progress run di semua shard dan semua instance
+     */
+    public OverdueJobProgress getProgress(String runId) throws SQLException {
+        OverdueJobProgress total = OverdueJobProgress.builder().runId(runId).build();
+        for (OverdueJobProgress progress : ShardQueries.scatter(connections, shard -> getProgress(shard, runId))) {
+            total.setPartitionsTotal(total.getPartitionsTotal() + progress.getPartitionsTotal());
+            total.setPartitionsDone(total.getPartitionsDone() + progress.getPartitionsDone());
+            total.setPartitionsInProgress(total.getPartitionsInProgress() + progress.getPartitionsInProgress());
+            total.setUpdatedCount(total.getUpdatedCount() + progress.getUpdatedCount());
+        }
+        return total;
+    }
+
+    private OverdueJobProgress getProgress(int shard, String runId) throws SQLException {
+        String sql = "SELECT COUNT(*) AS total, COUNT(*) FILTER (WHERE status = 'done') AS done, " +
+                "COUNT(*) FILTER (WHERE status = 'pending' AND lease_until >= CURRENT_TIMESTAMP) AS in_progress, " +
+                "COALESCE(SUM(updated_count), 0) AS updated FROM overdue_job_partitions WHERE run_id = ?";
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, runId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return OverdueJobProgress.builder()
+                        .runId(runId)
+                        .partitionsTotal(rs.getInt("total"))
+                        .partitionsDone(rs.getInt("done"))
+                        .partitionsInProgress(rs.getInt("in_progress"))
+                        .updatedCount(rs.getLong("updated"))
+                        .build();
+            }
+        }
+    }
+
+    /**
+     * Menghapus semua partisi satu run (di semua shard)
+     */
+    public int deleteRun(String runId) throws SQLException {
+        int deleted = 0;
+        for (Integer count : ShardQueries.scatterWrite(connections, shard -> deleteRun(shard, runId))) {
+            deleted += count;
+        }
+        return deleted;
+    }
+
+    private int deleteRun(int shard, String runId) throws SQLException {
+        String sql = "DELETE FROM overdue_job_partitions WHERE run_id = ?";
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, runId);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private OverduePartition mapResultSetToPartition(ResultSet rs, int shard) throws SQLException {
+        return OverduePartition.builder()
+                .runId(rs.getString("run_id"))
+                .shard(shard)
+                .partitionNo(rs.getInt("partition_no"))
+                .rangeStart(rs.getInt("range_start"))
+                .rangeEnd(rs.getInt("range_end"))
+                .lastProcessedId(rs.getInt("last_processed_id"))
+                .status(rs.getString("status"))
+                .owner(rs.getString("owner"))
+                .leaseUntil(rs.getTimestamp("lease_until"))
+                .asOf(rs.getTimestamp("as_of"))
+                .updatedCount(rs.getInt("updated_count"))
+                .build();
+    }
+}
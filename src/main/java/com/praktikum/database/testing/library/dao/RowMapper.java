@@ -0,0 +1,23 @@
+package com.praktikum.database.testing.library.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Mapping satu row ResultSet ke object
+ * Implementasi di DAO me-resolve index kolom sekali saat dibuat untuk satu ResultSet,
+ * sehingga setiap row dibaca berdasarkan index tanpa lookup nama kolom
+ */
+@FunctionalInterface
+interface RowMapper<T> {
+
+    T map(ResultSet rs) throws SQLException;
+
+    /**
+     * Kolom integer nullable tanpa getObject (Integer.valueOf memakai cache untuk nilai kecil)
+     */
+    static Integer getInteger(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+}
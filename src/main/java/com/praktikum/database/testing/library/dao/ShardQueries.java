@@ -0,0 +1,298 @@
+package com.praktikum.database.testing.library.dao;
+
+import com.praktikum.database.testing.library.config.ConnectionProvider;
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+import com.praktikum.database.testing.library.config.TransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Helper untuk menjalankan query ke semua shard (scatter-gather)
+ * Dengan satu shard, query dijalankan langsung di thread pemanggil tanpa overhead
+ */
+final class ShardQueries {
+
+    /**
+     * Query yang dijalankan pada satu shard
+     */
+    @FunctionalInterface
+    interface ShardQuery<T> {
+        T run(int shard) throws SQLException;
+    }
+
+    /**
+     * Query multi-get untuk satu chunk id
+     */
+    @FunctionalInterface
+    interface ChunkQuery<T> {
+        void run(List<Integer> ids, Map<Integer, T> found) throws SQLException;
+    }
+
+    private ShardQueries() {
+    }
+
+    /**
+     * Menjalankan query di semua shard secara paralel
+     * Routing read ke primary (onPrimary / read-your-writes) dari thread pemanggil ikut dibawa ke worker
+     * Di dalam transaksi TransactionManager, semua shard dijalankan berurutan di thread pemanggil
+     * supaya shard transaksi memakai koneksi yang terikat ke thread tersebut
+     * Untuk read; write ke semua shard memakai scatterWrite
+     * @param connections provider milik DAO, menentukan jumlah shard
+     * @return hasil per shard, urut berdasarkan index shard
+     */
+    static <T> List<T> scatter(ConnectionProvider connections, ShardQuery<T> query) throws SQLException {
+        int shardCount = connections.getShardCount();
+        List<T> results = new ArrayList<>(shardCount);
+        if (shardCount == 1 || transactionShard(connections).isPresent()) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                results.add(query.run(shard));
+            }
+            return results;
+        }
+
+        boolean pinnedToPrimary = DatabaseConfig.isReadPinnedToPrimary();
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pinnedToPrimary
+                            ? DatabaseConfig.onPrimary(() -> query.run(target))
+                            : query.run(target);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, DatabaseConfig.getShardExecutor()));
+        }
+
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Scatter untuk write yang harus dijalankan di semua shard (katalog yang direplikasi, update massal)
+     * Transaksi TransactionManager hanya mengikat satu shard; shard lain akan mendapat koneksi auto-commit
+     * di luar transaksi, sehingga rollback tidak membatalkan write di sana. Karena itu write ke semua shard
+     * ditolak di dalam transaksi jika ada lebih dari satu shard
+     * @throws SQLException dengan SQLState 25000 jika dipanggil di dalam transaksi dan shard lebih dari satu
+     */
+    static <T> List<T> scatterWrite(ConnectionProvider connections, ShardQuery<T> query) throws SQLException {
+        OptionalInt transactionShard = transactionShard(connections);
+        if (connections.getShardCount() > 1 && transactionShard.isPresent()) {
+            throw new SQLException("Write ke semua shard tidak bisa dijalankan di dalam transaksi shard "
+                    + transactionShard.getAsInt() + " - shard lain berada di luar transaksi", "25000");
+        }
+        List<T> results = scatter(connections, query);
+        // Query shard berjalan di thread executor - read-your-writes ditandai di thread caller
+        connections.markWrite();
+        return results;
+    }
+
+    /**
+     * Koneksi untuk SELECT ... FOR UPDATE pada shard tertentu
+     * Lock hanya berguna jika dipegang transaksi yang juga melakukan write-nya; di dalam transaksi shard lain
+     * koneksi shard ini auto-commit dan lock langsung dilepas, sehingga permintaan tersebut ditolak
+     * @throws SQLException dengan SQLState 25000 jika transaksi aktif berada di shard lain
+     */
+    static Connection lockingConnection(ConnectionProvider connections, int shard) throws SQLException {
+        OptionalInt transactionShard = transactionShard(connections);
+        if (transactionShard.isPresent() && transactionShard.getAsInt() != shard) {
+            throw new SQLException("Lock di shard " + shard + " tidak bisa diambil dari transaksi shard "
+                    + transactionShard.getAsInt(), "25000");
+        }
+        return connections.getConnection(shard);
+    }
+
+    /**
+     * Shard transaksi TransactionManager yang aktif di thread ini, kosong jika tidak di dalam transaksi
+     */
+    static OptionalInt transactionShard(ConnectionProvider connections) {
+        return connections instanceof TransactionManager
+                ? ((TransactionManager) connections).getTransactionShard()
+                : OptionalInt.empty();
+    }
+
+    /**
+     * Scatter-gather lalu merge hasil yang masing-masing sudah terurut (k-way merge)
+     * @param query query per shard yang mengembalikan list terurut sesuai order
+     * @param order urutan yang sama dengan ORDER BY di query
+     */
+    static <T> List<T> mergeOrdered(ConnectionProvider connections, ShardQuery<List<T>> query,
+                                    Comparator<T> order) throws SQLException {
+        List<List<T>> perShard = scatter(connections, query);
+        if (perShard.size() == 1) {
+            return perShard.get(0);
+        }
+
+        int total = 0;
+        // Heap berisi {index shard, posisi} dengan elemen terkecil di atas
+        PriorityQueue<int[]> heap = new PriorityQueue<>((a, b) ->
+                order.compare(perShard.get(a[0]).get(a[1]), perShard.get(b[0]).get(b[1])));
+        for (int shard = 0; shard < perShard.size(); shard++) {
+            total += perShard.get(shard).size();
+            if (!perShard.get(shard).isEmpty()) {
+                heap.add(new int[]{shard, 0});
+            }
+        }
+
+        List<T> merged = new ArrayList<>(total);
+        while (!heap.isEmpty()) {
+            int[] head = heap.poll();
+            List<T> source = perShard.get(head[0]);
+            merged.add(source.get(head[1]));
+            if (head[1] + 1 < source.size()) {
+                heap.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Mengalokasikan id baru dari sequence di shard 0
+     * Dengan lebih dari satu shard, id tidak boleh di-generate oleh masing-masing shard
+     * supaya tetap unik secara global; shard 0 menjadi pemilik sequence
+     * @param table nama tabel
+     * @param column nama kolom serial
+     * @return id baru
+     */
+    static int allocateId(ConnectionProvider connections, String table, String column) throws SQLException {
+        String sql = "SELECT nextval(pg_get_serial_sequence(?, ?))";
+        try (Connection conn = connections.getConnection(0);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, table);
+            pstmt.setString(2, column);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Mengalokasikan beberapa id baru sekaligus dari sequence di shard 0 (satu round trip)
+     * @param count jumlah id
+     * @return id baru, urut naik
+     */
+    static List<Integer> allocateIds(ConnectionProvider connections, String table, String column, int count)
+            throws SQLException {
+        String sql = "SELECT nextval(pg_get_serial_sequence(?, ?)) FROM generate_series(1, ?)";
+        List<Integer> ids = new ArrayList<>(count);
+        try (Connection conn = connections.getConnection(0);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, table);
+            pstmt.setString(2, column);
+            pstmt.setInt(3, count);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Multi-get berdasarkan id: id unik (tanpa null) dibagi per chunk db.multiget.size,
+     * sehingga array parameter = ANY(?) tetap kecil untuk kumpulan id yang besar
+     * @param query mengisi map id -> row untuk satu chunk
+     * @return row yang ditemukan, urut sesuai kemunculan pertama id di input; id yang tidak ada dilewati
+     */
+    static <T> Map<Integer, T> multiGet(Collection<Integer> ids, ChunkQuery<T> query) throws SQLException {
+        Set<Integer> unique = new LinkedHashSet<>(ids);
+        unique.remove(null);
+        List<Integer> distinct = new ArrayList<>(unique);
+
+        Map<Integer, T> found = new HashMap<>();
+        for (List<Integer> chunk : BatchInserts.chunks(distinct, DatabaseConfig.getMultiGetSize())) {
+            query.run(chunk, found);
+        }
+
+        Map<Integer, T> ordered = new LinkedHashMap<>();
+        for (Integer id : distinct) {
+            T row = found.get(id);
+            if (row != null) {
+                ordered.put(id, row);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Scatter-gather untuk query COUNT, hasilnya dijumlahkan
+     */
+    static int sum(ConnectionProvider connections, ShardQuery<Integer> query) throws SQLException {
+        int total = 0;
+        for (Integer count : scatter(connections, query)) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Scatter-gather untuk lookup yang hanya ada di satu shard
+     */
+    static <T> Optional<T> findFirst(ConnectionProvider connections, ShardQuery<Optional<T>> query)
+            throws SQLException {
+        for (Optional<T> result : scatter(connections, query)) {
+            if (result.isPresent()) {
+                return result;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Write untuk row yang masing-masing hanya ada di satu shard (borrowing berdasarkan id)
+     * Di dalam transaksi, hanya shard transaksi yang diubah: caller sudah memilih shard tempat row berada,
+     * dan write ke shard lain tidak akan ikut commit/rollback transaksi tersebut
+     * Di luar transaksi dijalankan di semua shard
+     * @return hasil per shard yang dijalankan
+     */
+    static <T> List<T> scatterOwned(ConnectionProvider connections, ShardQuery<T> query) throws SQLException {
+        OptionalInt transactionShard = transactionShard(connections);
+        if (transactionShard.isPresent()) {
+            return List.of(query.run(transactionShard.getAsInt()));
+        }
+        return scatter(connections, query);
+    }
+
+    /**
+     * Scatter-gather untuk UPDATE/DELETE berdasarkan id yang hanya ada di satu shard (lihat scatterOwned)
+     * @return true jika minimal satu shard mengubah data
+     */
+    static boolean any(ConnectionProvider connections, ShardQuery<Boolean> query) throws SQLException {
+        boolean updated = false;
+        for (Boolean result : scatterOwned(connections, query)) {
+            updated |= result;
+        }
+        return updated;
+    }
+}
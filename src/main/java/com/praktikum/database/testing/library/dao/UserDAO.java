@@ -1,19 +1,44 @@
 package com.praktikum.database.testing.library.dao;
 
+import com.praktikum.database.testing.library.config.ConnectionProvider;
 import com.praktikum.database.testing.library.config.DatabaseConfig;
 import com.praktikum.database.testing.library.model.User;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object (DAO) class untuk entity User
  * Menangani semua operasi CRUD (Create, Read, Update, Delete) untuk tabel users
  * Menggunakan PreparedStatement untuk prevent SQL injection
+ * Jika sharding aktif, user di-route ke shard berdasarkan user_id dan username / email diklaim
+ * di tabel user_identities shard 0, sehingga keduanya tetap unik di semua shard
  */
 public class UserDAO {
 
+    private final ConnectionProvider connections;
+
+    /**
+     * DAO dengan ConnectionProvider default (pool DatabaseConfig + transaksi terikat thread)
+     */
+    public UserDAO() {
+        this(DatabaseConfig.getTransactionManager());
+    }
+
+    /**
+     * @param connections sumber koneksi, misalnya TransactionManager yang sama dengan service
+     */
+    public UserDAO(ConnectionProvider connections) {
+        this.connections = connections;
+    }
+
     /**
      * CREATE - Insert user baru ke database
      * @param user User object yang akan dibuat (tanpa userId)
@@ -21,38 +46,155 @@ public class UserDAO {
      * @throws SQLException jika operasi database gagal
      */
     public User create(User user) throws SQLException {
+        // Dengan sharding, user_id dialokasikan dulu dari shard 0 supaya bisa di-route ke shard tujuan,
+        // lalu username / email diklaim di shard 0 karena constraint unik users hanya berlaku per shard
+        boolean sharded = connections.getShardCount() > 1;
+        Integer userId = sharded ? ShardQueries.allocateId(connections, "users", "user_id") : null;
+        if (sharded) {
+            claim(List.of(user), List.of(userId));
+        }
+
         // SQL query dengan RETURNING clause untuk mendapatkan generated ID
-        String sql = "INSERT INTO users (username, email, full_name, phone, role, status) " +
-                "VALUES (?, ?, ?, ?, ?, ?) " +
+        String sql = "INSERT INTO users (username, email, full_name, phone, role, status" +
+                (sharded ? ", user_id) VALUES (?, ?, ?, ?, ?, ?, ?) " : ") VALUES (?, ?, ?, ?, ?, ?) ") +
                 "RETURNING user_id, registration_date, created_at, updated_at";
 
         // Try-with-resources untuk auto-close connection dan prepared statement
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(connections.shardForUser(userId));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // Set parameter values untuk prepared statement
-            pstmt.setString(1, user.getUsername());
-            pstmt.setString(2, user.getEmail());
-            pstmt.setString(3, user.getFullName());
-            pstmt.setString(4, user.getPhone());
-            // Gunakan default value jika role null
-            pstmt.setString(5, user.getRole() != null ? user.getRole() : "member");
-            // Gunakan default value jika status null
-            pstmt.setString(6, user.getStatus() != null ? user.getStatus() : "active");
+            setInsertParameters(pstmt, user, 1);
+            if (sharded) {
+                pstmt.setInt(7, userId);
+            }
 
             // Execute query dan dapatkan ResultSet
-            ResultSet rs = pstmt.executeQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                // Process ResultSet untuk mendapatkan generated values
+                if (rs.next()) {
+                    // Set generated values ke user object
+                    user.setUserId(rs.getInt("user_id"));
+                    user.setRegistrationDate(rs.getTimestamp("registration_date"));
+                    user.setCreatedAt(rs.getTimestamp("created_at"));
+                    user.setUpdatedAt(rs.getTimestamp("updated_at"));
+                }
+                return user;
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (sharded) {
+                UserIdentities.releaseAfterFailure(connections, List.of(userId), e);
+            }
+            throw e;
+        }
+    }
 
-            // Process ResultSet untuk mendapatkan generated values
-            if (rs.next()) {
-                // Set generated values ke user object
-                user.setUserId(rs.getInt("user_id"));
-                user.setRegistrationDate(rs.getTimestamp("registration_date"));
-                user.setCreatedAt(rs.getTimestamp("created_at"));
-                user.setUpdatedAt(rs.getTimestamp("updated_at"));
+    /**
+     * CREATE - Insert banyak user dengan INSERT multi-row (VALUES ..., ... RETURNING)
+     * Setiap statement berisi maksimal db.batch.size user; tanpa transaksi dari caller,
+     * setiap statement di-commit sendiri
+     * @param users User object yang akan dibuat; userId dan timestamp diisi dari database
+     * @return list yang sama dengan users
+     * @throws SQLException jika operasi database gagal
+     */
+    public List<User> createAll(List<User> users) throws SQLException {
+        if (users.isEmpty()) {
+            return users;
+        }
+        // Dengan sharding, user_id dialokasikan sekaligus dari shard 0 lalu user dikelompokkan per shard
+        boolean sharded = connections.getShardCount() > 1;
+        if (sharded) {
+            List<Integer> userIds = ShardQueries.allocateIds(connections, "users", "user_id", users.size());
+            for (int i = 0; i < users.size(); i++) {
+                users.get(i).setUserId(userIds.get(i));
             }
-            return user;
         }
+        Map<Integer, List<User>> usersByShard = new LinkedHashMap<>();
+        for (User user : users) {
+            usersByShard.computeIfAbsent(connections.shardForUser(user.getUserId()), shard -> new ArrayList<>())
+                    .add(user);
+        }
+
+        int columns = sharded ? 7 : 6;
+        for (Map.Entry<Integer, List<User>> entry : usersByShard.entrySet()) {
+            for (List<User> chunk : BatchInserts.chunks(entry.getValue(), BatchInserts.rowsPerStatement(columns))) {
+                insertChunk(entry.getKey(), chunk, sharded);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Satu INSERT multi-row; RETURNING mengembalikan row sesuai urutan VALUES
+     */
+    private void insertChunk(int shard, List<User> chunk, boolean sharded) throws SQLException {
+        int columns = sharded ? 7 : 6;
+        String sql = "INSERT INTO users (username, email, full_name, phone, role, status" +
+                (sharded ? ", user_id) VALUES " : ") VALUES ") + BatchInserts.values(chunk.size(), columns) +
+                " RETURNING user_id, registration_date, created_at, updated_at";
+
+        List<Integer> userIds = sharded ? chunk.stream().map(User::getUserId).collect(Collectors.toList()) : null;
+        if (sharded) {
+            claim(chunk, userIds);
+        }
+
+        try (Connection conn = connections.getConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < chunk.size(); i++) {
+                setInsertParameters(pstmt, chunk.get(i), i * columns + 1);
+                if (sharded) {
+                    pstmt.setInt(i * columns + 7, chunk.get(i).getUserId());
+                }
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                connections.markWrite();
+                for (int i = 0; rs.next(); i++) {
+                    User user = chunk.get(i);
+                    user.setUserId(rs.getInt("user_id"));
+                    user.setRegistrationDate(rs.getTimestamp("registration_date"));
+                    user.setCreatedAt(rs.getTimestamp("created_at"));
+                    user.setUpdatedAt(rs.getTimestamp("updated_at"));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (sharded) {
+                UserIdentities.releaseAfterFailure(connections, userIds, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Mengklaim username / email user di shard 0 sebelum row users di-insert
+     * @throws SQLException unique_violation (23505) jika username / email sudah dipakai di shard mana pun
+     */
+    private void claim(List<User> users, List<Integer> userIds) throws SQLException {
+        UserIdentities.ensureTable(connections);
+        List<User> identities = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            identities.add(User.builder().userId(userIds.get(i))
+                    .username(users.get(i).getUsername()).email(users.get(i).getEmail()).build());
+        }
+        try (Connection conn = connections.getConnection(UserIdentities.SHARD)) {
+            UserIdentities.claim(conn, identities);
+        }
+    }
+
+    /**
+     * Helper untuk mengisi parameter INSERT user mulai dari index tertentu
+     */
+    private void setInsertParameters(PreparedStatement pstmt, User user, int index) throws SQLException {
+        pstmt.setString(index, user.getUsername());
+        pstmt.setString(index + 1, user.getEmail());
+        pstmt.setString(index + 2, user.getFullName());
+        pstmt.setString(index + 3, user.getPhone());
+        // Gunakan default value jika role null
+        pstmt.setString(index + 4, user.getRole() != null ? user.getRole() : "member");
+        // Gunakan default value jika status null
+        pstmt.setString(index + 5, user.getStatus() != null ? user.getStatus() : "active");
     }
 
     /**
@@ -64,22 +206,82 @@ public class UserDAO {
     public Optional<User> findById(Integer userId) throws SQLException {
         // SQL query untuk select user by ID
         String sql = "SELECT * FROM users WHERE user_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(connections.shardForUser(userId));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // Set parameter userId
             pstmt.setInt(1, userId);
 
             // Execute query
-            ResultSet rs = pstmt.executeQuery();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // Jika user ditemukan, map ResultSet ke User object
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToUser(rs));
+                }
 
-            // Jika user ditemukan, map ResultSet ke User object
-            if (rs.next()) {
-                return Optional.of(mapResultSetToUser(rs));
+                // Return empty Optional jika user tidak ditemukan
+                return Optional.empty();
             }
+        }
+    }
 
-            // Return empty Optional jika user tidak ditemukan
-            return Optional.empty();
+    /**
+     * READ - Mencari banyak user sekaligus dengan satu query per shard per chunk (user_id = ANY(?))
+     * @param userIds ID user, boleh duplikat
+     * @return map user_id -> User untuk user yang ditemukan, urut sesuai input
+     * @throws SQLException jika operasi database gagal
+     */
+    public Map<Integer, User> findByIds(Collection<Integer> userIds) throws SQLException {
+        return ShardQueries.multiGet(userIds, (ids, found) -> {
+            Map<Integer, List<Integer>> idsByShard = new LinkedHashMap<>();
+            for (Integer userId : ids) {
+                idsByShard.computeIfAbsent(connections.shardForUser(userId), shard -> new ArrayList<>()).add(userId);
+            }
+            for (Map.Entry<Integer, List<Integer>> entry : idsByShard.entrySet()) {
+                for (User user : findByIds(entry.getKey(), entry.getValue())) {
+                    found.put(user.getUserId(), user);
+                }
+            }
+        });
+    }
+
+    private List<User> findByIds(int shard, List<Integer> userIds) throws SQLException {
+        String sql = "SELECT * FROM users WHERE user_id = ANY(?)";
+        List<User> users = new ArrayList<>();
+        try (Connection conn = connections.getReadConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setArray(1, conn.createArrayOf("integer", userIds.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                UserMapper mapper = new UserMapper(rs);
+                while (rs.next()) {
+                    users.add(mapper.map(rs));
+                }
+            }
+        }
+        return users;
+    }
+
+    /**
+     * READ - Mencari user berdasarkan ID dan mengunci row-nya (SELECT ... FOR UPDATE)
+     * Harus dipanggil di dalam transaksi; lock dilepas saat commit/rollback
+     * Dipakai untuk menserialisasi operasi per user, misalnya cek batas peminjaman
+     * @param userId ID user yang dicari
+     * @return Optional containing User jika ditemukan
+     * @throws SQLException jika operasi database gagal
+     */
+    public Optional<User> findByIdForUpdate(Integer userId) throws SQLException {
+        String sql = "SELECT * FROM users WHERE user_id = ? FOR UPDATE";
+        try (Connection conn = connections.getConnection(connections.shardForUser(userId));
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToUser(rs));
+                }
+                return Optional.empty();
+            }
         }
     }
 
@@ -90,17 +292,22 @@ public class UserDAO {
      * @throws SQLException jika operasi database gagal
      */
     public Optional<User> findByUsername(String username) throws SQLException {
+        // Username tidak menentukan shard - cari di semua shard
+        return ShardQueries.findFirst(connections, shard -> findByUsername(shard, username));
+    }
+
+    private Optional<User> findByUsername(int shard, String username) throws SQLException {
         String sql = "SELECT * FROM users WHERE username = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(shard);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                return Optional.of(mapResultSetToUser(rs));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Optional.of(mapResultSetToUser(rs));
+                }
+                return Optional.empty();
             }
-            return Optional.empty();
         }
     }
 
@@ -110,17 +317,71 @@ public class UserDAO {
      * @throws SQLException jika operasi database gagal
      */
     public List<User> findAll() throws SQLException {
+        // Scatter-gather ke semua shard lalu merge berdasarkan user_id
+        return ShardQueries.mergeOrdered(connections, this::findAll, Comparator.comparing(User::getUserId));
+    }
+
+    private List<User> findAll(int shard) throws SQLException {
         String sql = "SELECT * FROM users ORDER BY user_id";
         List<User> users = new ArrayList<>();
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(shard);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             // Iterate melalui semua rows di ResultSet
+            UserMapper mapper = new UserMapper(rs);
             while (rs.next()) {
                 // Map setiap row ke User object dan tambahkan ke list
-                users.add(mapResultSetToUser(rs));
+                users.add(mapper.map(rs));
+            }
+        }
+        return users;
+    }
+
+    /**
+     * READ - Semua users sebagai Stream lazy yang dibaca per fetch (db.stream.fetchSize)
+     * Stream memegang koneksi sampai di-close, gunakan try-with-resources
+     * @return users sorted by user_id per shard (shard 0 lebih dulu)
+     * @throws SQLException jika query gagal dibuka
+     */
+    public Stream<User> streamAll() throws SQLException {
+        return CursorStreams.concat(connections, shard -> CursorStreams.open(connections.getReadConnection(shard),
+                "SELECT * FROM users ORDER BY user_id", UserMapper::new));
+    }
+
+    /**
+     * READ - Satu halaman users dengan keyset pagination (WHERE user_id > ? ORDER BY user_id LIMIT ?)
+     * Berbeda dengan OFFSET, halaman yang jauh tetap dibaca langsung dari index tanpa melewati row sebelumnya
+     * @param afterId user_id terakhir dari halaman sebelumnya, null untuk halaman pertama
+     * @param limit jumlah user maksimal per halaman
+     * @return users sorted by user_id; kurang dari limit berarti halaman terakhir
+     * @throws SQLException jika operasi database gagal
+     */
+    public List<User> findPage(Integer afterId, int limit) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit harus lebih dari 0");
+        }
+        // Setiap shard mengembalikan maksimal limit row; setelah merge, limit pertama yang diambil
+        List<User> users = ShardQueries.mergeOrdered(connections, shard -> findPage(shard, afterId, limit),
+                Comparator.comparing(User::getUserId));
+        return users.size() > limit ? new ArrayList<>(users.subList(0, limit)) : users;
+    }
+
+    private List<User> findPage(int shard, Integer afterId, int limit) throws SQLException {
+        String sql = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        List<User> users = new ArrayList<>(limit);
+
+        try (Connection conn = connections.getReadConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, afterId != null ? afterId : Integer.MIN_VALUE);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                UserMapper mapper = new UserMapper(rs);
+                while (rs.next()) {
+                    users.add(mapper.map(rs));
+                }
             }
         }
         return users;
@@ -133,11 +394,20 @@ public class UserDAO {
      * @throws SQLException jika operasi database gagal
      */
     public boolean update(User user) throws SQLException {
+        // Dengan sharding, email baru diklaim dulu di shard 0; klaim dikembalikan jika update gagal
+        String previousEmail = null;
+        if (connections.getShardCount() > 1) {
+            UserIdentities.ensureTable(connections);
+            try (Connection conn = connections.getConnection(UserIdentities.SHARD)) {
+                previousEmail = UserIdentities.changeEmail(conn, user.getUserId(), user.getEmail());
+            }
+        }
+
         // SQL query untuk update user
         String sql = "UPDATE users SET email = ?, full_name = ?, phone = ?, " +
                 "role = ?, status = ?, last_login = ? WHERE user_id = ?";
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(connections.shardForUser(user.getUserId()));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // Set parameter values
@@ -150,7 +420,18 @@ public class UserDAO {
             pstmt.setInt(7, user.getUserId());
 
             // Execute update dan return apakah ada row yang affected
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            connections.markWrite();
+            return updated;
+        } catch (SQLException | RuntimeException e) {
+            if (previousEmail != null) {
+                try (Connection conn = connections.getConnection(UserIdentities.SHARD)) {
+                    UserIdentities.changeEmail(conn, user.getUserId(), previousEmail);
+                } catch (SQLException restoreFailure) {
+                    e.addSuppressed(restoreFailure);
+                }
+            }
+            throw e;
         }
     }
 
@@ -163,35 +444,80 @@ public class UserDAO {
     public boolean delete(Integer userId) throws SQLException {
         String sql = "DELETE FROM users WHERE user_id = ?";
 
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(connections.shardForUser(userId));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, userId);
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            connections.markWrite();
+            // Dengan sharding, username / email user yang dihapus dilepas supaya bisa dipakai lagi
+            if (updated && connections.getShardCount() > 1) {
+                UserIdentities.ensureTable(connections);
+                try (Connection claims = connections.getConnection(UserIdentities.SHARD)) {
+                    UserIdentities.release(claims, List.of(userId));
+                }
+            }
+            return updated;
         }
     }
 
     /**
-     * Helper method untuk mapping ResultSet ke User object
+     * Helper method untuk mapping satu row ResultSet ke User object (lookup satu row)
      * @param rs ResultSet dari database query
      * @return User object yang sudah di-mapping
      * @throws SQLException jika mapping gagal
      */
     private User mapResultSetToUser(ResultSet rs) throws SQLException {
-        // Use builder pattern untuk membuat User object
-        return User.builder()
-                .userId(rs.getInt("user_id"))
-                .username(rs.getString("username"))
-                .email(rs.getString("email"))
-                .fullName(rs.getString("full_name"))
-                .phone(rs.getString("phone"))
-                .role(rs.getString("role"))
-                .status(rs.getString("status"))
-                .registrationDate(rs.getTimestamp("registration_date"))
-                .lastLogin(rs.getTimestamp("last_login"))
-                .createdAt(rs.getTimestamp("created_at"))
-                .updatedAt(rs.getTimestamp("updated_at"))
-                .build();
+        return new UserMapper(rs).map(rs);
+    }
+
+    /**
+     * Mapper User dengan index kolom yang di-resolve sekali per ResultSet
+     * Object dibuat langsung dengan setter, tanpa builder per row
+     */
+    static final class UserMapper implements RowMapper<User> {
+        private final int userId;
+        private final int username;
+        private final int email;
+        private final int fullName;
+        private final int phone;
+        private final int role;
+        private final int status;
+        private final int registrationDate;
+        private final int lastLogin;
+        private final int createdAt;
+        private final int updatedAt;
+
+        UserMapper(ResultSet rs) throws SQLException {
+            userId = rs.findColumn("user_id");
+            username = rs.findColumn("username");
+            email = rs.findColumn("email");
+            fullName = rs.findColumn("full_name");
+            phone = rs.findColumn("phone");
+            role = rs.findColumn("role");
+            status = rs.findColumn("status");
+            registrationDate = rs.findColumn("registration_date");
+            lastLogin = rs.findColumn("last_login");
+            createdAt = rs.findColumn("created_at");
+            updatedAt = rs.findColumn("updated_at");
+        }
+
+        @Override
+        public User map(ResultSet rs) throws SQLException {
+            User user = new User();
+            user.setUserId(rs.getInt(userId));
+            user.setUsername(rs.getString(username));
+            user.setEmail(rs.getString(email));
+            user.setFullName(rs.getString(fullName));
+            user.setPhone(rs.getString(phone));
+            user.setRole(rs.getString(role));
+            user.setStatus(rs.getString(status));
+            user.setRegistrationDate(rs.getTimestamp(registrationDate));
+            user.setLastLogin(rs.getTimestamp(lastLogin));
+            user.setCreatedAt(rs.getTimestamp(createdAt));
+            user.setUpdatedAt(rs.getTimestamp(updatedAt));
+            return user;
+        }
     }
 
     /**
@@ -200,8 +526,12 @@ public class UserDAO {
      * @throws SQLException jika operasi database gagal
      */
     public int countAll() throws SQLException {
+        return ShardQueries.sum(connections, this::countAll);
+    }
+
+    private int countAll(int shard) throws SQLException {
         String sql = "SELECT COUNT(*) FROM users";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getReadConnection(shard);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             if (rs.next()) {
@@ -219,11 +549,13 @@ public class UserDAO {
      */
     public boolean updateLastLogin(Integer userId) throws SQLException {
         String sql = "UPDATE users SET last_login = CURRENT_TIMESTAMP WHERE user_id = ?";
-        try (Connection conn = DatabaseConfig.getConnection();
+        try (Connection conn = connections.getConnection(connections.shardForUser(userId));
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, userId);
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            connections.markWrite();
+            return updated;
         }
     }
 }
\ No newline at end of file
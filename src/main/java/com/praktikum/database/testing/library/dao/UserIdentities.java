@@ -0,0 +1,205 @@
+package com.praktikum.database.testing.library.dao;
+
+import com.praktikum.database.testing.library.config.ConnectionProvider;
+import com.praktikum.database.testing.library.model.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Klaim username / email global untuk users yang di-shard
+ * Constraint unik tabel users hanya berlaku di dalam satu shard, sehingga dengan sharding setiap user
+ * juga dicatat di tabel user_identities di shard 0 sebelum row users-nya di-insert.
+ * Klaim yang bentrok gagal dengan unique_violation (23505), sama seperti insert users tanpa sharding
+ * Tanpa sharding tabel ini tidak dipakai
+ */
+final class UserIdentities {
+
+    /**
+     * Shard yang menyimpan tabel user_identities
+     */
+    static final int SHARD = 0;
+
+    // Dicek sekali per JVM; tabel yang belum ada dibuat lalu diisi dari users yang sudah ada di semua shard
+    private static final Object TABLE_LOCK = new Object();
+    private static volatile boolean tableReady;
+
+    private UserIdentities() {
+    }
+
+    /**
+     * Memastikan tabel user_identities ada di shard 0
+     * Jika belum ada, tabel dibuat lalu diisi dari users di semua shard (identitas yang bentrok dilewati)
+     */
+    static void ensureTable(ConnectionProvider connections) throws SQLException {
+        if (tableReady) {
+            return;
+        }
+        synchronized (TABLE_LOCK) {
+            if (tableReady) {
+                return;
+            }
+            try (Connection conn = connections.getConnection(SHARD);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT to_regclass('user_identities') IS NOT NULL")) {
+                rs.next();
+                if (rs.getBoolean(1)) {
+                    tableReady = true;
+                    return;
+                }
+                stmt.execute("CREATE TABLE IF NOT EXISTS user_identities (" +
+                        "user_id INTEGER PRIMARY KEY, " +
+                        "username VARCHAR NOT NULL UNIQUE, " +
+                        "email VARCHAR UNIQUE)");
+            }
+            for (int shard = 0; shard < connections.getShardCount(); shard++) {
+                backfill(connections, shard);
+            }
+            // tableReady baru di-set saat tabel terlihat sudah ada, sehingga DDL yang ikut transaksi caller
+            // lalu di-rollback tidak membuat tabel dianggap ada
+        }
+    }
+
+    private static void backfill(ConnectionProvider connections, int shard) throws SQLException {
+        List<User> users = new ArrayList<>();
+        try (Connection conn = connections.getConnection(shard);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT user_id, username, email FROM users")) {
+            while (rs.next()) {
+                User user = new User();
+                user.setUserId(rs.getInt(1));
+                user.setUsername(rs.getString(2));
+                user.setEmail(rs.getString(3));
+                users.add(user);
+            }
+        }
+        try (Connection conn = connections.getConnection(SHARD)) {
+            for (List<User> chunk : BatchInserts.chunks(users, BatchInserts.rowsPerStatement(3))) {
+                execute(conn, chunk, " ON CONFLICT DO NOTHING");
+            }
+        }
+    }
+
+    /**
+     * Mengklaim identitas user (userId harus sudah terisi)
+     * @throws SQLException unique_violation (23505) jika username / email sudah dipakai user lain
+     */
+    static void claim(Connection conn, List<User> users) throws SQLException {
+        for (List<User> chunk : BatchInserts.chunks(users, BatchInserts.rowsPerStatement(3))) {
+            execute(conn, chunk, "");
+        }
+    }
+
+    /**
+     * Mengklaim identitas user, username / email yang sudah dipakai dilewati
+     * @return username -> userId untuk klaim yang berhasil
+     */
+    static Map<String, Integer> claimOrSkip(Connection conn, List<User> users) throws SQLException {
+        return claimReturning(conn, users, " ON CONFLICT DO NOTHING RETURNING user_id, username");
+    }
+
+    /**
+     * Mengklaim identitas user; username yang sudah ada mempertahankan userId lamanya dan email-nya diganti
+     * @return username -> userId pemilik username (baru atau lama)
+     * @throws SQLException unique_violation (23505) jika email sudah dipakai user lain
+     */
+    static Map<String, Integer> claimOrUpdate(Connection conn, List<User> users) throws SQLException {
+        // Satu INSERT ... ON CONFLICT DO UPDATE tidak boleh mengenai row yang sama dua kali:
+        // username yang muncul lebih dari sekali diambil kemunculan terakhirnya
+        Map<String, User> byUsername = new LinkedHashMap<>();
+        for (User user : users) {
+            byUsername.remove(user.getUsername());
+            byUsername.put(user.getUsername(), user);
+        }
+        return claimReturning(conn, new ArrayList<>(byUsername.values()),
+                " ON CONFLICT (username) DO UPDATE SET email = EXCLUDED.email RETURNING user_id, username");
+    }
+
+    private static Map<String, Integer> claimReturning(Connection conn, List<User> users, String conflict)
+            throws SQLException {
+        Map<String, Integer> claimed = new HashMap<>();
+        for (List<User> chunk : BatchInserts.chunks(users, BatchInserts.rowsPerStatement(3))) {
+            try (PreparedStatement pstmt = prepare(conn, chunk, conflict);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    claimed.put(rs.getString(2), rs.getInt(1));
+                }
+            }
+        }
+        return claimed;
+    }
+
+    private static void execute(Connection conn, List<User> chunk, String conflict) throws SQLException {
+        try (PreparedStatement pstmt = prepare(conn, chunk, conflict)) {
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static PreparedStatement prepare(Connection conn, List<User> chunk, String conflict)
+            throws SQLException {
+        String sql = "INSERT INTO user_identities (user_id, username, email) VALUES " +
+                BatchInserts.values(chunk.size(), 3) + conflict;
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        try {
+            for (int i = 0; i < chunk.size(); i++) {
+                User user = chunk.get(i);
+                pstmt.setInt(i * 3 + 1, user.getUserId());
+                pstmt.setString(i * 3 + 2, user.getUsername());
+                pstmt.setString(i * 3 + 3, user.getEmail());
+            }
+            return pstmt;
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Mengganti email yang diklaim user
+     * @return email sebelumnya, null jika user belum punya klaim
+     * @throws SQLException unique_violation (23505) jika email sudah dipakai user lain
+     */
+    static String changeEmail(Connection conn, int userId, String email) throws SQLException {
+        String sql = "WITH old AS (SELECT email FROM user_identities WHERE user_id = ? FOR UPDATE) " +
+                "UPDATE user_identities SET email = ? WHERE user_id = ? RETURNING (SELECT email FROM old)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, email);
+            pstmt.setInt(3, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Melepas klaim user yang dihapus atau yang insert-nya gagal
+     */
+    static void release(Connection conn, Collection<Integer> userIds) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "DELETE FROM user_identities WHERE user_id = ANY(?)")) {
+            pstmt.setArray(1, conn.createArrayOf("integer", userIds.toArray()));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Melepas klaim setelah insert users gagal; kegagalan release ditambahkan ke exception asal
+     */
+    static void releaseAfterFailure(ConnectionProvider connections, Collection<Integer> userIds, Exception cause) {
+        try (Connection conn = connections.getConnection(SHARD)) {
+            release(conn, userIds);
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
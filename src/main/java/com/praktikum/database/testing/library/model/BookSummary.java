@@ -0,0 +1,21 @@
+package com.praktikum.database.testing.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ringkasan book untuk list view (hasil search, daftar buku tersedia)
+ * Hanya kolom yang ditampilkan di daftar - description dan kolom detail lain tidak ikut dibaca
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSummary {
+    private Integer bookId;
+    private String isbn;
+    private String title;
+    private Integer availableCopies;
+}
@@ -0,0 +1,16 @@
+package com.praktikum.database.testing.library.model;
+
+/**
+ * Alasan peminjaman atau pengembalian buku ditolak
+ */
+public enum BorrowFailureReason {
+    USER_NOT_FOUND,
+    USER_INACTIVE,
+    BOOK_NOT_FOUND,
+    NO_COPIES_AVAILABLE,
+    BORROW_LIMIT_REACHED,
+    BORROWING_NOT_FOUND,
+    ALREADY_RETURNED,
+    // available_copies sudah sama dengan total_copies sehingga tidak bisa ditambah
+    BOOK_COPIES_FULL
+}
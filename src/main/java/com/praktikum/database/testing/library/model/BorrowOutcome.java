@@ -0,0 +1,29 @@
+package com.praktikum.database.testing.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Hasil peminjaman / pengembalian yang dijalankan dalam satu statement SQL, atau hasil per buku
+ * pada batch checkout (BorrowingService.borrowBooks)
+ * Berisi borrowing jika berhasil, atau failureReason beserta data pendukung untuk pesan error
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BorrowOutcome {
+    // Buku yang diminta (untuk batch checkout, juga terisi jika gagal)
+    private Integer bookId;
+    private Borrowing borrowing;
+    private BorrowFailureReason failureReason;
+    // Status user dan jumlah peminjaman aktif saat statement dijalankan (untuk pesan error)
+    private String userStatus;
+    private Integer activeBorrowings;
+
+    public boolean isSuccess() {
+        return failureReason == null;
+    }
+}
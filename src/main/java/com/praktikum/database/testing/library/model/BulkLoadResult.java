@@ -0,0 +1,32 @@
+package com.praktikum.database.testing.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Hasil bulk load dengan COPY (BulkLoader)
+ * Tanpa staging, rowsInserted sama dengan rowsCopied; dengan staging, baris yang bentrok
+ * dengan data lama dihitung sebagai rowsUpdated atau rowsSkipped sesuai mode merge
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkLoadResult {
+    private String table;
+    // Baris yang dikirim lewat COPY (untuk catalog yang direplikasi: per shard)
+    private long rowsCopied;
+    private long rowsInserted;
+    private long rowsUpdated;
+    private long rowsSkipped;
+    private long durationMillis;
+
+    /**
+     * Throughput load dalam baris per detik
+     */
+    public double getRowsPerSecond() {
+        return durationMillis > 0 ? rowsCopied * 1000.0 / durationMillis : rowsCopied;
+    }
+}
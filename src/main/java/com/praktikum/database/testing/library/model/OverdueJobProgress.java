@@ -0,0 +1,30 @@
+package com.praktikum.database.testing.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress satu run job overdue di semua instance, dibaca dari overdue_job_partitions
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueJobProgress {
+    private String runId;
+    private int partitionsTotal;
+    private int partitionsDone;
+    // Partisi pending yang lease-nya masih berlaku (sedang dikerjakan)
+    private int partitionsInProgress;
+    private long updatedCount;
+
+    public boolean isComplete() {
+        return partitionsDone == partitionsTotal;
+    }
+
+    public double getPercentDone() {
+        return partitionsTotal == 0 ? 100.0 : partitionsDone * 100.0 / partitionsTotal;
+    }
+}
@@ -0,0 +1,34 @@
+package com.praktikum.database.testing.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+/**
+ * Satu partisi range borrowing_id dari job overdue (tabel overdue_job_partitions)
+ * Partisi mencakup rangeStart &lt; borrowing_id &lt;= rangeEnd dan diproses mulai dari lastProcessedId
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverduePartition {
+    private String runId;
+    private Integer shard;
+    private Integer partitionNo;
+    private Integer rangeStart;
+    private Integer rangeEnd;
+    // Checkpoint: borrowing_id terakhir yang sudah diproses dan di-commit
+    private Integer lastProcessedId;
+    // pending atau done
+    private String status;
+    // Instance yang sedang memegang lease partisi ini
+    private String owner;
+    private Timestamp leaseUntil;
+    // Waktu acuan perhitungan denda, sama untuk semua instance dalam satu run
+    private Timestamp asOf;
+    private Integer updatedCount;
+}
@@ -0,0 +1,33 @@
+package com.praktikum.database.testing.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ringkasan hasil BorrowingService.updateOverdueStatus
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueUpdateResult {
+    // Borrowing overdue yang status / denda-nya diperbarui
+    private int updatedCount;
+    // Borrowing yang statusnya baru berubah menjadi overdue pada run ini
+    private int newlyOverdueCount;
+    // Jumlah UPDATE per chunk yang dijalankan
+    private int chunkCount;
+    private long durationMillis;
+
+    /**
+     * Menggabungkan hasil dari shard lain
+     */
+    public OverdueUpdateResult add(OverdueUpdateResult other) {
+        updatedCount += other.updatedCount;
+        newlyOverdueCount += other.newlyOverdueCount;
+        chunkCount += other.chunkCount;
+        return this;
+    }
+}
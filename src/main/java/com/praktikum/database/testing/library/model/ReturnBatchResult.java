@@ -0,0 +1,43 @@
+package com.praktikum.database.testing.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hasil pengembalian batch (BorrowingService.returnBooks)
+ * Id yang tidak ditemukan atau sudah dikembalikan dilaporkan tanpa menggagalkan batch
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReturnBatchResult {
+    @Builder.Default
+    private List<Integer> returnedIds = new ArrayList<>();
+    @Builder.Default
+    private List<Integer> alreadyReturnedIds = new ArrayList<>();
+    @Builder.Default
+    private List<Integer> notFoundIds = new ArrayList<>();
+    // Jumlah kopi yang dikembalikan per book_id
+    @Builder.Default
+    private Map<Integer, Integer> returnedCopiesByBook = new LinkedHashMap<>();
+    private long durationMillis;
+
+    /**
+     * Menggabungkan hasil dari shard lain
+     */
+    public ReturnBatchResult add(ReturnBatchResult other) {
+        returnedIds.addAll(other.returnedIds);
+        alreadyReturnedIds.addAll(other.alreadyReturnedIds);
+        notFoundIds.addAll(other.notFoundIds);
+        other.returnedCopiesByBook.forEach((bookId, copies) -> returnedCopiesByBook.merge(bookId, copies, Integer::sum));
+        return this;
+    }
+}
@@ -1,131 +1,534 @@
 package com.praktikum.database.testing.library.service;
 
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+import com.praktikum.database.testing.library.config.SqlCallable;
+import com.praktikum.database.testing.library.config.TransactionManager;
 import com.praktikum.database.testing.library.dao.BookDAO;
 import com.praktikum.database.testing.library.dao.BorrowingDAO;
 import com.praktikum.database.testing.library.dao.UserDAO;
 import com.praktikum.database.testing.library.model.Book;
+import com.praktikum.database.testing.library.model.BorrowFailureReason;
+import com.praktikum.database.testing.library.model.BorrowOutcome;
 import com.praktikum.database.testing.library.model.Borrowing;
+import com.praktikum.database.testing.library.model.OverdueUpdateResult;
+import com.praktikum.database.testing.library.model.ReturnBatchResult;
 import com.praktikum.database.testing.library.model.User;
 
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 public class BorrowingService {
     private static final Logger logger = Logger.getLogger(BorrowingService.class.getName());
+    // Batas jumlah buku yang boleh dipinjam bersamaan oleh satu user
+    private static final int MAX_ACTIVE_BORROWINGS = 5;
 
     private final UserDAO userDAO;
     private final BookDAO bookDAO;
     private final BorrowingDAO borrowingDAO;
+    // Semua DAO di dalam satu operasi (borrowBook / returnBook) berbagi koneksi dan transaksi dari sini
+    private final TransactionManager transactionManager;
+    // db.borrow.mode=single-statement: borrowBook/returnBook dijalankan sebagai satu query (satu round trip)
+    private final boolean singleStatementMode =
+            "single-statement".equalsIgnoreCase(DatabaseConfig.getProperty("db.borrow.mode", "transactional"));
+    // Function borrow_book_single_statement dicek (dan dibuat jika belum ada) sekali per JVM,
+    // saat peminjaman single statement pertama dari service mana pun
+    private static final ReentrantLock borrowFunctionLock = new ReentrantLock();
+    private static volatile boolean borrowFunctionReady;
 
     public BorrowingService() {
-        this.userDAO = new UserDAO();
-        this.bookDAO = new BookDAO();
-        this.borrowingDAO = new BorrowingDAO();
+        this(DatabaseConfig.getTransactionManager());
+    }
+
+    public BorrowingService(TransactionManager transactionManager) {
+        this(new UserDAO(transactionManager), new BookDAO(transactionManager),
+                new BorrowingDAO(transactionManager), transactionManager);
     }
 
     public BorrowingService(UserDAO userDAO, BookDAO bookDAO, BorrowingDAO borrowingDAO) {
+        this(userDAO, bookDAO, borrowingDAO, DatabaseConfig.getTransactionManager());
+    }
+
+    /**
+     * @param transactionManager harus sama dengan ConnectionProvider milik DAO supaya DAO ikut transaksi
+     */
+    public BorrowingService(UserDAO userDAO, BookDAO bookDAO, BorrowingDAO borrowingDAO,
+                            TransactionManager transactionManager) {
         this.userDAO = userDAO;
         this.bookDAO = bookDAO;
         this.borrowingDAO = borrowingDAO;
+        this.transactionManager = transactionManager;
     }
 
     public Borrowing borrowBook(Integer userId, Integer bookId, int borrowDays) throws SQLException {
-        logger.info("Memproses peminjaman buku - User: " + userId + ", Book: " + bookId);
+        if (singleStatementMode) {
+            requireSingleShard();
+            return borrowBookInSingleStatement(userId, bookId, borrowDays);
+        }
 
-        // Validasi user exists dan active
-        Optional<User> user = userDAO.findById(userId);
-        if (user.isEmpty()) {
-            logger.warning("User tidak ditemukan dengan ID: " + userId);
-            throw new IllegalArgumentException("User tidak ditemukan dengan ID: " + userId);
+        // Validasi, update stok dan insert borrowing berjalan di satu koneksi dan satu transaksi
+        // pada shard milik user; gagal di tengah jalan = rollback semuanya.
+        // Row user lalu row buku dikunci (selalu dengan urutan ini supaya tidak deadlock):
+        // - lock user membuat cek batas peminjaman aman dari peminjaman paralel oleh user yang sama
+        // - lock buku membuat cek stok dan pengurangan stok atomic terhadap peminjam lain
+        // Jika shard user bukan shard stok, stok tidak dikunci dan dikurangi di luar transaksi
+        // (lihat inBorrowTransaction)
+        int shard = transactionManager.shardForUser(userId);
+        boolean localStock = shard == BookDAO.STOCK_SHARD;
+        List<Integer> reserved = new ArrayList<>();
+        return DatabaseConfig.onPrimary(() -> inBorrowTransaction(shard, reserved, () -> {
+            logger.info("Memproses peminjaman buku - User: " + userId + ", Book: " + bookId);
+
+            // Validasi user exists dan active
+            Optional<User> user = userDAO.findByIdForUpdate(userId);
+            if (user.isEmpty()) {
+                logger.warning("User tidak ditemukan dengan ID: " + userId);
+                throw new IllegalArgumentException("User tidak ditemukan dengan ID: " + userId);
+            }
+
+            if (!"active".equals(user.get().getStatus())) {
+                logger.warning("User account tidak active. Status: " + user.get().getStatus());
+                throw new IllegalStateException("User account tidak active. Status: " + user.get().getStatus());
+            }
+
+            // Validasi book exists
+            Optional<Book> book = localStock ? bookDAO.findByIdForUpdate(bookId) : bookDAO.findById(bookId);
+            if (book.isEmpty()) {
+                logger.warning("Buku tidak ditemukan dengan ID: " + bookId);
+                throw new IllegalArgumentException("Buku tidak ditemukan dengan ID: " + bookId);
+            }
+
+            // Validasi book available
+            if (book.get().getAvailableCopies() <= 0) {
+                logger.warning("Tidak ada kopi yang tersedia untuk buku ini");
+                throw new IllegalStateException("Tidak ada kopi yang tersedia untuk buku ini");
+            }
+
+            // Validasi batas peminjaman
+            int activeBorrowings = borrowingDAO.countActiveBorrowingsByUser(userId);
+            if (activeBorrowings >= MAX_ACTIVE_BORROWINGS) {
+                logger.warning("User sudah mencapai batas peminjaman: " + activeBorrowings + " buku");
+                throw new IllegalStateException("User sudah mencapai batas peminjaman: " + activeBorrowings + " buku");
+            }
+
+            // Decrease available copies
+            boolean decreased = bookDAO.decreaseAvailableCopies(bookId);
+            if (!decreased && !localStock) {
+                // Stok tidak dikunci - peminjam lain mengambil kopi terakhir setelah validasi
+                logger.warning("Tidak ada kopi yang tersedia untuk buku ini");
+                throw new IllegalStateException("Tidak ada kopi yang tersedia untuk buku ini");
+            }
+            if (!decreased) {
+                logger.severe("Gagal mengurangi available copies untuk buku ID: " + bookId);
+                throw new IllegalStateException("Gagal mengurangi available copies");
+            }
+            reserved.add(bookId);
+
+            // Create borrowing record
+            Borrowing borrowing = Borrowing.builder()
+                    .userId(userId)
+                    .bookId(bookId)
+                    .dueDate(dueDate(borrowDays))
+                    .status("borrowed")
+                    .notes(borrowNotes(borrowDays))
+                    .build();
+
+            Borrowing createdBorrowing = borrowingDAO.create(borrowing);
+            logger.info("Peminjaman berhasil - Borrowing ID: " + createdBorrowing.getBorrowingId());
+
+            return createdBorrowing;
+        }));
+    }
+
+    /**
+     * Batch checkout: meminjam beberapa buku sekaligus untuk satu user dalam satu transaksi
+     * - User divalidasi dan jumlah peminjaman aktif dihitung sekali
+     * - Semua buku dikunci dengan satu SELECT ... FOR UPDATE berurutan book_id (tidak bisa deadlock
+     *   dengan batch lain yang bukunya beririsan)
+     * - Stok dikurangi dengan satu UPDATE dan semua borrowing di-insert dengan satu INSERT ... RETURNING
+     * Buku yang tidak ditemukan, stoknya habis, atau melebihi batas peminjaman dilaporkan per buku
+     * tanpa menggagalkan buku lain
+     * @param bookIds buku yang dipinjam, urutan menentukan prioritas jika batas peminjaman tercapai
+     * @return hasil per buku, urut sesuai bookIds
+     * @throws IllegalArgumentException jika parameter tidak valid atau user tidak ditemukan
+     * @throws IllegalStateException jika user tidak active
+     */
+    public List<BorrowOutcome> borrowBooks(Integer userId, List<Integer> bookIds, int borrowDays)
+            throws SQLException {
+        if (userId == null || bookIds == null || bookIds.isEmpty() || borrowDays <= 0) {
+            throw new IllegalArgumentException("userId, bookIds dan borrowDays harus diisi dengan benar");
         }
 
-        if (!"active".equals(user.get().getStatus())) {
-            logger.warning("User account tidak active. Status: " + user.get().getStatus());
-            throw new IllegalStateException("User account tidak active. Status: " + user.get().getStatus());
+        int shard = transactionManager.shardForUser(userId);
+        boolean localStock = shard == BookDAO.STOCK_SHARD;
+        List<Integer> reserved = new ArrayList<>();
+        return DatabaseConfig.onPrimary(() -> inBorrowTransaction(shard, reserved, () -> {
+            logger.info("Memproses batch peminjaman - User: " + userId + ", Books: " + bookIds);
+
+            // Lock user dulu, lalu buku - urutan yang sama dengan borrowBook
+            Optional<User> user = userDAO.findByIdForUpdate(userId);
+            if (user.isEmpty()) {
+                logger.warning("User tidak ditemukan dengan ID: " + userId);
+                throw new IllegalArgumentException("User tidak ditemukan dengan ID: " + userId);
+            }
+            if (!"active".equals(user.get().getStatus())) {
+                logger.warning("User account tidak active. Status: " + user.get().getStatus());
+                throw new IllegalStateException("User account tidak active. Status: " + user.get().getStatus());
+            }
+            int activeBorrowings = borrowingDAO.countActiveBorrowingsByUser(userId);
+
+            Map<Integer, Integer> availableCopies = new HashMap<>();
+            List<Integer> existingIds = bookIds.stream().filter(Objects::nonNull).collect(Collectors.toList());
+            if (!existingIds.isEmpty()) {
+                Collection<Book> books = localStock
+                        ? bookDAO.findByIdsForUpdate(existingIds) : bookDAO.findByIds(existingIds).values();
+                for (Book book : books) {
+                    availableCopies.put(book.getBookId(), book.getAvailableCopies());
+                }
+            }
+
+            // Tentukan hasil per buku dengan stok dan batas peminjaman yang sudah dikunci
+            List<BorrowOutcome> outcomes = new ArrayList<>(bookIds.size());
+            List<Borrowing> accepted = new ArrayList<>();
+            List<Integer> acceptedBookIds = new ArrayList<>();
+            Timestamp dueDate = dueDate(borrowDays);
+            for (Integer bookId : bookIds) {
+                BorrowOutcome outcome = BorrowOutcome.builder()
+                        .bookId(bookId)
+                        .userStatus(user.get().getStatus())
+                        .activeBorrowings(activeBorrowings + accepted.size())
+                        .build();
+                Integer copies = bookId == null ? null : availableCopies.get(bookId);
+                if (copies == null) {
+                    outcome.setFailureReason(BorrowFailureReason.BOOK_NOT_FOUND);
+                } else if (copies <= 0) {
+                    outcome.setFailureReason(BorrowFailureReason.NO_COPIES_AVAILABLE);
+                } else if (activeBorrowings + accepted.size() >= MAX_ACTIVE_BORROWINGS) {
+                    outcome.setFailureReason(BorrowFailureReason.BORROW_LIMIT_REACHED);
+                } else {
+                    availableCopies.put(bookId, copies - 1);
+                    Borrowing borrowing = Borrowing.builder()
+                            .userId(userId)
+                            .bookId(bookId)
+                            .dueDate(dueDate)
+                            .status("borrowed")
+                            .notes(borrowNotes(borrowDays))
+                            .build();
+                    accepted.add(borrowing);
+                    acceptedBookIds.add(bookId);
+                    outcome.setBorrowing(borrowing);
+                }
+                outcomes.add(outcome);
+            }
+
+            if (!accepted.isEmpty()) {
+                if (!bookDAO.decreaseAvailableCopies(acceptedBookIds)) {
+                    logger.severe("Gagal mengurangi available copies untuk buku: " + acceptedBookIds);
+                    throw new IllegalStateException("Gagal mengurangi available copies");
+                }
+                reserved.addAll(acceptedBookIds);
+                borrowingDAO.createAll(accepted);
+            }
+
+            logger.info("Batch peminjaman selesai - Berhasil: " + accepted.size()
+                    + ", Gagal: " + (bookIds.size() - accepted.size()));
+            return outcomes;
+        }));
+    }
+
+    public boolean returnBook(Integer borrowingId) throws SQLException {
+        if (singleStatementMode) {
+            requireSingleShard();
+            return returnBookInSingleStatement(borrowingId);
         }
 
-        // Validasi book exists
-        Optional<Book> book = bookDAO.findById(bookId);
-        if (book.isEmpty()) {
-            logger.warning("Buku tidak ditemukan dengan ID: " + bookId);
-            throw new IllegalArgumentException("Buku tidak ditemukan dengan ID: " + bookId);
+        // Borrowing berada di shard milik user peminjam. Jika shard tersebut bukan shard stok, kopi baru
+        // dikembalikan ke stok setelah pengembalian di-commit, sehingga stok tidak pernah melebihi kopi di rak
+        return DatabaseConfig.onPrimary(() -> {
+            int shard = shardForBorrowing(borrowingId);
+            boolean localStock = shard == BookDAO.STOCK_SHARD;
+            Integer bookId = transactionManager.inTransaction(shard, () -> {
+                logger.info("Memproses pengembalian buku - Borrowing ID: " + borrowingId);
+
+                // Validasi borrowing exists
+                Optional<Borrowing> borrowing = borrowingDAO.findById(borrowingId);
+                if (borrowing.isEmpty()) {
+                    logger.warning("Borrowing record tidak ditemukan dengan ID: " + borrowingId);
+                    throw new IllegalArgumentException("Borrowing record tidak ditemukan dengan ID: " + borrowingId);
+                }
+
+                // Validasi buku belum dikembalikan
+                if (borrowing.get().getReturnDate() != null) {
+                    logger.warning("Buku sudah dikembalikan sebelumnya");
+                    throw new IllegalStateException("Buku sudah dikembalikan");
+                }
+
+                // Update return date
+                Timestamp returnDate = new Timestamp(System.currentTimeMillis());
+                boolean updated = borrowingDAO.returnBook(borrowingId, returnDate);
+                if (!updated) {
+                    logger.severe("Gagal update return date untuk borrowing ID: " + borrowingId);
+                    throw new IllegalStateException("Gagal update return date");
+                }
+
+                // Increase available copies
+                if (localStock && !bookDAO.increaseAvailableCopies(borrowing.get().getBookId())) {
+                    logger.severe("Gagal menambah available copies untuk buku ID: " + borrowing.get().getBookId());
+                    throw new IllegalStateException("Gagal menambah available copies");
+                }
+                return borrowing.get().getBookId();
+            });
+            if (!localStock && !bookDAO.increaseAvailableCopies(bookId)) {
+                // Pengembalian sudah di-commit; stok sudah penuh sehingga kopi ini tidak ditambahkan lagi
+                logger.severe("Gagal menambah available copies untuk buku ID: " + bookId);
+            }
+
+            logger.info("Pengembalian berhasil - Book ID: " + bookId);
+            return true;
+        });
+    }
+
+    /**
+     * Pengembalian batch (misalnya isi drop-box): semua borrowing ditandai dikembalikan
+     * dan stok ditambah per book_id, masing-masing dengan satu statement set-based
+     * Id yang tidak ditemukan atau sudah dikembalikan dilaporkan tanpa menggagalkan batch
+     * Dengan sharding, borrowing dikelompokkan per shard user dan setiap shard diproses dalam transaksinya
+     * sendiri; stok shard lain selain shard stok ditambah setelah transaksi shard tersebut di-commit.
+     * Batch tidak atomik antar shard
+     * @param borrowingIds id borrowing yang dikembalikan
+     * @return id yang berhasil, sudah dikembalikan, dan tidak ditemukan
+     */
+    public ReturnBatchResult returnBooks(Collection<Integer> borrowingIds) throws SQLException {
+        if (borrowingIds == null) {
+            throw new IllegalArgumentException("borrowingIds tidak boleh null");
         }
+        List<Integer> ids = borrowingIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return new ReturnBatchResult();
+        }
+
+        return DatabaseConfig.onPrimary(() -> {
+            logger.info("Memproses pengembalian batch - " + ids.size() + " borrowing");
+            long start = System.currentTimeMillis();
+            Timestamp returnDate = new Timestamp(start);
+
+            ReturnBatchResult result = new ReturnBatchResult();
+            for (Map.Entry<Integer, List<Integer>> shardIds : borrowingIdsByShard(ids, result).entrySet()) {
+                boolean localStock = shardIds.getKey() == BookDAO.STOCK_SHARD;
+                ReturnBatchResult shardResult = transactionManager.inTransaction(shardIds.getKey(), () -> {
+                    ReturnBatchResult returned = borrowingDAO.returnAll(shardIds.getValue(), returnDate);
+                    if (localStock) {
+                        bookDAO.increaseAvailableCopies(returned.getReturnedCopiesByBook());
+                    }
+                    return returned;
+                });
+                if (!localStock) {
+                    bookDAO.increaseAvailableCopies(shardResult.getReturnedCopiesByBook());
+                }
+                result.add(shardResult);
+            }
+            result.setDurationMillis(System.currentTimeMillis() - start);
 
-        // Validasi book available
-        if (book.get().getAvailableCopies() <= 0) {
-            logger.warning("Tidak ada kopi yang tersedia untuk buku ini");
-            throw new IllegalStateException("Tidak ada kopi yang tersedia untuk buku ini");
+            if (!result.getAlreadyReturnedIds().isEmpty() || !result.getNotFoundIds().isEmpty()) {
+                logger.warning("Pengembalian batch - sudah dikembalikan: " + result.getAlreadyReturnedIds()
+                        + ", tidak ditemukan: " + result.getNotFoundIds());
+            }
+            logger.info("Pengembalian batch selesai - Berhasil: " + result.getReturnedIds().size()
+                    + ", Buku: " + result.getReturnedCopiesByBook().size()
+                    + ", Duration: " + result.getDurationMillis() + " ms");
+            return result;
+        });
+    }
+
+    /**
+     * Mengelompokkan borrowing id per shard tempat borrowing disimpan
+     * Tanpa sharding semua id masuk shard 0 tanpa query tambahan; dengan sharding borrowing dicari
+     * dengan satu multi-get, dan id yang tidak ditemukan langsung dicatat di result
+     */
+    private Map<Integer, List<Integer>> borrowingIdsByShard(List<Integer> ids, ReturnBatchResult result)
+            throws SQLException {
+        Map<Integer, List<Integer>> idsByShard = new TreeMap<>();
+        if (transactionManager.getShardCount() == 1) {
+            idsByShard.put(0, ids);
+            return idsByShard;
+        }
+        Map<Integer, Borrowing> borrowings = borrowingDAO.findByIds(ids);
+        for (Integer id : ids) {
+            Borrowing borrowing = borrowings.get(id);
+            if (borrowing == null) {
+                result.getNotFoundIds().add(id);
+            } else {
+                idsByShard.computeIfAbsent(transactionManager.shardForUser(borrowing.getUserId()),
+                        shard -> new ArrayList<>()).add(id);
+            }
         }
+        return idsByShard;
+    }
 
-        // Validasi batas peminjaman
-        int activeBorrowings = borrowingDAO.countActiveBorrowingsByUser(userId);
-        if (activeBorrowings >= 5) {
-            logger.warning("User sudah mencapai batas peminjaman: " + activeBorrowings + " buku");
-            throw new IllegalStateException("User sudah mencapai batas peminjaman: " + activeBorrowings + " buku");
+    /**
+     * Menjalankan transaksi peminjaman di shard user
+     * Stok buku hanya ada di BookDAO.STOCK_SHARD. Di shard tersebut pengurangan stok ikut transaksi ini;
+     * di shard lain pengurangan stok sudah di-commit sebelum transaksi selesai, sehingga buku di reserved
+     * dikembalikan ke stok jika transaksi gagal. Stok tidak pernah oversell; jika proses berhenti di antara
+     * keduanya, kopi tercatat kurang sampai stok direkonsiliasi
+     * @param reserved book_id yang stoknya sudah dikurangi oleh work (boleh duplikat)
+     */
+    private <T> T inBorrowTransaction(int shard, List<Integer> reserved, SqlCallable<T> work) throws SQLException {
+        try {
+            return transactionManager.inTransaction(shard, work);
+        } catch (SQLException | RuntimeException e) {
+            if (shard != BookDAO.STOCK_SHARD && !reserved.isEmpty()) {
+                releaseCopies(reserved);
+            }
+            throw e;
         }
+    }
 
-        // Decrease available copies
-        boolean decreased = bookDAO.decreaseAvailableCopies(bookId);
-        if (!decreased) {
-            logger.severe("Gagal mengurangi available copies untuk buku ID: " + bookId);
-            throw new IllegalStateException("Gagal mengurangi available copies");
+    private void releaseCopies(List<Integer> bookIds) {
+        Map<Integer, Integer> copiesByBook = new HashMap<>();
+        for (Integer bookId : bookIds) {
+            copiesByBook.merge(bookId, 1, Integer::sum);
         }
+        try {
+            bookDAO.increaseAvailableCopies(copiesByBook);
+        } catch (SQLException e) {
+            logger.severe("Gagal mengembalikan stok setelah peminjaman gagal - Books: " + copiesByBook
+                    + ": " + e.getMessage());
+        }
+    }
 
-        // Create borrowing record
-        Timestamp dueDate = Timestamp.valueOf(LocalDateTime.now().plusDays(borrowDays));
-        Borrowing borrowing = Borrowing.builder()
-                .userId(userId)
-                .bookId(bookId)
-                .dueDate(dueDate)
-                .status("borrowed")
-                .notes("Dipinjam via BorrowingService - " + borrowDays + " hari")
-                .build();
+    /**
+     * Peminjaman satu round trip - validasi, decrement stok dan insert dijalankan oleh database
+     * Exception yang dilempar sama dengan jalur transaksional
+     */
+    private Borrowing borrowBookInSingleStatement(Integer userId, Integer bookId, int borrowDays) throws SQLException {
+        logger.info("Memproses peminjaman buku (single statement) - User: " + userId + ", Book: " + bookId);
+        ensureBorrowFunction();
+
+        BorrowOutcome outcome = borrowingDAO.borrowInSingleStatement(userId, bookId, dueDate(borrowDays),
+                borrowNotes(borrowDays), MAX_ACTIVE_BORROWINGS);
+        if (!outcome.isSuccess()) {
+            throw failure(outcome, userId, bookId, null);
+        }
 
-        Borrowing createdBorrowing = borrowingDAO.create(borrowing);
-        logger.info("Peminjaman berhasil - Borrowing ID: " + createdBorrowing.getBorrowingId());
+        logger.info("Peminjaman berhasil - Borrowing ID: " + outcome.getBorrowing().getBorrowingId());
+        return outcome.getBorrowing();
+    }
 
-        return createdBorrowing;
+    private void ensureBorrowFunction() throws SQLException {
+        if (borrowFunctionReady) {
+            return;
+        }
+        borrowFunctionLock.lock();
+        try {
+            if (!borrowFunctionReady) {
+                borrowingDAO.createBorrowFunctionIfMissing();
+                borrowFunctionReady = true;
+            }
+        } finally {
+            borrowFunctionLock.unlock();
+        }
     }
 
-    public boolean returnBook(Integer borrowingId) throws SQLException {
-        logger.info("Memproses pengembalian buku - Borrowing ID: " + borrowingId);
+    /**
+     * Pengembalian satu round trip - update return_date dan increment stok dijalankan oleh database
+     */
+    private boolean returnBookInSingleStatement(Integer borrowingId) throws SQLException {
+        logger.info("Memproses pengembalian buku (single statement) - Borrowing ID: " + borrowingId);
 
-        // Validasi borrowing exists
-        Optional<Borrowing> borrowing = borrowingDAO.findById(borrowingId);
-        if (borrowing.isEmpty()) {
-            logger.warning("Borrowing record tidak ditemukan dengan ID: " + borrowingId);
-            throw new IllegalArgumentException("Borrowing record tidak ditemukan dengan ID: " + borrowingId);
+        BorrowOutcome outcome = borrowingDAO.returnInSingleStatement(borrowingId,
+                new Timestamp(System.currentTimeMillis()));
+        if (!outcome.isSuccess()) {
+            throw failure(outcome, null, null, borrowingId);
         }
 
-        // Validasi buku belum dikembalikan
-        if (borrowing.get().getReturnDate() != null) {
-            logger.warning("Buku sudah dikembalikan sebelumnya");
-            throw new IllegalStateException("Buku sudah dikembalikan");
-        }
+        logger.info("Pengembalian berhasil - Book ID: " + outcome.getBorrowing().getBookId());
+        return true;
+    }
 
-        // Update return date
-        Timestamp returnDate = new Timestamp(System.currentTimeMillis());
-        boolean updated = borrowingDAO.returnBook(borrowingId, returnDate);
-        if (!updated) {
-            logger.severe("Gagal update return date untuk borrowing ID: " + borrowingId);
-            throw new IllegalStateException("Gagal update return date");
+    /**
+     * Mengubah alasan penolakan menjadi exception yang sama dengan jalur transaksional
+     * Data yang tidak ditemukan = IllegalArgumentException, aturan bisnis = IllegalStateException
+     */
+    private RuntimeException failure(BorrowOutcome outcome, Integer userId, Integer bookId, Integer borrowingId) {
+        BorrowFailureReason reason = outcome.getFailureReason();
+        String message;
+        switch (reason) {
+            case USER_NOT_FOUND:
+                message = "User tidak ditemukan dengan ID: " + userId;
+                break;
+            case USER_INACTIVE:
+                message = "User account tidak active. Status: " + outcome.getUserStatus();
+                break;
+            case BOOK_NOT_FOUND:
+                message = "Buku tidak ditemukan dengan ID: " + bookId;
+                break;
+            case NO_COPIES_AVAILABLE:
+                message = "Tidak ada kopi yang tersedia untuk buku ini";
+                break;
+            case BORROW_LIMIT_REACHED:
+                message = "User sudah mencapai batas peminjaman: " + outcome.getActiveBorrowings() + " buku";
+                break;
+            case BORROWING_NOT_FOUND:
+                message = "Borrowing record tidak ditemukan dengan ID: " + borrowingId;
+                break;
+            case ALREADY_RETURNED:
+                message = "Buku sudah dikembalikan";
+                break;
+            default:
+                message = "Gagal menambah available copies";
+                break;
         }
+        logger.warning(message);
+        boolean notFound = reason == BorrowFailureReason.USER_NOT_FOUND
+                || reason == BorrowFailureReason.BOOK_NOT_FOUND
+                || reason == BorrowFailureReason.BORROWING_NOT_FOUND;
+        return notFound ? new IllegalArgumentException(message) : new IllegalStateException(message);
+    }
 
-        // Increase available copies
-        Integer bookId = borrowing.get().getBookId();
-        boolean increased = bookDAO.increaseAvailableCopies(bookId);
-        if (!increased) {
-            logger.severe("Gagal menambah available copies untuk buku ID: " + bookId);
-            throw new IllegalStateException("Gagal menambah available copies");
+    /**
+     * Mode single statement menjalankan function/CTE di satu database tanpa alokasi id global
+     * dan tanpa routing borrowing ke shard user, sehingga hanya didukung tanpa sharding
+     * @throws SQLFeatureNotSupportedException jika shard lebih dari satu
+     */
+    private void requireSingleShard() throws SQLFeatureNotSupportedException {
+        if (transactionManager.getShardCount() > 1) {
+            throw new SQLFeatureNotSupportedException(
+                    "db.borrow.mode=single-statement tidak didukung dengan sharding", "0A000");
         }
+    }
 
-        logger.info("Pengembalian berhasil - Book ID: " + bookId);
-        return true;
+    private static Timestamp dueDate(int borrowDays) {
+        return Timestamp.valueOf(LocalDateTime.now().plusDays(borrowDays));
+    }
+
+    private static String borrowNotes(int borrowDays) {
+        return "Dipinjam via BorrowingService - " + borrowDays + " hari";
+    }
+
+    /**
+     * Shard tempat borrowing disimpan (shard milik user peminjam)
+     * Tanpa sharding selalu 0 tanpa query tambahan
+     */
+    private int shardForBorrowing(Integer borrowingId) throws SQLException {
+        if (transactionManager.getShardCount() == 1) {
+            return 0;
+        }
+        return borrowingDAO.findById(borrowingId)
+                .map(borrowing -> transactionManager.shardForUser(borrowing.getUserId()))
+                .orElse(0);
     }
 
     public boolean canUserBorrowBook(Integer userId, Integer bookId) throws SQLException {
@@ -143,7 +546,7 @@ public class BorrowingService {
 
         // Check user tidak melebihi batas peminjaman
         int activeBorrowings = borrowingDAO.countActiveBorrowingsByUser(userId);
-        return activeBorrowings < 5;
+        return activeBorrowings < MAX_ACTIVE_BORROWINGS;
     }
 
     public double calculateFine(Integer borrowingId) throws SQLException {
@@ -182,23 +585,27 @@ public class BorrowingService {
         return borrowingDAO.findByUserId(userId);
     }
 
-    public void updateOverdueStatus() throws SQLException {
-        logger.info("Memperbarui status overdue borrowings...");
-
-        List<Borrowing> overdueBorrowings = borrowingDAO.findOverdueBorrowings();
-
-        for (Borrowing borrowing : overdueBorrowings) {
-            if (!"overdue".equals(borrowing.getStatus())) {
-                borrowingDAO.updateStatus(borrowing.getBorrowingId(), "overdue");
-            }
-
-            // Calculate dan update fine amount
-            double fine = calculateFine(borrowing.getBorrowingId());
-            borrowingDAO.updateFineAmount(borrowing.getBorrowingId(), fine);
-
-            logger.info("Updated to overdue - Borrowing ID: " + borrowing.getBorrowingId() + ", Fine: " + fine);
-        }
-
-        logger.info("Overdue status update completed - Total: " + overdueBorrowings.size());
+    /**
+     * Menandai borrowing yang lewat due date sebagai overdue dan memperbarui dendanya
+     * Dijalankan set-based di database per chunk (db.overdue.chunkSize, default 1000),
+     * bukan beberapa query per borrowing
+     * @return jumlah borrowing yang diperbarui, jumlah chunk dan durasi
+     */
+    public OverdueUpdateResult updateOverdueStatus() throws SQLException {
+        int chunkSize = DatabaseConfig.getOverdueChunkSize();
+
+        return DatabaseConfig.onPrimary(() -> {
+            logger.info("Memperbarui status overdue borrowings...");
+            long start = System.currentTimeMillis();
+
+            OverdueUpdateResult result = borrowingDAO.markOverdue(new Timestamp(start), chunkSize);
+            result.setDurationMillis(System.currentTimeMillis() - start);
+
+            logger.info("Overdue status update completed - Updated: " + result.getUpdatedCount()
+                    + ", Newly overdue: " + result.getNewlyOverdueCount()
+                    + ", Chunks: " + result.getChunkCount()
+                    + ", Duration: " + result.getDurationMillis() + " ms");
+            return result;
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.praktikum.database.testing.library.service;
+
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+import com.praktikum.database.testing.library.config.TransactionManager;
+import com.praktikum.database.testing.library.dao.OverdueJobDAO;
+import com.praktikum.database.testing.library.model.OverdueJobProgress;
+import com.praktikum.database.testing.library.model.OverduePartition;
+import com.praktikum.database.testing.library.model.OverdueUpdateResult;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Job overdue paralel yang bisa dijalankan bersamaan oleh beberapa instance aplikasi
+ * - Borrowing overdue di setiap shard dibagi menjadi range borrowing_id (db.overdue.partitions)
+ * - Worker (db.overdue.workers) mengklaim partisi dengan FOR UPDATE SKIP LOCKED dan lease
+ *   (db.overdue.leaseMillis), sehingga satu partisi hanya diproses oleh satu worker
+ * - Setiap chunk di-commit bersama checkpoint last_processed_id; jika instance mati,
+ *   partisinya diambil worker lain setelah lease habis dan dilanjutkan dari checkpoint
+ */
+public class OverdueJobService {
+    private static final Logger logger = Logger.getLogger(OverdueJobService.class.getName());
+
+    private final OverdueJobDAO overdueJobDAO;
+    private final TransactionManager transactionManager;
+    private final int workers;
+    private final int partitions;
+    private final int chunkSize;
+    private final long leaseMillis;
+    // Identitas instance ini (pid@host + id acak, unik juga untuk beberapa service di satu JVM) sebagai prefix owner partisi
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName()
+            + "#" + UUID.randomUUID().toString().substring(0, 8);
+
+    // Progress lokal run yang sedang berjalan
+    private final AtomicInteger partitionsClaimed = new AtomicInteger();
+    private final AtomicInteger partitionsCompleted = new AtomicInteger();
+    private final LongAdder chunksProcessed = new LongAdder();
+    private final LongAdder borrowingsUpdated = new LongAdder();
+
+    public OverdueJobService() {
+        this(DatabaseConfig.getTransactionManager());
+    }
+
+    public OverdueJobService(TransactionManager transactionManager) {
+        this(new OverdueJobDAO(transactionManager), transactionManager,
+                DatabaseConfig.getOverdueWorkers(), DatabaseConfig.getOverduePartitions(),
+                DatabaseConfig.getOverdueChunkSize(), DatabaseConfig.getOverdueLeaseMillis());
+    }
+
+    /**
+     * @param transactionManager harus sama dengan ConnectionProvider milik DAO supaya chunk dan checkpoint satu transaksi
+     */
+    public OverdueJobService(OverdueJobDAO overdueJobDAO, TransactionManager transactionManager,
+                             int workers, int partitions, int chunkSize, long leaseMillis) {
+        if (workers <= 0 || partitions <= 0 || chunkSize <= 0 || leaseMillis <= 0) {
+            throw new IllegalArgumentException("workers, partitions, chunkSize dan leaseMillis harus lebih dari 0");
+        }
+        this.overdueJobDAO = overdueJobDAO;
+        this.transactionManager = transactionManager;
+        this.workers = workers;
+        this.partitions = partitions;
+        this.chunkSize = chunkSize;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * Menjalankan run harian (runId overdue-yyyy-MM-dd)
+     */
+    public OverdueUpdateResult run() throws SQLException {
+        return run("overdue-" + LocalDate.now());
+    }
+
+    /**
+     * Menjalankan atau melanjutkan satu run job overdue
+     * Instance lain yang memanggil run dengan runId yang sama ikut membagi pekerjaan
+     * @param runId identitas run, sama untuk semua instance
+     * @return jumlah borrowing dan chunk yang diproses oleh instance ini
+     */
+    public OverdueUpdateResult run(String runId) throws SQLException {
+        long start = System.currentTimeMillis();
+        partitionsClaimed.set(0);
+        partitionsCompleted.set(0);
+        chunksProcessed.reset();
+        borrowingsUpdated.reset();
+
+        overdueJobDAO.createTableIfNotExists();
+        Timestamp asOf = new Timestamp(start);
+        for (int shard = 0; shard < transactionManager.getShardCount(); shard++) {
+            int created = overdueJobDAO.planPartitions(shard, runId, asOf, partitions);
+            if (created > 0) {
+                logger.info("Run " + runId + " - shard " + shard + " dibagi menjadi " + created + " partisi");
+            }
+        }
+
+        AtomicInteger workerNo = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "overdue-worker-" + workerNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Void>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    work(runId);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Job overdue diinterupsi", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Job overdue gagal: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        OverdueUpdateResult result = OverdueUpdateResult.builder()
+                .updatedCount(borrowingsUpdated.intValue())
+                .chunkCount(chunksProcessed.intValue())
+                .durationMillis(System.currentTimeMillis() - start)
+                .build();
+        logger.info("Run " + runId + " selesai di instance ini - Partisi: " + partitionsCompleted.get()
+                + ", Updated: " + result.getUpdatedCount() + ", Chunks: " + result.getChunkCount()
+                + ", Duration: " + result.getDurationMillis() + " ms");
+        return result;
+    }
+
+    /**
+     * Loop satu worker: klaim partisi di setiap shard sampai tidak ada yang tersisa
+     */
+    private void work(String runId) throws SQLException {
+        String owner = instanceId + "/" + Thread.currentThread().getName();
+        for (int shard = 0; shard < transactionManager.getShardCount(); shard++) {
+            int target = shard;
+            while (true) {
+                Optional<OverduePartition> claimed = DatabaseConfig.onPrimary(() ->
+                        overdueJobDAO.claimPartition(target, runId, owner, leaseMillis));
+                if (claimed.isEmpty()) {
+                    break;
+                }
+                partitionsClaimed.incrementAndGet();
+                processPartition(claimed.get(), owner);
+            }
+        }
+    }
+
+    private void processPartition(OverduePartition partition, String owner) throws SQLException {
+        try {
+            while (!"done".equals(partition.getStatus())) {
+                int updated = DatabaseConfig.onPrimary(() -> transactionManager.inTransaction(partition.getShard(),
+                        () -> overdueJobDAO.processChunk(partition, owner, chunkSize, leaseMillis)));
+                chunksProcessed.increment();
+                borrowingsUpdated.add(updated);
+            }
+            partitionsCompleted.incrementAndGet();
+            logger.fine("Partisi " + partition.getPartitionNo() + " (shard " + partition.getShard()
+                    + ") selesai - Updated: " + partition.getUpdatedCount());
+        } catch (IllegalStateException e) {
+            // Lease habis dan partisi sudah dilanjutkan worker lain - chunk terakhir di-rollback
+            logger.warning(e.getMessage());
+        }
+    }
+
+    /**
+     * Progress run dari tabel partisi (semua instance)
+     */
+    public OverdueJobProgress getProgress(String runId) throws SQLException {
+        return DatabaseConfig.onPrimary(() -> overdueJobDAO.getProgress(runId));
+    }
+
+    public int getPartitionsClaimed() {
+        return partitionsClaimed.get();
+    }
+
+    public int getPartitionsCompleted() {
+        return partitionsCompleted.get();
+    }
+
+    public long getChunksProcessed() {
+        return chunksProcessed.sum();
+    }
+
+    public long getBorrowingsUpdated() {
+        return borrowingsUpdated.sum();
+    }
+}
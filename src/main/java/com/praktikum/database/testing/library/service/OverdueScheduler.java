@@ -0,0 +1,200 @@
+package com.praktikum.database.testing.library.service;
+
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+import com.praktikum.database.testing.library.config.TransactionManager;
+import com.praktikum.database.testing.library.dao.OverdueJobDAO;
+import com.praktikum.database.testing.library.model.OverdueUpdateResult;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scheduler overdue inkremental
+ * - Menyimpan watermark (waktu acuan run terakhir) per shard di tabel overdue_watermark
+ * - Setiap tick hanya memperbarui kandidat di jendela sejak watermark: yang baru overdue,
+ *   yang dendanya baru bertambah di jendela itu, dan borrowing yang masuk terlambat dengan due_date lampau
+ * - Setiap tick per shard berjalan di satu transaksi dengan pg_try_advisory_xact_lock, sehingga
+ *   hanya satu instance di cluster yang memproses tick tersebut; instance lain langsung melewatinya
+ * Run pertama (belum ada watermark) dan tick pertama di hari baru memakai update penuh seperti
+ * BorrowingService.updateOverdueStatus, supaya denda borrowing yang sudah lama overdue tetap bertambah
+ */
+public class OverdueScheduler {
+    private static final Logger logger = Logger.getLogger(OverdueScheduler.class.getName());
+
+    private static final String JOB_NAME = "overdue-scheduler";
+    // Key advisory lock, sama untuk semua instance
+    private static final long LOCK_KEY = JOB_NAME.hashCode();
+
+    private final OverdueJobDAO overdueJobDAO;
+    private final TransactionManager transactionManager;
+    private final long intervalMillis;
+    private final int chunkSize;
+    // ReentrantLock (bukan synchronized) supaya virtual thread yang memanggil tick / start / stop
+    // tidak mem-pin carrier thread selama menunggu I/O database
+    private final ReentrantLock lock = new ReentrantLock();
+    private ScheduledExecutorService executor;
+    private volatile boolean schemaReady;
+
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder skippedTicks = new LongAdder();
+    private final LongAdder borrowingsUpdated = new LongAdder();
+
+    public OverdueScheduler() {
+        this(DatabaseConfig.getTransactionManager());
+    }
+
+    public OverdueScheduler(TransactionManager transactionManager) {
+        this(new OverdueJobDAO(transactionManager), transactionManager,
+                DatabaseConfig.getOverdueSchedulerIntervalMillis(), DatabaseConfig.getOverdueChunkSize());
+    }
+
+    /**
+     * @param transactionManager harus sama dengan ConnectionProvider milik DAO supaya advisory lock,
+     *                           update dan watermark berada di satu transaksi
+     */
+    public OverdueScheduler(OverdueJobDAO overdueJobDAO, TransactionManager transactionManager,
+                            long intervalMillis, int chunkSize) {
+        if (intervalMillis <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("intervalMillis dan chunkSize harus lebih dari 0");
+        }
+        this.overdueJobDAO = overdueJobDAO;
+        this.transactionManager = transactionManager;
+        this.intervalMillis = intervalMillis;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Mulai menjalankan tick setiap db.overdue.scheduler.intervalMillis
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (executor != null) {
+                return;
+            }
+            executor = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "overdue-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    tick();
+                } catch (SQLException | RuntimeException e) {
+                    // Tick berikutnya mencoba lagi dari watermark yang sama
+                    logger.log(Level.WARNING, "Tick overdue scheduler gagal: " + e.getMessage(), e);
+                }
+            }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+            logger.info("Overdue scheduler dimulai - interval " + intervalMillis + " ms");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void stop() {
+        lock.lock();
+        try {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+                logger.info("Overdue scheduler dihentikan");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Menjalankan satu tick di semua shard
+     * Shard yang sedang diproses instance lain dilewati
+     * @return borrowing yang diperbarui oleh instance ini pada tick ini
+     */
+    public OverdueUpdateResult tick() throws SQLException {
+        long start = System.currentTimeMillis();
+        ensureSchema();
+
+        OverdueUpdateResult total = new OverdueUpdateResult();
+        for (int shard = 0; shard < transactionManager.getShardCount(); shard++) {
+            int target = shard;
+            Optional<OverdueUpdateResult> result = DatabaseConfig.onPrimary(() ->
+                    transactionManager.inTransaction(target, () -> tick(target)));
+            if (result.isPresent()) {
+                total.add(result.get());
+            } else {
+                skippedTicks.increment();
+                logger.fine("Tick shard " + target + " dilewati - sedang dijalankan instance lain");
+            }
+        }
+        total.setDurationMillis(System.currentTimeMillis() - start);
+        ticks.increment();
+        borrowingsUpdated.add(total.getUpdatedCount());
+
+        logger.info("Overdue tick selesai - Updated: " + total.getUpdatedCount()
+                + ", Newly overdue: " + total.getNewlyOverdueCount()
+                + ", Duration: " + total.getDurationMillis() + " ms");
+        return total;
+    }
+
+    /**
+     * Tick untuk satu shard, di dalam transaksi shard tersebut
+     * @return kosong jika advisory lock dipegang instance lain
+     */
+    private Optional<OverdueUpdateResult> tick(int shard) throws SQLException {
+        if (!overdueJobDAO.tryAdvisoryLock(shard, LOCK_KEY)) {
+            return Optional.empty();
+        }
+
+        Optional<Timestamp> watermark = overdueJobDAO.findWatermark(shard, JOB_NAME);
+        // Watermark tidak boleh mundur walaupun jam instance ini tertinggal dari instance sebelumnya
+        Timestamp asOf = new Timestamp(Math.max(System.currentTimeMillis(),
+                watermark.map(Timestamp::getTime).orElse(0L)));
+
+        // Update penuh pada run pertama dan sekali sehari, supaya denda borrowing yang sudah lama overdue
+        // tetap bertambah; tick lain hanya memproses jendela sejak watermark
+        boolean fullUpdate = watermark.isEmpty() || !watermark.get().toLocalDateTime().toLocalDate()
+                .equals(asOf.toLocalDateTime().toLocalDate());
+        OverdueUpdateResult result = fullUpdate
+                ? overdueJobDAO.markAllOverdue(shard, asOf, chunkSize)
+                : overdueJobDAO.markOverdueSince(shard, watermark.get(), asOf);
+        overdueJobDAO.saveWatermark(shard, JOB_NAME, asOf);
+        return Optional.of(result);
+    }
+
+    /**
+     * Membuat tabel watermark sekali; setelah itu hanya membaca flag volatile tanpa lock
+     */
+    private void ensureSchema() throws SQLException {
+        if (schemaReady) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!schemaReady) {
+                overdueJobDAO.createWatermarkTableIfNotExists();
+                schemaReady = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTickCount() {
+        return ticks.sum();
+    }
+
+    public long getSkippedTickCount() {
+        return skippedTicks.sum();
+    }
+
+    public long getBorrowingsUpdated() {
+        return borrowingsUpdated.sum();
+    }
+}
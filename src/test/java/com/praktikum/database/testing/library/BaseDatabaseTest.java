@@ -35,8 +35,18 @@ public class BaseDatabaseTest {
         logger.info("Test connection established - Auto-commit: false");
     }
 
+    /**
+     * Mengikat koneksi test ke TransactionManager default sehingga DAO yang dibuat dengan
+     * constructor default memakai koneksi ini, dan semua perubahannya ikut di-rollback setelah test
+     */
+    protected void useTestTransaction() {
+        DatabaseConfig.getTransactionManager().bind(connection);
+        logger.info("Test connection di-bind ke TransactionManager - perubahan DAO akan di-rollback");
+    }
+
     @AfterEach
     void tearDown() throws SQLException {
+        DatabaseConfig.getTransactionManager().unbind();
         if (connection != null) {
             try {
                 connection.rollback();
@@ -0,0 +1,429 @@
+package com.praktikum.database.testing.library.config;
+
+import com.praktikum.database.testing.library.BaseDatabaseTest;
+import com.praktikum.database.testing.library.dao.UserDAO;
+import com.praktikum.database.testing.library.model.User;
+import org.junit.jupiter.api.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Test suite untuk ConnectionPool
+ * Menguji reuse koneksi, batas maxTotal, timeout dan reset state koneksi
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DisplayName("ConnectionPool Test Suite")
+public class ConnectionPoolTest extends BaseDatabaseTest {
+
+    /**
+     * Helper untuk membuat pool kecil yang terpisah dari pool utama
+     */
+    private ConnectionPool createSmallPool(int maxTotal, long maxWaitMillis) {
+        return createSmallPool(maxTotal, maxWaitMillis, false);
+    }
+
+    private ConnectionPool createSmallPool(int maxTotal, long maxWaitMillis, boolean readOnly) {
+        Properties poolProperties = new Properties();
+        poolProperties.setProperty("db.pool.initialSize", "0");
+        poolProperties.setProperty("db.pool.maxTotal", String.valueOf(maxTotal));
+        poolProperties.setProperty("db.pool.maxIdle", String.valueOf(maxTotal));
+        poolProperties.setProperty("db.pool.minIdle", "0");
+        poolProperties.setProperty("db.pool.maxWaitMillis", String.valueOf(maxWaitMillis));
+        return new ConnectionPool("test", DatabaseConfig.getDbUrl(),
+                DatabaseConfig.buildConnectionProperties(), PoolSettings.fromProperties(poolProperties), readOnly);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TC601: Koneksi yang di-close dipakai ulang oleh pool")
+    void testClosedConnection_ShouldBeReused() throws SQLException {
+        ConnectionPool pool = createSmallPool(2, 1000);
+        try {
+            // ACT
+            Connection first = pool.getConnection();
+            Connection physicalFirst = first.unwrap(Connection.class);
+            first.close();
+
+            Connection second = pool.getConnection();
+            Connection physicalSecond = second.unwrap(Connection.class);
+            second.close();
+
+            // ASSERT
+            assertThat(physicalSecond).isSameAs(physicalFirst);
+            assertThat(pool.getTotalCount()).isEqualTo(1);
+            assertThat(pool.getIdleCount()).isEqualTo(1);
+            assertThat(first.isClosed()).isTrue();
+
+            logger.info("TC601 PASSED: Koneksi fisik dipakai ulang");
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("TC602: Pool penuh - getConnection timeout setelah maxWait")
+    void testExhaustedPool_ShouldTimeout() throws SQLException {
+        ConnectionPool pool = createSmallPool(1, 200);
+        try (Connection held = pool.getConnection()) {
+            // ACT & ASSERT
+            long start = System.currentTimeMillis();
+            assertThatThrownBy(pool::getConnection)
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("Timeout");
+            long waited = System.currentTimeMillis() - start;
+
+            assertThat(waited).isGreaterThanOrEqualTo(150);
+            assertThat(pool.getActiveCount()).isEqualTo(1);
+            assertThat(held.isClosed()).isFalse();
+
+            logger.info("TC602 PASSED: Timeout setelah " + waited + " ms");
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("TC603: Transaksi yang belum di-commit di-rollback saat dikembalikan")
+    void testReturnedConnection_ShouldBeReset() throws SQLException {
+        ConnectionPool pool = createSmallPool(1, 1000);
+        try {
+            // ARRANGE
+            Connection conn = pool.getConnection();
+            conn.setAutoCommit(false);
+            conn.close();
+
+            // ACT
+            try (Connection reused = pool.getConnection()) {
+                // ASSERT
+                assertThat(reused.getAutoCommit()).isTrue();
+                assertThat(reused.isReadOnly()).isFalse();
+            }
+
+            logger.info("TC603 PASSED: State koneksi di-reset oleh pool");
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("TC604: Method pada koneksi yang sudah dikembalikan - Should Fail")
+    void testUseAfterClose_ShouldFail() throws SQLException {
+        ConnectionPool pool = createSmallPool(1, 1000);
+        try {
+            Connection conn = pool.getConnection();
+            conn.close();
+
+            assertThatThrownBy(conn::createStatement)
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("dikembalikan");
+
+            logger.info("TC604 PASSED: Koneksi tidak bisa dipakai setelah close");
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("TC605: Readiness check berjalan di background dan melaporkan READY")
+    void testReadinessCheck_ShouldReportReady() {
+        // ACT
+        boolean ready = DatabaseConfig.awaitReady(30000);
+
+        // ASSERT
+        assertThat(ready).isTrue();
+        assertThat(DatabaseConfig.isReady()).isTrue();
+        assertThat(DatabaseConfig.getReadiness()).isEqualTo(DatabaseConfig.Readiness.READY);
+
+        logger.info("TC605 PASSED: Database readiness = " + DatabaseConfig.getReadiness());
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("TC606: Pool replica menghasilkan koneksi read-only, tetap read-only setelah reuse")
+    void testReadOnlyPool_ShouldReturnReadOnlyConnections() throws SQLException {
+        ConnectionPool pool = createSmallPool(1, 1000, true);
+        try {
+            try (Connection conn = pool.getConnection()) {
+                assertThat(conn.isReadOnly()).isTrue();
+            }
+            try (Connection reused = pool.getConnection()) {
+                assertThat(reused.isReadOnly()).isTrue();
+            }
+
+            // Tanpa db.read.url, read connection diambil dari primary
+            try (Connection read = DatabaseConfig.getReadConnection()) {
+                assertThat(read.isValid(5)).isTrue();
+            }
+
+            logger.info("TC606 PASSED: Koneksi replica read-only");
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("TC607: ShardFunction.HASH menyebar user_id berurutan secara merata")
+    void testHashShardFunction_ShouldSpreadEvenly() {
+        // ARRANGE
+        int shardCount = 4;
+        int[] perShard = new int[shardCount];
+
+        // ACT
+        for (int userId = 1; userId <= 10_000; userId++) {
+            int shard = ShardFunction.HASH.shardFor(userId, shardCount);
+            assertThat(shard).isBetween(0, shardCount - 1);
+            perShard[shard]++;
+        }
+
+        // ASSERT - setiap shard mendapat sekitar 25% (toleransi 10%)
+        for (int count : perShard) {
+            assertThat(count).isBetween(2250, 2750);
+        }
+        // Tanpa db.shard.N.url semua user ada di shard 0
+        assertThat(DatabaseConfig.getShardCount()).isEqualTo(1);
+        assertThat(DatabaseConfig.shardForUser(12345)).isZero();
+
+        logger.info("TC607 PASSED: Distribusi shard " + java.util.Arrays.toString(perShard));
+    }
+
+    @Test
+    @Order(8)
+    @DisplayName("TC608: Metrics pool mencatat acquisition, timeout dan waktu tunggu")
+    void testPoolMetrics_ShouldTrackAcquisitionsAndTimeouts() throws Exception {
+        ConnectionPool pool = createSmallPool(1, 200);
+        try {
+            // ACT
+            try (Connection held = pool.getConnection()) {
+                assertThat(held.isClosed()).isFalse();
+                assertThatThrownBy(pool::getConnection).isInstanceOf(SQLException.class);
+                assertThat(pool.getMetrics().getActiveConnections()).isEqualTo(1);
+            }
+            PoolMetrics metrics = pool.getMetrics();
+
+            // ASSERT
+            assertThat(metrics.getAcquisitions()).isEqualTo(1);
+            assertThat(metrics.getTimeouts()).isEqualTo(1);
+            assertThat(metrics.getConnectionsCreated()).isEqualTo(1);
+            assertThat(metrics.getActiveConnections()).isZero();
+            assertThat(metrics.getIdleConnections()).isEqualTo(1);
+            assertThat(metrics.getPendingThreads()).isZero();
+            assertThat(java.util.Arrays.stream(metrics.getAcquireWaitHistogram()).sum()).isEqualTo(1);
+
+            // Pool juga terlihat lewat JMX
+            javax.management.ObjectName name = new javax.management.ObjectName(
+                    "com.praktikum.database.testing.library:type=ConnectionPool,name=\"test\"");
+            Object acquisitions = java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(name, "AcquisitionCount");
+            assertThat(acquisitions).isEqualTo(1L);
+
+            logger.info("TC608 PASSED: " + metrics.toSummary());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("TC609: Leak detection melaporkan koneksi yang ditahan dan Statement yang tidak di-close")
+    void testLeakDetection_ShouldReportHeldConnectionsAndUnclosedStatements() throws Exception {
+        Properties poolProperties = new Properties();
+        poolProperties.setProperty("db.pool.initialSize", "0");
+        poolProperties.setProperty("db.pool.maxTotal", "2");
+        poolProperties.setProperty("db.pool.maxWaitMillis", "1000");
+        poolProperties.setProperty("db.leak.detection.enabled", "true");
+        poolProperties.setProperty("db.leak.detection.thresholdMillis", "100");
+        ConnectionPool pool = new ConnectionPool("test-leak", DatabaseConfig.getDbUrl(),
+                DatabaseConfig.buildConnectionProperties(), PoolSettings.fromProperties(poolProperties), false);
+        try {
+            // ACT - koneksi ditahan melewati threshold, Statement dan ResultSet tidak di-close
+            Connection conn = pool.getConnection();
+            java.sql.Statement stmt = conn.createStatement();
+            stmt.executeQuery("SELECT 1");
+            Thread.sleep(400);
+            conn.close();
+
+            // ASSERT
+            PoolMetrics metrics = pool.getMetrics();
+            assertThat(metrics.getSuspectedLeaks()).isEqualTo(1);
+            assertThat(metrics.getUnclosedResources()).isEqualTo(2);
+            assertThat(stmt.isClosed()).isTrue();
+
+            // Koneksi yang dipakai dengan benar tidak dilaporkan
+            try (Connection clean = pool.getConnection();
+                 java.sql.PreparedStatement pstmt = clean.prepareStatement("SELECT 1");
+                 java.sql.ResultSet rs = pstmt.executeQuery()) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getStatement()).isSameAs(pstmt);
+            }
+            assertThat(pool.getMetrics().getUnclosedResources()).isEqualTo(2);
+
+            logger.info("TC609 PASSED: " + pool.getMetrics().toSummary());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(10)
+    @DisplayName("TC610: PreparedStatement dipakai ulang dari cache antar peminjaman koneksi")
+    void testStatementCache_ShouldReusePreparedStatements() throws SQLException {
+        ConnectionPool pool = createSmallPool(1, 1000);
+        String sql = "SELECT ?::int";
+        try {
+            // ACT
+            java.sql.PreparedStatement physicalFirst;
+            try (Connection conn = pool.getConnection();
+                 java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, 1);
+                try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                    assertThat(rs.next()).isTrue();
+                }
+                physicalFirst = pstmt.unwrap(java.sql.PreparedStatement.class);
+
+                // SQL yang sama dipakai bersamaan - statement kedua dibuat di luar cache
+                try (java.sql.PreparedStatement concurrent = conn.prepareStatement(sql)) {
+                    assertThat(concurrent.unwrap(java.sql.PreparedStatement.class)).isNotSameAs(physicalFirst);
+                }
+            }
+
+            java.sql.PreparedStatement physicalSecond;
+            try (Connection conn = pool.getConnection();
+                 java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, 2);
+                try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                    assertThat(rs.next()).isTrue();
+                    assertThat(rs.getInt(1)).isEqualTo(2);
+                }
+                physicalSecond = pstmt.unwrap(java.sql.PreparedStatement.class);
+            }
+
+            // ASSERT
+            assertThat(physicalSecond).isSameAs(physicalFirst);
+            PoolMetrics metrics = pool.getMetrics();
+            assertThat(metrics.getStatementCacheHits()).isEqualTo(1);
+            assertThat(metrics.getStatementCacheMisses()).isEqualTo(2);
+
+            // Statement sekali pakai yang lupa di-close ditutup saat koneksi dikembalikan
+            java.sql.PreparedStatement forgotten;
+            try (Connection conn = pool.getConnection();
+                 java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                forgotten = conn.prepareStatement(sql).unwrap(java.sql.PreparedStatement.class);
+                assertThat(forgotten).isNotSameAs(pstmt.unwrap(java.sql.PreparedStatement.class));
+            }
+            assertThat(forgotten.isClosed()).isTrue();
+
+            logger.info("TC610 PASSED: " + metrics.toSummary());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(11)
+    @DisplayName("TC611: Circuit breaker OPEN setelah kegagalan berturut-turut dan menolak permintaan secara langsung")
+    void testCircuitBreaker_ShouldFailFastWhenDatabaseUnreachable() {
+        Properties poolProperties = new Properties();
+        poolProperties.setProperty("db.pool.initialSize", "0");
+        poolProperties.setProperty("db.pool.maxTotal", "2");
+        poolProperties.setProperty("db.pool.maxWaitMillis", "1000");
+        poolProperties.setProperty("db.circuit.failureThreshold", "2");
+        poolProperties.setProperty("db.circuit.openMillis", "60000");
+        // Port 1 di localhost - koneksi langsung ditolak
+        ConnectionPool pool = new ConnectionPool("test-circuit", "jdbc:postgresql://127.0.0.1:1/postgres",
+                DatabaseConfig.buildConnectionProperties(), PoolSettings.fromProperties(poolProperties), false);
+        try {
+            // ACT - dua kegagalan koneksi membuat breaker OPEN
+            assertThatThrownBy(pool::getConnection).isInstanceOf(SQLException.class);
+            assertThatThrownBy(pool::getConnection).isInstanceOf(SQLException.class);
+            assertThat(pool.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+            long start = System.nanoTime();
+            assertThatThrownBy(pool::getConnection)
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("circuit breaker");
+            long rejectMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // ASSERT
+            PoolMetrics metrics = pool.getMetrics();
+            assertThat(rejectMillis).isLessThan(50);
+            assertThat(metrics.getCircuitState()).isEqualTo("OPEN");
+            assertThat(metrics.getCircuitTrips()).isEqualTo(1);
+            assertThat(metrics.getCircuitRejections()).isEqualTo(1);
+            assertThat(metrics.getConnectionCreateFailures()).isEqualTo(2);
+            assertThat(pool.getTotalCount()).isZero();
+
+            logger.info("TC611 PASSED: " + metrics.toSummary());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    @Order(12)
+    @DisplayName("TC612: DAO di dalam inTransaction berbagi satu koneksi dan di-rollback saat exception")
+    void testTransactionManager_ShouldShareConnectionAndRollback() throws SQLException {
+        TransactionManager transactionManager = DatabaseConfig.getTransactionManager();
+        UserDAO userDAO = new UserDAO(transactionManager);
+        String username = "tx_user_" + System.currentTimeMillis();
+        int[] createdId = new int[1];
+
+        // ACT
+        assertThatThrownBy(() -> transactionManager.inTransaction(() -> {
+            try (Connection first = transactionManager.getConnection();
+                 Connection second = transactionManager.getReadConnection()) {
+                assertThat(first.unwrap(Connection.class)).isSameAs(second.unwrap(Connection.class));
+            }
+            User created = userDAO.create(User.builder()
+                    .username(username)
+                    .email(username + "@test.com")
+                    .fullName("Transaction Test")
+                    .build());
+            createdId[0] = created.getUserId();
+            // Read di dalam transaksi melihat insert yang belum di-commit
+            assertThat(userDAO.findById(created.getUserId())).isPresent();
+            throw new IllegalStateException("Batalkan transaksi");
+        })).isInstanceOf(IllegalStateException.class);
+
+        // ASSERT
+        assertThat(transactionManager.isInTransaction()).isFalse();
+        assertThat(userDAO.findById(createdId[0])).isEmpty();
+
+        logger.info("TC612 PASSED: Insert di-rollback bersama transaksi");
+    }
+
+    @Test
+    @Order(13)
+    @DisplayName("TC613: Koneksi rollback-per-test dipakai oleh DAO setelah useTestTransaction()")
+    void testBoundTestConnection_ShouldBeUsedByDao() throws SQLException {
+        useTestTransaction();
+        UserDAO userDAO = new UserDAO();
+        String username = "bound_user_" + System.currentTimeMillis();
+
+        // ACT
+        User created = userDAO.create(User.builder()
+                .username(username)
+                .email(username + "@test.com")
+                .fullName("Bound Connection Test")
+                .build());
+
+        // ASSERT - insert terlihat dari koneksi test karena memakai koneksi yang sama
+        try (java.sql.PreparedStatement pstmt = connection.prepareStatement("SELECT COUNT(*) FROM users WHERE user_id = ?")) {
+            pstmt.setInt(1, created.getUserId());
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                assertThat(rs.next()).isTrue();
+                assertThat(rs.getInt(1)).isEqualTo(1);
+            }
+        }
+
+        logger.info("TC613 PASSED: DAO memakai koneksi test, perubahan akan di-rollback");
+    }
+}
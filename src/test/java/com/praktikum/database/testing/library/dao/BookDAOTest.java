@@ -3,11 +3,15 @@ package com.praktikum.database.testing.library.dao;
 import com.github.javafaker.Faker;
 import com.praktikum.database.testing.library.BaseDatabaseTest;
 import com.praktikum.database.testing.library.model.Book;
+import com.praktikum.database.testing.library.model.BookSummary;
 import org.junit.jupiter.api.*;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.assertj.core.api.Assertions.*;
 
 /**
@@ -254,6 +258,101 @@ public class BookDAOTest extends BaseDatabaseTest {
         logger.info("TC109 PASSED: Total books: " + totalCount + ", Available: " + availableCount);
     }
 
+    @Test
+    @Order(10)
+    @DisplayName("TC110: Find books by multiple IDs - Should Return Map In Input Order")
+    void testFindBooksByIds_WithExistingAndMissingIds_ShouldReturnMap() throws SQLException {
+        // ARRANGE - book kedua, id duplikat dan id yang tidak ada
+        Book secondBook = createTestBook();
+        secondBook.setIsbn("979" + System.currentTimeMillis());
+        bookDAO.create(secondBook);
+        createdBookIds.add(secondBook.getBookId());
+
+        // ACT
+        Map<Integer, Book> books = bookDAO.findByIds(List.of(
+                secondBook.getBookId(), 999999, testBook.getBookId(), secondBook.getBookId()));
+
+        // ASSERT
+        assertThat(books.keySet()).containsExactly(secondBook.getBookId(), testBook.getBookId());
+        assertThat(books.get(testBook.getBookId()).getIsbn()).isEqualTo(testBook.getIsbn());
+        assertThat(bookDAO.findByIds(List.of())).isEmpty();
+
+        logger.info("TC110 PASSED: findByIds returned " + books.size() + " books");
+    }
+
+    @Test
+    @Order(11)
+    @DisplayName("TC111: Find books page by page - Should Return Each Book Once")
+    void testFindBooksPage_WalkingAllPages_ShouldReturnEachBookOnce() throws SQLException {
+        // ACT - keyset berdasarkan book_id dan berdasarkan (title, book_id)
+        List<Integer> byId = new java.util.ArrayList<>();
+        List<Book> page = bookDAO.findPage(null, 2);
+        while (!page.isEmpty()) {
+            page.forEach(book -> byId.add(book.getBookId()));
+            page = bookDAO.findPage(page.get(page.size() - 1).getBookId(), 2);
+        }
+
+        List<Book> byTitle = new java.util.ArrayList<>();
+        page = bookDAO.findPageByTitle(null, null, 2);
+        while (!page.isEmpty()) {
+            byTitle.addAll(page);
+            Book last = page.get(page.size() - 1);
+            page = bookDAO.findPageByTitle(last.getTitle(), last.getBookId(), 2);
+        }
+
+        // ASSERT
+        int totalCount = bookDAO.countAll();
+        assertThat(byId).hasSize(totalCount).isSorted().doesNotHaveDuplicates().contains(testBook.getBookId());
+        assertThat(byTitle).hasSize(totalCount).extracting(Book::getBookId).doesNotHaveDuplicates();
+        assertThatThrownBy(() -> bookDAO.findPage(null, 0)).isInstanceOf(IllegalArgumentException.class);
+
+        logger.info("TC111 PASSED: " + totalCount + " books dibaca per halaman");
+    }
+
+    @Test
+    @Order(12)
+    @DisplayName("TC112: Stream all books - Should Match findAll")
+    void testStreamAllBooks_ShouldMatchFindAll() throws SQLException {
+        // ACT
+        List<Integer> streamedIds;
+        try (Stream<Book> books = bookDAO.streamAll()) {
+            streamedIds = books.map(Book::getBookId).collect(Collectors.toList());
+        }
+        // Stream yang ditutup sebelum habis dibaca juga melepas koneksinya
+        try (Stream<Book> books = bookDAO.streamAll()) {
+            assertThat(books.findFirst()).isPresent();
+        }
+
+        // ASSERT
+        assertThat(streamedIds).containsExactlyElementsOf(
+                bookDAO.findAll().stream().map(Book::getBookId).collect(Collectors.toList()));
+
+        logger.info("TC112 PASSED: " + streamedIds.size() + " books di-stream");
+    }
+
+    @Test
+    @Order(13)
+    @DisplayName("TC113: Search book summaries by title - Should Return Summary Fields Only")
+    void testSearchSummariesByTitle_ShouldReturnMatchingSummaries() throws SQLException {
+        // ACT
+        List<BookSummary> summaries = bookDAO.searchSummariesByTitle(testBook.getTitle());
+        List<BookSummary> available = bookDAO.findAvailableSummaries();
+
+        // ASSERT - field summary sama dengan Book lengkap
+        Book book = bookDAO.findById(testBook.getBookId()).orElseThrow();
+        assertThat(summaries).anySatisfy(summary -> {
+            assertThat(summary.getBookId()).isEqualTo(book.getBookId());
+            assertThat(summary.getIsbn()).isEqualTo(book.getIsbn());
+            assertThat(summary.getTitle()).isEqualTo(book.getTitle());
+            assertThat(summary.getAvailableCopies()).isEqualTo(book.getAvailableCopies());
+        });
+        assertThat(available).extracting(BookSummary::getBookId)
+                .containsExactlyElementsOf(bookDAO.findAvailableBooks().stream()
+                        .map(Book::getBookId).collect(Collectors.toList()));
+
+        logger.info("TC113 PASSED: " + summaries.size() + " summaries, " + available.size() + " available");
+    }
+
      // =============================================
     // NEGATIVE TEST CASES
     // =============================================
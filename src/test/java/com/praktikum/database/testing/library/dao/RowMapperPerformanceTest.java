@@ -0,0 +1,152 @@
+package com.praktikum.database.testing.library.dao;
+
+import com.praktikum.database.testing.library.BaseDatabaseTest;
+import com.praktikum.database.testing.library.model.Book;
+import org.junit.jupiter.api.*;
+import java.lang.management.ManagementFactory;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Benchmark mapper ResultSet: lookup nama kolom + builder per row (mapper lama)
+ * dibandingkan BookDAO.BookMapper (index kolom di-resolve sekali, object dibuat langsung)
+ * Data 100k row dibuat dengan generate_series, sehingga tidak bergantung pada isi tabel books
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@DisplayName("Row Mapper Performance Test Suite")
+public class RowMapperPerformanceTest extends BaseDatabaseTest {
+
+    private static final int ROWS = 100_000;
+    private static final int WARMUP_PASSES = 3;
+    private static final int MEASURED_PASSES = 5;
+
+    // Row dengan kolom dan tipe yang sama seperti books
+    private static final String SCAN_SQL = "SELECT g AS book_id, '978' || lpad(g::text, 10, '0') AS isbn, " +
+            "'Benchmark Book ' || g AS title, 1 AS author_id, " +
+            "CASE WHEN g % 10 = 0 THEN NULL ELSE 1 END AS publisher_id, 1 AS category_id, " +
+            "2000 + g % 25 AS publication_year, 100 + g % 500 AS pages, 'Indonesian' AS language, " +
+            "'Benchmark description ' || g AS description, 5 AS total_copies, g % 6 AS available_copies, " +
+            "(50000 + g)::numeric(10, 2) AS price, 'Rak B-' || g % 100 AS location, 'available' AS status, " +
+            "LOCALTIMESTAMP AS created_at, LOCALTIMESTAMP AS updated_at " +
+            "FROM generate_series(1, " + ROWS + ") g";
+
+    /**
+     * Hasil satu mapper: total waktu dan alokasi untuk loop mapping saja (tanpa eksekusi query)
+     */
+    private static final class Measurement {
+        long nanos;
+        long allocatedBytes;
+        long checksum;
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("TC523: Row mapper - name lookup + builder vs cached ordinals on 100k-row scan")
+    void testRowMapperPerformance_CachedOrdinalsVsNameLookup() throws SQLException {
+        // ARRANGE - kedua mapper harus menghasilkan Book yang sama
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SCAN_SQL + " LIMIT 10")) {
+            BookDAO.BookMapper mapper = new BookDAO.BookMapper(rs);
+            while (rs.next()) {
+                assertThat(mapper.map(rs)).isEqualTo(mapByName(rs));
+            }
+        }
+
+        // Warm-up: JIT untuk kedua jalur
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            scan(rs -> this::mapByName);
+            scan(BookDAO.BookMapper::new);
+        }
+
+        // ACT & MEASURE
+        Measurement byName = new Measurement();
+        Measurement byOrdinal = new Measurement();
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            add(byName, scan(rs -> this::mapByName));
+            add(byOrdinal, scan(BookDAO.BookMapper::new));
+        }
+
+        // ASSERT - alokasi per row turun karena builder dan lookup nama kolom hilang
+        long rows = (long) ROWS * MEASURED_PASSES;
+        assertThat(byOrdinal.checksum).isEqualTo(byName.checksum);
+        if (byName.allocatedBytes > 0) {
+            assertThat(byOrdinal.allocatedBytes).isLessThan(byName.allocatedBytes);
+        }
+
+        logger.info("TC523 PASSED: " + ROWS + " rows x " + MEASURED_PASSES + " passes");
+        logger.info(" Name lookup + builder: " + String.format("%.1f", (double) byName.nanos / rows) + " ns/row, "
+                + (byName.allocatedBytes / rows) + " B/row");
+        logger.info(" Cached ordinals: " + String.format("%.1f", (double) byOrdinal.nanos / rows) + " ns/row, "
+                + (byOrdinal.allocatedBytes / rows) + " B/row");
+    }
+
+    // ---
+    // HELPER METHODS
+    // ---
+
+    /**
+     * Menjalankan scan 100k row dan mengukur loop mapping-nya
+     */
+    private Measurement scan(CursorStreams.MapperFactory<Book> factory) throws SQLException {
+        Measurement measurement = new Measurement();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SCAN_SQL)) {
+
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            RowMapper<Book> mapper = factory.create(rs);
+            while (rs.next()) {
+                Book book = mapper.map(rs);
+                // Checksum supaya JIT tidak membuang hasil mapping
+                measurement.checksum += book.getBookId() + book.getTitle().length();
+            }
+            measurement.nanos = System.nanoTime() - start;
+            measurement.allocatedBytes = allocatedBytes() - allocatedBefore;
+        }
+        return measurement;
+    }
+
+    private static void add(Measurement total, Measurement pass) {
+        total.nanos += pass.nanos;
+        total.allocatedBytes += pass.allocatedBytes;
+        total.checksum += pass.checksum;
+    }
+
+    /**
+     * Mapper lama: lookup nama kolom per row dan builder Lombok
+     */
+    private Book mapByName(ResultSet rs) throws SQLException {
+        return Book.builder()
+                .bookId(rs.getInt("book_id"))
+                .isbn(rs.getString("isbn"))
+                .title(rs.getString("title"))
+                .authorId(rs.getInt("author_id"))
+                .publisherId((Integer) rs.getObject("publisher_id"))
+                .categoryId((Integer) rs.getObject("category_id"))
+                .publicationYear((Integer) rs.getObject("publication_year"))
+                .pages((Integer) rs.getObject("pages"))
+                .language(rs.getString("language"))
+                .description(rs.getString("description"))
+                .totalCopies(rs.getInt("total_copies"))
+                .availableCopies(rs.getInt("available_copies"))
+                .price(rs.getBigDecimal("price"))
+                .location(rs.getString("location"))
+                .status(rs.getString("status"))
+                .createdAt(rs.getTimestamp("created_at"))
+                .updatedAt(rs.getTimestamp("updated_at"))
+                .build();
+    }
+
+    /**
+     * Byte yang sudah dialokasikan thread ini, 0 jika JVM tidak mendukung pengukuran alokasi
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+}
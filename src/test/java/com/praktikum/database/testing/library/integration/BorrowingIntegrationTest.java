@@ -3,24 +3,43 @@ package com.praktikum.database.testing.library.integration;
 // Import classes untuk testing
 import com.github.javafaker.Faker;
 import com.praktikum.database.testing.library.BaseDatabaseTest;
+import com.praktikum.database.testing.library.config.ConnectionProvider;
+import com.praktikum.database.testing.library.config.DatabaseConfig;
+import com.praktikum.database.testing.library.config.TransactionManager;
 import com.praktikum.database.testing.library.dao.BookDAO;
 import com.praktikum.database.testing.library.dao.BorrowingDAO;
+import com.praktikum.database.testing.library.dao.OverdueJobDAO;
 import com.praktikum.database.testing.library.dao.UserDAO;
 import com.praktikum.database.testing.library.model.Book;
+import com.praktikum.database.testing.library.model.BorrowFailureReason;
+import com.praktikum.database.testing.library.model.BorrowOutcome;
 import com.praktikum.database.testing.library.model.Borrowing;
+import com.praktikum.database.testing.library.model.OverdueJobProgress;
+import com.praktikum.database.testing.library.model.OverdueUpdateResult;
+import com.praktikum.database.testing.library.model.ReturnBatchResult;
 import com.praktikum.database.testing.library.model.User;
 import com.praktikum.database.testing.library.service.BorrowingService;
+import com.praktikum.database.testing.library.service.OverdueJobService;
+import com.praktikum.database.testing.library.service.OverdueScheduler;
 import com.praktikum.database.testing.library.utils.IndonesianFakerHelper;
 import org.junit.jupiter.api.*;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 // Import static assertions
 import static org.assertj.core.api.Assertions.*;
@@ -568,10 +587,347 @@ public class BorrowingIntegrationTest extends BaseDatabaseTest {
         logger.info(" TC412 PASSED: Service layer validation working correctly");
     }
 
+    @Test
+    @Order(13)
+    @DisplayName("TC413: updateOverdueStatus - set-based status and fine update")
+    void testUpdateOverdueStatus_SetBasedUpdate() throws SQLException {
+        // ARRANGE - borrowing yang terlambat 3 hari
+        Borrowing borrowing = borrowingDAO.create(Borrowing.builder()
+                .userId(testUser.getUserId())
+                .bookId(testBook.getBookId())
+                .dueDate(Timestamp.valueOf(LocalDateTime.now().minusDays(3).minusHours(1)))
+                .status("borrowed")
+                .build());
+
+        // ACT
+        OverdueUpdateResult first = borrowingService.updateOverdueStatus();
+        OverdueUpdateResult second = borrowingService.updateOverdueStatus();
+
+        // ASSERT - status dan denda dihitung di database, run kedua tidak menulis ulang row yang sama
+        Optional<Borrowing> updated = borrowingDAO.findById(borrowing.getBorrowingId());
+        assertThat(updated).isPresent();
+        assertThat(updated.get().getStatus()).isEqualTo("overdue");
+        assertThat(updated.get().getFineAmount().doubleValue()).isEqualTo(15000.0);
+        assertThat(first.getUpdatedCount()).isGreaterThanOrEqualTo(1);
+        assertThat(first.getNewlyOverdueCount()).isGreaterThanOrEqualTo(1);
+        assertThat(second.getUpdatedCount()).isLessThan(first.getUpdatedCount());
+
+        logger.info(" TC413 PASSED: " + first.getUpdatedCount() + " borrowings updated in "
+                + first.getChunkCount() + " chunks, " + first.getDurationMillis() + " ms");
+
+        // CLEANUP
+        borrowingDAO.delete(borrowing.getBorrowingId());
+    }
+
+    @Test
+    @Order(14)
+    @DisplayName("TC414: OverdueJobService - partitions shared by two instances and resumed after a dead worker")
+    void testOverdueJob_PartitionedAcrossInstances() throws Exception {
+        // ARRANGE - beberapa borrowing overdue dan satu partisi yang diklaim oleh "instance mati"
+        List<Integer> borrowingIds = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            borrowingIds.add(borrowingDAO.create(Borrowing.builder()
+                    .userId(testUser.getUserId())
+                    .bookId(testBook.getBookId())
+                    .dueDate(Timestamp.valueOf(LocalDateTime.now().minusDays(i).minusHours(1)))
+                    .status("borrowed")
+                    .build()).getBorrowingId());
+        }
+        String runId = "test-overdue-" + System.currentTimeMillis();
+        OverdueJobDAO overdueJobDAO = new OverdueJobDAO();
+        overdueJobDAO.createTableIfNotExists();
+        overdueJobDAO.planPartitions(0, runId, new Timestamp(System.currentTimeMillis()), 4);
+        assertThat(overdueJobDAO.claimPartition(0, runId, "dead-node", 1)).isPresent();
+        Thread.sleep(50); // lease instance mati habis
+
+        OverdueJobService instanceA = new OverdueJobService();
+        OverdueJobService instanceB = new OverdueJobService();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // ACT - dua instance menjalankan run yang sama bersamaan
+            Future<OverdueUpdateResult> resultA = executor.submit(() -> instanceA.run(runId));
+            Future<OverdueUpdateResult> resultB = executor.submit(() -> instanceB.run(runId));
+            int updated = resultA.get(2, TimeUnit.MINUTES).getUpdatedCount()
+                    + resultB.get(2, TimeUnit.MINUTES).getUpdatedCount();
+            OverdueJobProgress progress = instanceA.getProgress(runId);
+
+            // ASSERT - semua partisi selesai tepat sekali, termasuk partisi milik instance mati
+            assertThat(progress.isComplete()).isTrue();
+            assertThat(progress.getPartitionsInProgress()).isZero();
+            assertThat(progress.getUpdatedCount()).isEqualTo(updated);
+            for (Integer borrowingId : borrowingIds) {
+                assertThat(borrowingDAO.findById(borrowingId)).isPresent().get()
+                        .satisfies(b -> assertThat(b.getStatus()).isEqualTo("overdue"));
+            }
+
+            logger.info(" TC414 PASSED: " + progress.getPartitionsDone() + " partitions, " + updated
+                    + " borrowings updated (A: " + instanceA.getPartitionsCompleted()
+                    + " partitions, B: " + instanceB.getPartitionsCompleted() + " partitions)");
+        } finally {
+            // CLEANUP
+            executor.shutdownNow();
+            overdueJobDAO.deleteRun(runId);
+            for (Integer borrowingId : borrowingIds) {
+                borrowingDAO.delete(borrowingId);
+            }
+        }
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("TC415: OverdueScheduler - incremental tick only touches loans past the watermark")
+    void testOverdueScheduler_IncrementalTick() throws Exception {
+        // ARRANGE - tick pertama menyimpan watermark, lalu satu borrowing jatuh tempo sesudahnya
+        OverdueScheduler scheduler = new OverdueScheduler();
+        scheduler.tick();
+        Borrowing borrowing = borrowingDAO.create(Borrowing.builder()
+                .userId(testUser.getUserId())
+                .bookId(testBook.getBookId())
+                .dueDate(new Timestamp(System.currentTimeMillis() + 500))
+                .status("borrowed")
+                .build());
+        // Borrowing yang masuk terlambat dengan due_date sebelum watermark
+        Borrowing late = borrowingDAO.create(Borrowing.builder()
+                .userId(testUser.getUserId())
+                .bookId(testBook.getBookId())
+                .borrowDate(Timestamp.valueOf(LocalDateTime.now().minusDays(10)))
+                .dueDate(Timestamp.valueOf(LocalDateTime.now().minusDays(3).minusHours(1)))
+                .status("borrowed")
+                .build());
+        Thread.sleep(1000);
+
+        // ACT
+        OverdueUpdateResult result = scheduler.tick();
+
+        // ASSERT - borrowing baru overdue diperbarui tanpa scan semua borrowing aktif
+        Optional<Borrowing> updated = borrowingDAO.findById(borrowing.getBorrowingId());
+        assertThat(updated).isPresent();
+        assertThat(updated.get().getStatus()).isEqualTo("overdue");
+        assertThat(updated.get().getFineAmount().doubleValue()).isZero();
+        Optional<Borrowing> lateUpdated = borrowingDAO.findById(late.getBorrowingId());
+        assertThat(lateUpdated).isPresent();
+        assertThat(lateUpdated.get().getStatus()).isEqualTo("overdue");
+        assertThat(lateUpdated.get().getFineAmount().doubleValue()).isEqualTo(15000.0);
+        assertThat(result.getNewlyOverdueCount()).isGreaterThanOrEqualTo(2);
+        assertThat(scheduler.getTickCount()).isEqualTo(2);
+
+        logger.info(" TC415 PASSED: incremental tick updated " + result.getUpdatedCount() + " borrowings in "
+                + result.getDurationMillis() + " ms");
+
+        // CLEANUP
+        borrowingDAO.delete(borrowing.getBorrowingId());
+        borrowingDAO.delete(late.getBorrowingId());
+    }
+
+    @Test
+    @Order(16)
+    @DisplayName("TC416: Batch checkout - borrowBooks reports per-book results")
+    void testBorrowBooks_BatchCheckout() throws SQLException {
+        // ARRANGE - buku kedua, buku tanpa stok, dan id buku yang tidak ada
+        Book book2 = bookDAO.create(createTestBook());
+        Book soldOut = createTestBook();
+        soldOut.setAvailableCopies(0);
+        soldOut = bookDAO.create(soldOut);
+        List<Integer> bookIds = List.of(testBook.getBookId(), book2.getBookId(), soldOut.getBookId(),
+                999999, testBook.getBookId());
+
+        try {
+            // ACT
+            List<BorrowOutcome> outcomes = borrowingService.borrowBooks(testUser.getUserId(), bookIds, 14);
+
+            // ASSERT - hasil per buku sesuai urutan request, stok berkurang sesuai jumlah kopi yang dipinjam
+            assertThat(outcomes).hasSize(5);
+            assertThat(outcomes).extracting(BorrowOutcome::getBookId).containsExactlyElementsOf(bookIds);
+            assertThat(outcomes.get(0).isSuccess()).isTrue();
+            assertThat(outcomes.get(1).isSuccess()).isTrue();
+            assertThat(outcomes.get(2).getFailureReason()).isEqualTo(BorrowFailureReason.NO_COPIES_AVAILABLE);
+            assertThat(outcomes.get(3).getFailureReason()).isEqualTo(BorrowFailureReason.BOOK_NOT_FOUND);
+            assertThat(outcomes.get(4).isSuccess()).isTrue();
+            assertThat(outcomes.get(0).getBorrowing().getBorrowingId())
+                    .isNotNull()
+                    .isNotEqualTo(outcomes.get(4).getBorrowing().getBorrowingId());
+
+            assertThat(bookDAO.findById(testBook.getBookId()).get().getAvailableCopies()).isEqualTo(3);
+            assertThat(bookDAO.findById(book2.getBookId()).get().getAvailableCopies()).isEqualTo(4);
+            assertThat(borrowingDAO.countActiveBorrowingsByUser(testUser.getUserId())).isEqualTo(3);
+
+            logger.info(" TC416 PASSED: 3 of 5 books borrowed in one batch");
+        } finally {
+            // CLEANUP - borrowing milik testUser dan book2 dihapus di tearDown
+            bookDAO.delete(soldOut.getBookId());
+        }
+    }
+
+    @Test
+    @Order(17)
+    @DisplayName("TC417: Bulk returns - returnBooks reports unknown and already returned ids")
+    void testReturnBooks_BulkReturns() throws SQLException {
+        // ARRANGE - dua kopi testBook dipinjam, satu dikembalikan lebih dulu
+        List<BorrowOutcome> outcomes = borrowingService.borrowBooks(testUser.getUserId(),
+                List.of(testBook.getBookId(), testBook.getBookId(), testBook.getBookId()), 14);
+        Integer first = outcomes.get(0).getBorrowing().getBorrowingId();
+        Integer second = outcomes.get(1).getBorrowing().getBorrowingId();
+        Integer third = outcomes.get(2).getBorrowing().getBorrowingId();
+        borrowingService.returnBook(third);
+
+        // ACT
+        ReturnBatchResult result = borrowingService.returnBooks(List.of(first, second, first, third, 999999));
+
+        // ASSERT - batch tidak gagal, stok kembali penuh
+        assertThat(result.getReturnedIds()).containsExactlyInAnyOrder(first, second);
+        assertThat(result.getAlreadyReturnedIds()).containsExactly(third);
+        assertThat(result.getNotFoundIds()).containsExactly(999999);
+        assertThat(result.getReturnedCopiesByBook()).containsEntry(testBook.getBookId(), 2);
+        assertThat(bookDAO.findById(testBook.getBookId()).get().getAvailableCopies()).isEqualTo(5);
+        assertThat(borrowingDAO.findById(first).get().getStatus()).isEqualTo("returned");
+
+        logger.info(" TC417 PASSED: " + result.getReturnedIds().size() + " returned in "
+                + result.getDurationMillis() + " ms");
+    }
+
+    @Test
+    @Order(18)
+    @DisplayName("TC418: Sharded catalog - failed borrow leaves available_copies unchanged on every shard")
+    void testShardedBorrow_FailedInsertKeepsCatalogStock() throws SQLException {
+        // ARRANGE - dua shard yang menunjuk ke database yang sama, user berada di shard 1
+        ConnectionProvider twoShards = twoShardsOnOneDatabase();
+        TransactionManager shardedTransactions = new TransactionManager(twoShards);
+        // Insert borrowing selalu gagal setelah stok dikurangi
+        BorrowingDAO failingBorrowingDAO = new BorrowingDAO(shardedTransactions) {
+            @Override
+            public Borrowing create(Borrowing borrowing) throws SQLException {
+                throw new SQLException("Simulasi insert borrowing gagal");
+            }
+
+            @Override
+            public List<Borrowing> createAll(List<Borrowing> borrowings) throws SQLException {
+                throw new SQLException("Simulasi insert borrowing gagal");
+            }
+        };
+        BorrowingService shardedService = new BorrowingService(new UserDAO(shardedTransactions),
+                new BookDAO(shardedTransactions), failingBorrowingDAO, shardedTransactions);
+
+        // ACT
+        assertThatThrownBy(() -> shardedService.borrowBook(testUser.getUserId(), testBook.getBookId(), 14))
+                .isInstanceOf(SQLException.class);
+        assertThatThrownBy(() -> shardedService.borrowBooks(testUser.getUserId(),
+                List.of(testBook.getBookId()), 14))
+                .isInstanceOf(SQLException.class);
+        // Pengembalian batch dengan sharding: id dicari di semua shard, tidak ada yang berubah
+        ReturnBatchResult returned = shardedService.returnBooks(List.of(999999));
+        assertThat(returned.getNotFoundIds()).containsExactly(999999);
+        assertThat(returned.getReturnedIds()).isEmpty();
+
+        // ASSERT - stok tidak berubah di shard mana pun
+        String sql = "SELECT available_copies FROM books WHERE book_id = ?";
+        for (int shard = 0; shard < twoShards.getShardCount(); shard++) {
+            try (Connection conn = twoShards.getConnection(shard);
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                pstmt.setInt(1, testBook.getBookId());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    assertThat(rs.next()).isTrue();
+                    assertThat(rs.getInt("available_copies")).isEqualTo(testBook.getAvailableCopies());
+                }
+            }
+        }
+        assertThat(borrowingDAO.findByUserId(testUser.getUserId())).isEmpty();
+
+        logger.info(" TC418 PASSED: available copies unchanged on " + twoShards.getShardCount() + " shards");
+    }
+
+    @Test
+    @Order(19)
+    @DisplayName("TC419: Sharded borrow - user outside the stock shard borrows and returns against shard 0 stock")
+    void testShardedBorrow_UserOutsideStockShard() throws SQLException {
+        // ARRANGE - user berada di shard 1, stok buku di shard 0
+        TransactionManager shardedTransactions = new TransactionManager(twoShardsOnOneDatabase());
+        BookDAO shardedBookDAO = new BookDAO(shardedTransactions);
+        BorrowingService shardedService = new BorrowingService(new UserDAO(shardedTransactions),
+                shardedBookDAO, new BorrowingDAO(shardedTransactions), shardedTransactions);
+        int copies = shardedBookDAO.findById(testBook.getBookId()).orElseThrow().getAvailableCopies();
+        assertThat(shardedService.canUserBorrowBook(testUser.getUserId(), testBook.getBookId())).isTrue();
+
+        // ACT - pinjam lalu kembalikan
+        Borrowing borrowing = shardedService.borrowBook(testUser.getUserId(), testBook.getBookId(), 14);
+        int afterBorrow = shardedBookDAO.findById(testBook.getBookId()).orElseThrow().getAvailableCopies();
+        shardedService.returnBook(borrowing.getBorrowingId());
+        int afterReturn = shardedBookDAO.findById(testBook.getBookId()).orElseThrow().getAvailableCopies();
+
+        // ASSERT - stok yang terlihat di katalog adalah stok yang dipinjam
+        assertThat(afterBorrow).isEqualTo(copies - 1);
+        assertThat(afterReturn).isEqualTo(copies);
+        assertThat(borrowingDAO.findById(borrowing.getBorrowingId()).orElseThrow().getReturnDate()).isNotNull();
+
+        logger.info(" TC419 PASSED: shard 1 borrow/return moved shard 0 stock " + copies + " -> "
+                + afterBorrow + " -> " + afterReturn);
+
+        // CLEANUP
+        borrowingDAO.delete(borrowing.getBorrowingId());
+    }
+
+    @Test
+    @Order(20)
+    @DisplayName("TC420: Sharded users - username is claimed on shard 0 and released on delete")
+    void testShardedUsers_UsernameClaimedGlobally() throws SQLException {
+        // ARRANGE - user baru dibuat lewat DAO dengan dua shard
+        UserDAO shardedUserDAO = new UserDAO(new TransactionManager(twoShardsOnOneDatabase()));
+        String username = "shard_" + System.currentTimeMillis();
+        User first = shardedUserDAO.create(User.builder()
+                .username(username).email(username + "@a.example").fullName("Shard User").build());
+
+        // ACT & ASSERT - username yang sama ditolak oleh klaim di user_identities, bukan oleh constraint shard
+        assertThatThrownBy(() -> shardedUserDAO.create(User.builder()
+                .username(username).email(username + "@b.example").fullName("Shard User").build()))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("user_identities")
+                .satisfies(e -> assertThat(((SQLException) e).getSQLState()).isEqualTo("23505"));
+
+        // Setelah user dihapus, username bisa dipakai lagi
+        assertThat(shardedUserDAO.delete(first.getUserId())).isTrue();
+        User second = shardedUserDAO.create(User.builder()
+                .username(username).email(username + "@b.example").fullName("Shard User").build());
+        assertThat(second.getUserId()).isNotEqualTo(first.getUserId());
+
+        logger.info(" TC420 PASSED: username " + username + " unique across shards");
+
+        // CLEANUP
+        shardedUserDAO.delete(second.getUserId());
+    }
+
     // ---
     // HELPER METHODS
     // ---
 
+    /**
+     * Dua shard yang menunjuk ke database yang sama; semua user berada di shard 1
+     * Setiap shard mendapat koneksi fisik sendiri, sehingga write di luar transaksi langsung ter-commit
+     */
+    private static ConnectionProvider twoShardsOnOneDatabase() {
+        return new ConnectionProvider() {
+            @Override
+            public Connection getConnection(int shard) throws SQLException {
+                return DatabaseConfig.getConnection();
+            }
+
+            @Override
+            public Connection getReadConnection(int shard) throws SQLException {
+                return DatabaseConfig.getConnection();
+            }
+
+            @Override
+            public int getShardCount() {
+                return 2;
+            }
+
+            @Override
+            public int shardForUser(Integer userId) {
+                return 1;
+            }
+        };
+    }
+
     /**
      * Helper method untuk membuat test book
      */
@@ -3,16 +3,40 @@ package com.praktikum.database.testing.library.performance;
 // Import classes untuk testing
 import com.github.javafaker.Faker;
 import com.praktikum.database.testing.library.BaseDatabaseTest;
+import com.praktikum.database.testing.library.config.DatabaseConfig;
 import com.praktikum.database.testing.library.dao.BookDAO;
+import com.praktikum.database.testing.library.dao.BorrowingDAO;
+import com.praktikum.database.testing.library.dao.BulkLoader;
 import com.praktikum.database.testing.library.dao.UserDAO;
 import com.praktikum.database.testing.library.model.Book;
+import com.praktikum.database.testing.library.model.BorrowFailureReason;
+import com.praktikum.database.testing.library.model.BorrowOutcome;
+import com.praktikum.database.testing.library.model.Borrowing;
+import com.praktikum.database.testing.library.model.BulkLoadResult;
 import com.praktikum.database.testing.library.model.User;
+import com.praktikum.database.testing.library.service.BorrowingService;
 import org.junit.jupiter.api.*;
 
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 // Import static assertions
 import static org.assertj.core.api.Assertions.*;
@@ -386,6 +410,7 @@ public class DatabasePerformanceTest extends BaseDatabaseTest {
 
         logger.info(" TC510 PASSED: Completed " + cycles + " connection cycles in " + duration + " ms");
         logger.info(" Average: " + String.format("%.2f", averageTimePerCycle) + " ms per cycle");
+        DatabaseConfig.getPoolMetrics().forEach(metrics -> logger.info(" " + metrics.toSummary()));
     }
 
     // ---
@@ -423,10 +448,614 @@ public class DatabasePerformanceTest extends BaseDatabaseTest {
         logger.info(" Books retrieved: " + allBooks.size());
     }
 
+    // ---
+    // CONCURRENCY TESTS
+    // ---
+
+    @Test
+    @Order(12)
+    // Build memakai toolchain Java 17 (maven-compiler-plugin source/target 17), sehingga virtual thread hanya
+    // dipakai jika test dijalankan di JVM 21+; di JVM 17 test berjalan dengan 200 platform thread
+    @DisplayName("TC512: Connection pool throughput - 10.000 tasks (virtual threads on JVM 21+, "
+            + "200 platform threads on the Java 17 toolchain)")
+    void testConnectionPoolThroughput_10kVirtualThreads() throws Exception {
+        // ARRANGE
+        int tasks = 10_000;
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        // Waktu tunggu getConnection terlama di antara semua task
+        LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+        long maxWaitMillis = DatabaseConfig.getPool().getSettings().getMaxWaitMillis();
+        long timeoutsBefore = DatabaseConfig.getPool().getTimeoutCount();
+        ExecutorService executor = newVirtualThreadExecutor();
+        String threading = virtualThreadsAvailable()
+                ? "virtual threads"
+                : "200 platform threads (Java " + Runtime.version().feature() + " - no virtual threads)";
+        logger.info("Running " + tasks + " concurrent connection acquisitions on " + threading + "...");
+
+        // ACT & MEASURE
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < tasks; i++) {
+            executor.submit(() -> {
+                long acquireStart = System.nanoTime();
+                try (Connection conn = DatabaseConfig.getConnection()) {
+                    maxAcquireNanos.accumulate(System.nanoTime() - acquireStart);
+                    try (Statement stmt = conn.createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                        rs.next();
+                        succeeded.incrementAndGet();
+                    }
+                } catch (SQLException e) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
+        long duration = System.currentTimeMillis() - startTime;
+        long maxAcquireMillis = TimeUnit.NANOSECONDS.toMillis(maxAcquireNanos.get());
+
+        // ASSERT - semua task mendapat koneksi, dan tidak ada yang menunggu sampai batas maxWaitMillis
+        assertThat(finished).isTrue();
+        assertThat(failed.get()).isZero();
+        assertThat(succeeded.get()).isEqualTo(tasks);
+        assertThat(DatabaseConfig.getPool().getTimeoutCount()).isEqualTo(timeoutsBefore);
+        assertThat(maxAcquireMillis).isLessThan(maxWaitMillis);
+        assertThat(DatabaseConfig.getPool().getTotalCount())
+                .isLessThanOrEqualTo(DatabaseConfig.getPool().getSettings().getMaxTotal());
+
+        logger.info(" TC512 PASSED: " + succeeded.get() + " succeeded, " + failed.get() + " failed in " + duration
+                + " ms on " + threading);
+        logger.info(" Max acquire wait: " + maxAcquireMillis + " ms (maxWaitMillis: " + maxWaitMillis + " ms)");
+        logger.info(" Throughput: " + String.format("%.2f", (succeeded.get() * 1000.0) / duration) + " queries/second");
+    }
+
+    @Test
+    @Order(13)
+    @DisplayName("TC513: BorrowingService.borrowBook throughput - session vs transaction pooling")
+    void testBorrowBookThroughput_PoolerMode() throws Exception {
+        // ARRANGE
+        // Jalankan dua kali untuk membandingkan mode pooler Supabase:
+        //   mvn test -Dtest=DatabasePerformanceTest -Ddb.pooler.mode=session -Ddb.url=jdbc:postgresql://<host>:5432/postgres
+        //   mvn test -Dtest=DatabasePerformanceTest -Ddb.pooler.mode=transaction -Ddb.url=jdbc:postgresql://<host>:6543/postgres
+        assertThat(testUserIds).isNotEmpty();
+        assertThat(testBookIds).isNotEmpty();
+        BorrowingService borrowingService = new BorrowingService();
+        BorrowingDAO borrowingDAO = new BorrowingDAO();
+        int borrows = Math.min(200, testUserIds.size() * 2);
+        Queue<Integer> borrowingIds = new ConcurrentLinkedQueue<>();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        logger.info("Running " + borrows + " concurrent borrowBook calls (pooler mode: "
+                + DatabaseConfig.getPoolerMode() + ")...");
+
+        // ACT & MEASURE
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < borrows; i++) {
+            Integer userId = testUserIds.get(i % testUserIds.size());
+            Integer bookId = testBookIds.get(i % testBookIds.size());
+            executor.submit(() -> {
+                try {
+                    Borrowing borrowing = borrowingService.borrowBook(userId, bookId, 14);
+                    borrowingIds.add(borrowing.getBorrowingId());
+                } catch (SQLException | RuntimeException e) {
+                    rejected.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        boolean finished = executor.awaitTermination(5, TimeUnit.MINUTES);
+        long duration = Math.max(1, System.currentTimeMillis() - startTime);
+
+        // Cleanup borrowings supaya user dan buku bisa dihapus di tearDownAll
+        for (Integer borrowingId : borrowingIds) {
+            borrowingDAO.delete(borrowingId);
+        }
+
+        // ASSERT
+        assertThat(finished).isTrue();
+        assertThat(borrowingIds.size() + rejected.get()).isEqualTo(borrows);
+        assertThat(borrowingIds).isNotEmpty();
+
+        logger.info(" TC513 PASSED: " + borrowingIds.size() + " borrowed, " + rejected.get() + " rejected in "
+                + duration + " ms (pooler mode: " + DatabaseConfig.getPoolerMode() + ")");
+        logger.info(" Throughput: " + String.format("%.2f", (borrowingIds.size() * 1000.0) / duration)
+                + " borrowBook/second");
+        logger.info(" " + DatabaseConfig.getPool().getMetrics().toSummary());
+    }
+
+    @Test
+    @Order(14)
+    @DisplayName("TC514: borrowBook under contention - no lost or oversold copies")
+    void testBorrowBookContention_NoLostCopies() throws Exception {
+        // ARRANGE - satu buku dengan 5 kopi diperebutkan oleh banyak user sekaligus
+        assertThat(testUserIds.size()).isGreaterThanOrEqualTo(20);
+        Book book = createTestBook(9_999);
+        book.setTotalCopies(5);
+        book.setAvailableCopies(5);
+        Book createdBook = bookDAO.create(book);
+        testBookIds.add(createdBook.getBookId());
+
+        BorrowingService borrowingService = new BorrowingService();
+        BorrowingDAO borrowingDAO = new BorrowingDAO();
+        int contenders = 20;
+        Queue<Integer> borrowingIds = new ConcurrentLinkedQueue<>();
+        AtomicInteger soldOut = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(contenders);
+        logger.info(contenders + " users borrowing the same book (5 copies) concurrently...");
+
+        // ACT & MEASURE
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < contenders; i++) {
+            Integer userId = testUserIds.get(i);
+            executor.submit(() -> {
+                try {
+                    borrowingIds.add(borrowingService.borrowBook(userId, createdBook.getBookId(), 14).getBorrowingId());
+                } catch (IllegalStateException e) {
+                    soldOut.incrementAndGet();
+                } catch (SQLException e) {
+                    logger.warning("borrowBook gagal: " + e.getMessage());
+                }
+            });
+        }
+        executor.shutdown();
+        boolean finished = executor.awaitTermination(2, TimeUnit.MINUTES);
+        long duration = Math.max(1, System.currentTimeMillis() - startTime);
+
+        Book after = bookDAO.findById(createdBook.getBookId()).orElseThrow();
+        int borrowingsForBook = borrowingDAO.findByBookId(createdBook.getBookId()).size();
+        for (Integer borrowingId : borrowingIds) {
+            borrowingDAO.delete(borrowingId);
+        }
+
+        // ASSERT - tepat 5 peminjaman, stok 0, tidak ada kopi yang hilang atau terjual dua kali
+        assertThat(finished).isTrue();
+        assertThat(borrowingIds).hasSize(5);
+        assertThat(soldOut.get()).isEqualTo(contenders - 5);
+        assertThat(after.getAvailableCopies()).isZero();
+        assertThat(borrowingsForBook).isEqualTo(5);
+
+        logger.info(" TC514 PASSED: " + borrowingIds.size() + " borrowed, " + soldOut.get() + " rejected in "
+                + duration + " ms, available copies: " + after.getAvailableCopies());
+        logger.info(" Throughput: " + String.format("%.2f", (contenders * 1000.0) / duration) + " borrowBook calls/second");
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("TC515: borrowBook/returnBook latency - transactional vs single-statement")
+    void testBorrowReturnLatency_BorrowMode() throws SQLException {
+        // ARRANGE
+        // Jalankan dua kali untuk membandingkan jumlah round trip per peminjaman:
+        //   mvn test -Dtest=DatabasePerformanceTest -Ddb.borrow.mode=transactional
+        //   mvn test -Dtest=DatabasePerformanceTest -Ddb.borrow.mode=single-statement
+        assertThat(testUserIds).isNotEmpty();
+        assertThat(testBookIds).isNotEmpty();
+        BorrowingService borrowingService = new BorrowingService();
+        String borrowMode = DatabaseConfig.getProperty("db.borrow.mode", "transactional");
+        int iterations = Math.min(50, testUserIds.size());
+        long borrowNanos = 0;
+        long returnNanos = 0;
+        logger.info("Running " + iterations + " borrow/return cycles (borrow mode: " + borrowMode + ")...");
+
+        // ACT & MEASURE - setiap user meminjam lalu mengembalikan buku yang sama
+        Integer bookId = testBookIds.get(0);
+        BorrowingDAO borrowingDAO = new BorrowingDAO();
+        List<Integer> borrowingIds = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            Borrowing borrowing = borrowingService.borrowBook(testUserIds.get(i), bookId, 14);
+            borrowNanos += System.nanoTime() - start;
+            borrowingIds.add(borrowing.getBorrowingId());
+
+            start = System.nanoTime();
+            assertThat(borrowingService.returnBook(borrowing.getBorrowingId())).isTrue();
+            returnNanos += System.nanoTime() - start;
+        }
+
+        Book after = bookDAO.findById(bookId).orElseThrow();
+        for (Integer borrowingId : borrowingIds) {
+            borrowingDAO.delete(borrowingId);
+        }
+
+        // ASSERT - stok kembali seperti semula
+        assertThat(after.getAvailableCopies()).isEqualTo(after.getTotalCopies());
+
+        logger.info(" TC515 PASSED: " + iterations + " borrow/return cycles (borrow mode: " + borrowMode + ")");
+        logger.info(" Average borrowBook: " + String.format("%.2f", borrowNanos / 1_000_000.0 / iterations) + " ms");
+        logger.info(" Average returnBook: " + String.format("%.2f", returnNanos / 1_000_000.0 / iterations) + " ms");
+    }
+
+    @Test
+    @Order(16)
+    @DisplayName("TC516: Bulk INSERT performance - 1000 users with createAll (multi-row INSERT)")
+    void testBulkInsertPerformance_CreateAllUsers() throws SQLException {
+        // ARRANGE - bandingkan dengan TC501 (satu INSERT per user)
+        int numberOfUsers = 1000;
+        List<User> users = new ArrayList<>(numberOfUsers);
+        for (int i = 0; i < numberOfUsers; i++) {
+            users.add(createTestUser(i));
+        }
+        logger.info("Inserting " + numberOfUsers + " users with createAll (db.batch.size="
+                + DatabaseConfig.getBatchSize() + ")...");
+
+        // ACT & MEASURE
+        long startTime = System.currentTimeMillis();
+        List<User> created = userDAO.createAll(users);
+        long duration = Math.max(1, System.currentTimeMillis() - startTime);
+        for (User user : created) {
+            testUserIds.add(user.getUserId());
+        }
+
+        // ASSERT - id dan timestamp hasil generate dipetakan kembali ke object input
+        assertThat(created).hasSize(numberOfUsers);
+        assertThat(created).extracting(User::getUserId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(created).extracting(User::getCreatedAt).doesNotContainNull();
+        assertThat(userDAO.findById(created.get(numberOfUsers - 1).getUserId())).isPresent().get()
+                .satisfies(u -> assertThat(u.getUsername()).isEqualTo(users.get(numberOfUsers - 1).getUsername()));
+        assertThat(duration).isLessThan(BULK_INSERT_THRESHOLD);
+
+        logger.info(" TC516 PASSED: Inserted " + numberOfUsers + " users in " + duration + " ms");
+        logger.info(" Throughput: " + String.format("%.2f", (numberOfUsers * 1000.0) / duration) + " inserts/second");
+    }
+
+    @Test
+    @Order(17)
+    @DisplayName("TC517: Bulk INSERT performance - 1000 books with createAll (multi-row INSERT)")
+    void testBulkInsertPerformance_CreateAllBooks() throws SQLException {
+        // ARRANGE - bandingkan dengan TC502 (satu INSERT per book)
+        int numberOfBooks = 1000;
+        List<Book> books = new ArrayList<>(numberOfBooks);
+        for (int i = 0; i < numberOfBooks; i++) {
+            books.add(createTestBook(i));
+        }
+        logger.info("Inserting " + numberOfBooks + " books with createAll...");
+
+        // ACT & MEASURE
+        long startTime = System.currentTimeMillis();
+        List<Book> created = bookDAO.createAll(books);
+        long duration = Math.max(1, System.currentTimeMillis() - startTime);
+        for (Book book : created) {
+            testBookIds.add(book.getBookId());
+        }
+
+        // ASSERT
+        assertThat(created).hasSize(numberOfBooks);
+        assertThat(created).extracting(Book::getBookId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(bookDAO.findById(created.get(0).getBookId())).isPresent().get()
+                .satisfies(b -> assertThat(b.getIsbn()).isEqualTo(books.get(0).getIsbn()));
+        assertThat(duration).isLessThan(BULK_INSERT_THRESHOLD);
+
+        logger.info(" TC517 PASSED: Inserted " + numberOfBooks + " books in " + duration + " ms");
+        logger.info(" Throughput: " + String.format("%.2f", (numberOfBooks * 1000.0) / duration) + " inserts/second");
+    }
+
+    @Test
+    @Order(18)
+    @DisplayName("TC518: Bulk load performance - 10000 books with COPY (BulkLoader)")
+    void testBulkLoadPerformance_CopyBooks() throws SQLException {
+        // ARRANGE - book dibuat lazy dari stream, tidak pernah ada di memory sekaligus
+        int numberOfBooks = 10000;
+        int updatedBooks = 100;
+        String isbnPrefix = String.format("978c%08d", System.currentTimeMillis() % 100_000_000);
+        BulkLoader bulkLoader = new BulkLoader();
+        logger.info("Loading " + numberOfBooks + " books with COPY...");
+
+        try {
+            // ACT & MEASURE
+            BulkLoadResult loaded = bulkLoader.loadBooks(IntStream.range(0, numberOfBooks)
+                    .mapToObj(i -> copyTestBook(isbnPrefix, i)).iterator(), BulkLoader.MergeMode.NONE);
+
+            // Load ulang sebagian ISBN lewat staging: row lama di-update, bukan gagal karena duplikat
+            BulkLoadResult merged = bulkLoader.loadBooks(IntStream.range(0, updatedBooks)
+                    .mapToObj(i -> copyTestBook(isbnPrefix, i))
+                    .peek(book -> book.setTitle("Merged " + book.getTitle()))
+                    .iterator(), BulkLoader.MergeMode.UPDATE_EXISTING);
+
+            // ASSERT
+            assertThat(loaded.getRowsCopied()).isEqualTo(numberOfBooks);
+            assertThat(loaded.getRowsInserted()).isEqualTo(numberOfBooks);
+            assertThat(merged.getRowsInserted()).isZero();
+            assertThat(merged.getRowsUpdated()).isEqualTo(updatedBooks);
+            assertThat(bookDAO.findByIsbn(isbnPrefix + "00000")).isPresent().get()
+                    .satisfies(b -> assertThat(b.getTitle()).startsWith("Merged "));
+            assertThat(loaded.getDurationMillis()).isLessThan(BULK_INSERT_THRESHOLD);
+
+            logger.info(" TC518 PASSED: Loaded " + numberOfBooks + " books in " + loaded.getDurationMillis() + " ms");
+            logger.info(" Throughput: " + String.format("%.2f", loaded.getRowsPerSecond()) + " rows/second");
+            logger.info(" Merge " + updatedBooks + " books: " + merged.getDurationMillis() + " ms");
+        } finally {
+            try (Connection conn = DatabaseConfig.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM books WHERE isbn LIKE '" + isbnPrefix + "%'");
+            }
+        }
+    }
+
+    @Test
+    @Order(19)
+    @DisplayName("TC519: Multi-get performance - findByIds vs N+1 findById for 50 books")
+    void testMultiGetPerformance_FindByIdsVsNPlusOne() throws SQLException {
+        // ARRANGE - seperti daftar pinjaman user: 50 book id yang harus ditampilkan
+        int numberOfBooks = 50;
+        int iterations = 20;
+        List<Integer> bookIds = new ArrayList<>(testBookIds.subList(0, Math.min(numberOfBooks, testBookIds.size())));
+        if (bookIds.size() < numberOfBooks) {
+            List<Book> books = new ArrayList<>();
+            for (int i = bookIds.size(); i < numberOfBooks; i++) {
+                books.add(createTestBook(i));
+            }
+            for (Book book : bookDAO.createAll(books)) {
+                testBookIds.add(book.getBookId());
+                bookIds.add(book.getBookId());
+            }
+        }
+        // Warm-up: statement cache dan JIT
+        bookDAO.findByIds(bookIds);
+        for (Integer bookId : bookIds) {
+            bookDAO.findById(bookId);
+        }
+
+        // ACT & MEASURE - N+1: satu query (dan satu peminjaman koneksi) per book
+        long nPlusOneStart = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (Integer bookId : bookIds) {
+                bookDAO.findById(bookId);
+            }
+        }
+        long nPlusOneNanos = System.nanoTime() - nPlusOneStart;
+
+        long multiGetStart = System.nanoTime();
+        Map<Integer, Book> books = null;
+        for (int i = 0; i < iterations; i++) {
+            books = bookDAO.findByIds(bookIds);
+        }
+        long multiGetNanos = System.nanoTime() - multiGetStart;
+
+        // ASSERT
+        assertThat(books).hasSize(numberOfBooks);
+        assertThat(books.keySet()).containsExactlyElementsOf(bookIds);
+        assertThat(multiGetNanos).isLessThan(nPlusOneNanos);
+
+        logger.info(" TC519 PASSED: " + numberOfBooks + " books x " + iterations + " iterations");
+        logger.info(" Average N+1 findById: " + String.format("%.2f", nPlusOneNanos / 1_000_000.0 / iterations) + " ms");
+        logger.info(" Average findByIds: " + String.format("%.2f", multiGetNanos / 1_000_000.0 / iterations) + " ms");
+        logger.info(" Speedup: " + String.format("%.1fx", (double) nPlusOneNanos / multiGetNanos));
+    }
+
+    @Test
+    @Order(20)
+    @DisplayName("TC520: Keyset pagination - first page vs deepest page latency")
+    void testKeysetPaginationPerformance_DeepPageLatency() throws SQLException {
+        // ARRANGE - bandingkan dengan TC511 (findAll memuat semua row sekaligus)
+        int pageSize = 100;
+        logger.info("Walking all books and users in pages of " + pageSize + "...");
+
+        // ACT & MEASURE
+        long firstPageNanos = 0;
+        long deepestPageNanos = 0;
+        int pages = 0;
+        int booksRead = 0;
+        Integer afterId = null;
+        while (true) {
+            long start = System.nanoTime();
+            List<Book> page = bookDAO.findPage(afterId, pageSize);
+            long elapsed = System.nanoTime() - start;
+            if (pages == 0) {
+                firstPageNanos = elapsed;
+            }
+            if (page.isEmpty()) {
+                break;
+            }
+            deepestPageNanos = elapsed;
+            pages++;
+            booksRead += page.size();
+            afterId = page.get(page.size() - 1).getBookId();
+        }
+
+        int usersRead = 0;
+        afterId = null;
+        for (List<User> page = userDAO.findPage(null, pageSize); !page.isEmpty();
+             page = userDAO.findPage(afterId, pageSize)) {
+            usersRead += page.size();
+            afterId = page.get(page.size() - 1).getUserId();
+        }
+
+        // ASSERT - setiap row terbaca tepat sekali dan halaman terdalam tetap secepat query tunggal
+        assertThat(booksRead).isEqualTo(bookDAO.countAll());
+        assertThat(usersRead).isEqualTo(userDAO.findAll().size());
+        assertThat(deepestPageNanos / 1_000_000).isLessThan(SINGLE_QUERY_THRESHOLD);
+
+        logger.info(" TC520 PASSED: " + booksRead + " books in " + pages + " pages, " + usersRead + " users");
+        logger.info(" First page: " + String.format("%.2f", firstPageNanos / 1_000_000.0) + " ms");
+        logger.info(" Deepest page: " + String.format("%.2f", deepestPageNanos / 1_000_000.0) + " ms");
+    }
+
+    @Test
+    @Order(21)
+    @DisplayName("TC521: Streaming cursor - walk all users, books and borrowings with constant memory")
+    void testStreamingCursorPerformance_ConstantMemory() throws SQLException {
+        // ARRANGE - bandingkan dengan TC511 (findAll memuat semua row ke ArrayList)
+        BorrowingDAO borrowingDAO = new BorrowingDAO();
+        System.gc();
+        long memoryBefore = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        logger.info("Streaming all tables with fetch size " + DatabaseConfig.getStreamFetchSize() + "...");
+
+        // ACT & MEASURE - hanya agregat yang disimpan, row dilepas setelah dibaca
+        long startTime = System.currentTimeMillis();
+        long users;
+        long books;
+        long borrowings;
+        long overdue;
+        try (Stream<User> stream = userDAO.streamAll()) {
+            users = stream.count();
+        }
+        try (Stream<Book> stream = bookDAO.streamAll()) {
+            books = stream.mapToInt(Book::getTotalCopies).filter(copies -> copies >= 0).count();
+        }
+        try (Stream<Borrowing> stream = borrowingDAO.streamAll()) {
+            borrowings = stream.count();
+        }
+        try (Stream<Borrowing> stream = borrowingDAO.streamOverdue()) {
+            overdue = stream.count();
+        }
+        long duration = System.currentTimeMillis() - startTime;
+        long memoryAfter = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+        // ASSERT
+        assertThat(books).isEqualTo(bookDAO.countAll());
+        assertThat(users).isEqualTo(userDAO.findAll().size());
+        assertThat(overdue).isLessThanOrEqualTo(borrowings);
+        assertThat(duration).isLessThan(BULK_INSERT_THRESHOLD);
+
+        logger.info(" TC521 PASSED: Streamed " + users + " users, " + books + " books, "
+                + borrowings + " borrowings (" + overdue + " overdue) in " + duration + " ms");
+        logger.info(" Memory delta: " + ((memoryAfter - memoryBefore) / 1024) + " KB");
+    }
+
+    @Test
+    @Order(22)
+    @DisplayName("TC522: Projection - BookSummary vs full Book bytes on the wire and allocation per row")
+    void testProjectionPerformance_SummaryVsFullBook() throws SQLException {
+        // ARRANGE - perkiraan ukuran row di server dengan pg_column_size untuk query list yang sama
+        long fullBytes;
+        long summaryBytes;
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(SUM(pg_column_size(b.*)), 0), " +
+                     "COALESCE(SUM(pg_column_size(ROW(b.book_id, b.isbn, b.title, b.available_copies))), 0) " +
+                     "FROM books b WHERE b.available_copies > 0")) {
+            rs.next();
+            fullBytes = rs.getLong(1);
+            summaryBytes = rs.getLong(2);
+        }
+        int iterations = 20;
+        // Warm-up: statement cache dan JIT
+        bookDAO.findAvailableBooks();
+        bookDAO.findAvailableSummaries();
+
+        // ACT & MEASURE - byte yang dialokasikan thread ini selama mapping
+        long fullStart = allocatedBytes();
+        int rows = 0;
+        for (int i = 0; i < iterations; i++) {
+            rows = bookDAO.findAvailableBooks().size();
+        }
+        long fullAllocated = allocatedBytes() - fullStart;
+
+        long summaryStart = allocatedBytes();
+        int summaryRows = 0;
+        for (int i = 0; i < iterations; i++) {
+            summaryRows = bookDAO.findAvailableSummaries().size();
+        }
+        long summaryAllocated = allocatedBytes() - summaryStart;
+
+        // ASSERT
+        assertThat(summaryRows).isEqualTo(rows);
+        assertThat(summaryBytes).isLessThanOrEqualTo(fullBytes);
+        if (rows > 0 && fullStart >= 0) {
+            assertThat(summaryAllocated).isLessThan(fullAllocated);
+        }
+
+        long perRowDivisor = Math.max(1, (long) rows * iterations);
+        logger.info(" TC522 PASSED: " + rows + " available books");
+        logger.info(" Row bytes (pg_column_size): full " + fullBytes + ", summary " + summaryBytes);
+        logger.info(" Allocation per row: full " + (fullAllocated / perRowDivisor)
+                + " B, summary " + (summaryAllocated / perRowDivisor) + " B");
+    }
+
+    @Test
+    @Order(23)
+    @DisplayName("TC524: Single-statement borrow under contention - same user cannot exceed the borrow limit")
+    void testSingleStatementBorrowContention_SameUserLimit() throws Exception {
+        // ARRANGE - satu user meminjam 20 kopi buku yang sama sekaligus, batas peminjaman 5
+        assertThat(testUserIds).isNotEmpty();
+        Integer userId = testUserIds.get(0);
+        Book book = createTestBook(9_998);
+        book.setTotalCopies(20);
+        book.setAvailableCopies(20);
+        Book createdBook = bookDAO.create(book);
+        testBookIds.add(createdBook.getBookId());
+
+        BorrowingDAO borrowingDAO = new BorrowingDAO();
+        borrowingDAO.createBorrowFunctionIfMissing();
+        int maxActive = 5;
+        int activeBefore = borrowingDAO.countActiveBorrowingsByUser(userId);
+        int expectedBorrows = Math.max(0, maxActive - activeBefore);
+        int attempts = 20;
+        Timestamp dueDate = Timestamp.valueOf(LocalDateTime.now().plusDays(14));
+        Queue<Integer> borrowingIds = new ConcurrentLinkedQueue<>();
+        AtomicInteger limitReached = new AtomicInteger();
+        AtomicInteger otherFailures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(attempts);
+        logger.info(attempts + " concurrent single-statement borrows by one user (limit " + maxActive + ")...");
+
+        // ACT & MEASURE
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < attempts; i++) {
+            executor.submit(() -> {
+                try {
+                    BorrowOutcome outcome = borrowingDAO.borrowInSingleStatement(userId, createdBook.getBookId(),
+                            dueDate, "TC524", maxActive);
+                    if (outcome.isSuccess()) {
+                        borrowingIds.add(outcome.getBorrowing().getBorrowingId());
+                    } else if (outcome.getFailureReason() == BorrowFailureReason.BORROW_LIMIT_REACHED) {
+                        limitReached.incrementAndGet();
+                    } else {
+                        otherFailures.incrementAndGet();
+                    }
+                } catch (SQLException e) {
+                    logger.warning("borrowInSingleStatement gagal: " + e.getMessage());
+                    otherFailures.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        boolean finished = executor.awaitTermination(2, TimeUnit.MINUTES);
+        long duration = Math.max(1, System.currentTimeMillis() - startTime);
+
+        int activeAfter = borrowingDAO.countActiveBorrowingsByUser(userId);
+        Book after = bookDAO.findById(createdBook.getBookId()).orElseThrow();
+        for (Integer borrowingId : borrowingIds) {
+            borrowingDAO.delete(borrowingId);
+        }
+
+        // ASSERT - batas peminjaman tidak terlewati, stok berkurang tepat sebanyak peminjaman yang berhasil
+        assertThat(finished).isTrue();
+        assertThat(otherFailures.get()).isZero();
+        assertThat(borrowingIds).hasSize(expectedBorrows);
+        assertThat(limitReached.get()).isEqualTo(attempts - expectedBorrows);
+        assertThat(activeAfter).isEqualTo(activeBefore + expectedBorrows);
+        assertThat(after.getAvailableCopies()).isEqualTo(20 - expectedBorrows);
+
+        logger.info(" TC524 PASSED: " + borrowingIds.size() + " borrowed, " + limitReached.get()
+                + " rejected by the borrow limit in " + duration + " ms");
+    }
+
     // ---
     // HELPER METHODS
     // ---
 
+    /**
+     * Executor dengan satu virtual thread per task jika JVM mendukung (Java 21+),
+     * fallback ke fixed thread pool untuk JVM yang lebih lama
+     * Dipanggil lewat reflection karena kode dikompilasi dengan target Java 17
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (virtualThreadsAvailable()) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Gagal membuat virtual thread executor", e);
+            }
+        }
+        logger.info("Virtual threads tidak tersedia di Java " + Runtime.version().feature()
+                + " - memakai fixed thread pool (200)");
+        return Executors.newFixedThreadPool(200);
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        return Runtime.version().feature() >= 21;
+    }
+
     /**
      * Helper method untuk membuat test user dengan index
      */
@@ -463,6 +1092,26 @@ public class DatabasePerformanceTest extends BaseDatabaseTest {
                 .build();
     }
 
+    /**
+     * Helper method untuk book TC518 dengan ISBN yang bisa dibuat ulang dari prefix dan index
+     */
+    private Book copyTestBook(String isbnPrefix, int index) {
+        Book book = createTestBook(index);
+        book.setIsbn(isbnPrefix + String.format("%05d", index));
+        return book;
+    }
+
+    /**
+     * Byte yang sudah dialokasikan thread ini, -1 jika JVM tidak mendukung pengukuran alokasi
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
     /**
      * Calculate standard deviation untuk performance metrics
      */